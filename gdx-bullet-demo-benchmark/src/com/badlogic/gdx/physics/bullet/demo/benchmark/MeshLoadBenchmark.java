@@ -0,0 +1,113 @@
+package com.badlogic.gdx.physics.bullet.demo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.g3d.loaders.obj.ObjLoader;
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoHeadlessMain;
+import com.badlogic.gdx.physics.bullet.demo.mesh.BinaryMesh;
+import com.badlogic.gdx.physics.bullet.demo.mesh.BinaryMeshConverter;
+import com.badlogic.gdx.physics.bullet.demo.mesh.ObjStreamReader;
+
+/**
+ * Compares loading the demo's models from OBJ text (with {@link ObjLoader} and {@link ObjStreamReader}) against
+ * loading them from {@link BinaryMesh} files (converted from the same OBJ files during setup). Run with -prof gc to
+ * compare allocation too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeshLoadBenchmark
+{
+    public enum Format
+    {
+        OBJ, STREAMING_OBJ, BINARY
+    }
+
+    @Param({ "terrain", "icosphere", "cube" })
+    public String model;
+
+    @Param({ "OBJ", "STREAMING_OBJ", "BINARY" })
+    public Format format;
+
+    private File objFile;
+    private File meshFile;
+    private Mesh mesh;
+
+    private final ObjStreamReader objReader = new ObjStreamReader();
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException
+    {
+        BulletDemoHeadlessMain.initializeHeadless();
+
+        // Copy the model out of the classpath so both formats are read from the file system
+        objFile = File.createTempFile(model, ".obj");
+        Gdx.files.classpath("models/" + model + ".obj").copyTo(Gdx.files.absolute(objFile.getPath()));
+
+        meshFile = File.createTempFile(model, ".mesh");
+        BinaryMeshConverter.convert(objFile, meshFile, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        objFile.delete();
+        meshFile.delete();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation()
+    {
+        mesh.dispose();
+        mesh = null;
+    }
+
+    @Benchmark
+    public Mesh load() throws IOException
+    {
+        if (format == Format.OBJ)
+        {
+            final InputStream in = Gdx.files.absolute(objFile.getPath()).read();
+            try
+            {
+                mesh = ObjLoader.loadObj(in, false);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        else if (format == Format.STREAMING_OBJ)
+        {
+            mesh = objReader.read(Gdx.files.absolute(objFile.getPath()), false);
+        }
+        else
+        {
+            mesh = BinaryMesh.load(Gdx.files.absolute(meshFile.getPath())).createMesh();
+        }
+
+        return mesh;
+    }
+}
@@ -0,0 +1,91 @@
+package com.badlogic.gdx.physics.bullet.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoHeadlessMain;
+import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen.Ground;
+
+/**
+ * Measures the cost of one fixed {@link DemoScreen} physics step as the number of dynamic bodies grows, on both kinds
+ * of ground.
+ * <p>
+ * The world is rebuilt for every iteration so each iteration measures the same part of the simulation (bodies falling
+ * onto and piling up on the ground) instead of an ever more settled, sleeping pile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.SampleTime, Mode.Throughput })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepSimulationBenchmark
+{
+    /**
+     * Bodies are dropped in layers of GRID_SIZE x GRID_SIZE, centered over the origin.
+     */
+    private static final int GRID_SIZE = 16;
+    private static final float GRID_SPACING = 2.5f;
+    private static final float FIRST_LAYER_Z = 5;
+
+    @Param({ "100", "1000", "10000", "50000" })
+    public int bodies;
+
+    @Param({ "TERRAIN", "PLANE" })
+    public Ground ground;
+
+    private DemoScreen screen;
+
+    @Setup(Level.Trial)
+    public void setUpTrial()
+    {
+        BulletDemoHeadlessMain.initializeHeadless();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration()
+    {
+        screen = new DemoScreen(null, true);
+        screen.setGround(ground);
+        screen.showHeadless();
+
+        // Lay the bodies out on a grid so they don't start interpenetrating
+        final float offset = (GRID_SIZE - 1) * GRID_SPACING / 2f;
+        for (int i = 0; i < bodies; i++)
+        {
+            final int column = i % GRID_SIZE;
+            final int row = (i / GRID_SIZE) % GRID_SIZE;
+            final int layer = i / (GRID_SIZE * GRID_SIZE);
+
+            screen.dropThing(i % 2 == 0, column * GRID_SPACING - offset, row * GRID_SPACING - offset, FIRST_LAYER_Z
+                    + layer * GRID_SPACING);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration()
+    {
+        screen.dispose();
+        screen = null;
+    }
+
+    @Benchmark
+    public void stepSimulation()
+    {
+        screen.stepPhysicsFixed();
+    }
+}
@@ -0,0 +1,166 @@
+package com.badlogic.gdx.physics.bullet.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape;
+import com.badlogic.gdx.physics.bullet.btTriangleMesh;
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoHeadlessMain;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.MeshSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.MeshTriangleData;
+
+/**
+ * Compares importing a terrain-like grid mesh into Bullet by copying its triangles into a {@link btTriangleMesh}
+ * against pointing a {@link MeshTriangleData} at the mesh's buffers, with and without building the BVH.
+ * <p>
+ * Each operation is a whole import, so this runs in single shot mode. The copying import merges duplicate vertices
+ * with a linear search, so expect it to take minutes at 100k triangles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TriangleMeshImportBenchmark
+{
+    public enum ImportPath
+    {
+        TRIANGLE_MESH, TRIANGLE_INDEX_VERTEX_ARRAY
+    }
+
+    /**
+     * Approximate; the grid is square, two triangles per cell.
+     */
+    @Param({ "1000", "10000", "100000" })
+    public int triangles;
+
+    @Param({ "TRIANGLE_MESH", "TRIANGLE_INDEX_VERTEX_ARRAY" })
+    public ImportPath path;
+
+    @Param({ "false", "true" })
+    public boolean buildBvh;
+
+    private Mesh mesh;
+
+    // What the last operation created, deleted after it
+    private btTriangleMesh triangleMesh;
+    private MeshTriangleData triangleData;
+    private btBvhTriangleMeshShape shape;
+
+    @Setup(Level.Trial)
+    public void setUpTrial()
+    {
+        BulletDemoHeadlessMain.initializeHeadless();
+
+        // A bumpy grid with positions, normals and texture coordinates, like the terrain
+        final int cells = (int) Math.ceil(Math.sqrt(triangles / 2.0));
+        final int side = cells + 1;
+
+        final float[] vertices = new float[side * side * 8];
+        int v = 0;
+        for (int y = 0; y < side; y++)
+        {
+            for (int x = 0; x < side; x++)
+            {
+                vertices[v++] = x;
+                vertices[v++] = y;
+                vertices[v++] = (float) (Math.sin(x * .3) * Math.cos(y * .2));
+                vertices[v++] = 0;
+                vertices[v++] = 0;
+                vertices[v++] = 1;
+                vertices[v++] = x / (float) cells;
+                vertices[v++] = y / (float) cells;
+            }
+        }
+
+        final short[] indices = new short[cells * cells * 6];
+        int i = 0;
+        for (int y = 0; y < cells; y++)
+        {
+            for (int x = 0; x < cells; x++)
+            {
+                final int corner = y * side + x;
+                indices[i++] = (short) corner;
+                indices[i++] = (short) (corner + 1);
+                indices[i++] = (short) (corner + side);
+                indices[i++] = (short) (corner + 1);
+                indices[i++] = (short) (corner + side + 1);
+                indices[i++] = (short) (corner + side);
+            }
+        }
+
+        mesh = new Mesh(true, side * side, indices.length, new VertexAttribute(Usage.Position, 3, "a_position"),
+                new VertexAttribute(Usage.Normal, 3, "a_normal"), new VertexAttribute(Usage.TextureCoordinates, 2,
+                        "a_texCoord"));
+        mesh.setVertices(vertices);
+        mesh.setIndices(indices);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        mesh.dispose();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation()
+    {
+        if (shape != null)
+        {
+            shape.delete();
+            shape = null;
+        }
+
+        // createTriangleMesh() tracks what it makes
+        if (triangleMesh != null && NativeRegistry.release(triangleMesh))
+        {
+            triangleMesh.delete();
+            triangleMesh = null;
+        }
+
+        if (triangleData != null)
+        {
+            triangleData.dispose();
+            triangleData = null;
+        }
+    }
+
+    @Benchmark
+    public void importMesh()
+    {
+        if (path == ImportPath.TRIANGLE_MESH)
+        {
+            triangleMesh = MeshSimulationObject.createTriangleMesh(mesh);
+            if (buildBvh)
+            {
+                shape = new btBvhTriangleMeshShape(triangleMesh, true);
+            }
+        }
+        else
+        {
+            triangleData = new MeshTriangleData(mesh);
+            if (buildBvh)
+            {
+                shape = new btBvhTriangleMeshShape(triangleData.getTriangleIndexVertexArray(), true);
+            }
+        }
+    }
+}
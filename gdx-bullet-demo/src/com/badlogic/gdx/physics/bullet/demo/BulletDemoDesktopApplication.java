@@ -1,14 +1,59 @@
 package com.badlogic.gdx.physics.bullet.demo;
 
+import java.io.File;
+
 import com.badlogic.gdx.Game;
-import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry;
+import com.badlogic.gdx.physics.bullet.demo.replay.ReplayRecorder;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryReader;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryRecorder;
 import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.TrajectoryPlaybackScreen;
 import com.badlogic.gdx.utils.GdxNativesLoader;
 
 public class BulletDemoDesktopApplication extends Game
 {
+    // Shared by every DemoScreen, so resets don't load anything again
+    private AssetRegistry assetRegistry;
+
+    // Records the session for replaying (may be null)
+    private final ReplayRecorder recorder;
+
+    // Where to record every body's transforms, and what to play back instead of simulating (either may be null)
+    private final String trajectoryFile;
+    private final String playFile;
+    private TrajectoryRecorder trajectoryRecorder;
+
     public BulletDemoDesktopApplication()
     {
+        this(null);
+    }
+
+    /**
+     * @param recorder
+     *            records everything that changes the simulation, to replay with
+     *            {@link com.badlogic.gdx.physics.bullet.demo.replay.ReplayPlayer} (closed when the application is
+     *            disposed), or null
+     */
+    public BulletDemoDesktopApplication(ReplayRecorder recorder)
+    {
+        this(recorder, null, null);
+    }
+
+    /**
+     * @param trajectoryFile
+     *            a file to record every body's transforms into with a {@link TrajectoryRecorder}, or null
+     * @param playFile
+     *            a trajectory to play back in a {@link TrajectoryPlaybackScreen} instead of simulating, or null
+     */
+    public BulletDemoDesktopApplication(ReplayRecorder recorder, String trajectoryFile, String playFile)
+    {
+        this.recorder = recorder;
+        this.trajectoryFile = trajectoryFile;
+        this.playFile = playFile;
     }
 
     @Override
@@ -17,7 +62,55 @@ public class BulletDemoDesktopApplication extends Game
         // Preload the natives so we can use them in static class initialization
         GdxNativesLoader.load();
 
-        final Screen playScreen = new DemoScreen(this);
+        assetRegistry = new AssetRegistry(Runtime.getRuntime().availableProcessors(),
+                AssetRegistry.DEFAULT_BUDGET_BYTES);
+
+        if (playFile != null)
+        {
+            setScreen(new TrajectoryPlaybackScreen(this, assetRegistry, TrajectoryReader.open(absolute(playFile))));
+            return;
+        }
+
+        if (trajectoryFile != null)
+        {
+            trajectoryRecorder = new TrajectoryRecorder(absolute(trajectoryFile),
+                    SimulationScreen.PHYSICS_TIME_STEP_SECONDS);
+        }
+
+        final DemoScreen playScreen = new DemoScreen(this, assetRegistry);
+        playScreen.setRecorder(recorder);
+        playScreen.setTrajectoryRecorder(trajectoryRecorder);
         setScreen(playScreen);
     }
-}
\ No newline at end of file
+
+    private static FileHandle absolute(String file)
+    {
+        return Gdx.files.absolute(new File(file).getAbsolutePath());
+    }
+
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+
+        if (getScreen() != null)
+        {
+            getScreen().dispose();
+        }
+        assetRegistry.dispose();
+
+        if (recorder != null)
+        {
+            recorder.dispose();
+            System.out.println("Recorded " + recorder.getSteps() + " steps and " + recorder.getActions()
+                    + " actions in " + recorder.getBytes() + " bytes");
+        }
+
+        if (trajectoryRecorder != null)
+        {
+            trajectoryRecorder.dispose();
+            System.out.println("Recorded " + trajectoryRecorder.getFrames() + " trajectory frames in "
+                    + trajectoryRecorder.getWrittenBytes() / 1024 + " KB");
+        }
+    }
+}
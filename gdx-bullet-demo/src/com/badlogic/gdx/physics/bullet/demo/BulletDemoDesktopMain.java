@@ -1,13 +1,51 @@
 package com.badlogic.gdx.physics.bullet.demo;
 
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.physics.bullet.demo.replay.ReplayRecorder;
 
+/**
+ * Arguments (all optional):
+ * <ul>
+ * <li>-record file: record the session into a replay log (see {@link BulletDemoHeadlessMain}'s -replay)</li>
+ * <li>-trajectory file: record every body's transform after each step</li>
+ * <li>-play file: play back a trajectory (recorded here or with {@link BulletDemoHeadlessMain}) instead of
+ * simulating</li>
+ * </ul>
+ */
 public class BulletDemoDesktopMain
 {
-    public static void main(String[] argv)
+    public static void main(String[] argv) throws FileNotFoundException
     {
-        BulletDemoDesktopApplication app = new BulletDemoDesktopApplication();
+        ReplayRecorder recorder = null;
+        String trajectoryFile = null;
+        String playFile = null;
+
+        for (int i = 0; i < argv.length; i++)
+        {
+            if ("-record".equals(argv[i]) && i + 1 < argv.length)
+            {
+                recorder = new ReplayRecorder(new FileOutputStream(argv[++i]));
+            }
+            else if ("-trajectory".equals(argv[i]) && i + 1 < argv.length)
+            {
+                trajectoryFile = argv[++i];
+            }
+            else if ("-play".equals(argv[i]) && i + 1 < argv.length)
+            {
+                playFile = argv[++i];
+            }
+            else
+            {
+                System.err.println("usage: BulletDemoDesktopMain [-record file] [-trajectory file] [-play file]");
+                System.exit(1);
+            }
+        }
+
+        BulletDemoDesktopApplication app = new BulletDemoDesktopApplication(recorder, trajectoryFile, playFile);
 
         new LwjglApplication(app, "Bullet Demo", 800, 480, false);
     }
-}
\ No newline at end of file
+}
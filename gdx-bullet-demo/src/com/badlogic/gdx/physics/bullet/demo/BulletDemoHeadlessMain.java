@@ -0,0 +1,527 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry;
+import com.badlogic.gdx.physics.bullet.demo.replay.ReplayPlayer;
+import com.badlogic.gdx.physics.bullet.demo.replay.ReplayRecorder;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryReader;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryRecorder;
+import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.WorldCheckpoint;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.BvhCache;
+import com.badlogic.gdx.physics.bullet.demo.world.ParallelWorldStepper;
+import com.badlogic.gdx.physics.bullet.demo.world.PhysicsWorld;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+
+/**
+ * Runs the {@link DemoScreen} physics without a GL context and reports stepping throughput and latency. Useful on build machines
+ * without a GPU.
+ * <p>
+ * Arguments (all optional):
+ * <ul>
+ * <li>-steps n: number of fixed steps to run (default 3600)</li>
+ * <li>-bodies n: number of things to drop before stepping starts (default 200)</li>
+ * <li>-speed x: multiple of real time to run at, or 0 to run as fast as possible (default 0)</li>
+ * <li>-coldbvh: clear the terrain BVH cache first, to measure a cold start</li>
+ * <li>-assetthreads n: threads to load assets on, or 0 to load them one after another (default: one per core)</li>
+ * <li>-countgl: after stepping, draw the world once without and once with batching on a counting stand-in GL, and
+ * report the calls each made</li>
+ * <li>-worlds n: instead of one scene, step n independent scenes (of -bodies things each) in parallel, once with each
+ * worker count from 1 up to -workers, and report the aggregate steps per second</li>
+ * <li>-workers n: the most workers to step -worlds on (default: one per core)</li>
+ * <li>-record file: record the run into a replay log</li>
+ * <li>-replay file: instead of running a scene, replay a log (recorded here or in the desktop app) as fast as
+ * possible, and check that every step ends in the recorded state</li>
+ * <li>-checkpoint file: after stepping, time a checkpoint, a second of stepping and a rewind to the checkpoint, then
+ * write the checkpoint to the file</li>
+ * <li>-warmstart file: start from a checkpoint file instead of dropping -bodies things (not recorded by -record)</li>
+ * <li>-trajectory file: record every body's transform after each step, for the desktop app's -play, then time decoding
+ * all of it</li>
+ * <li>-nativedebug: keep every native Bullet object's allocation site and fail on a double delete or use after delete
+ * (slower; also turned on by -Dbulletdemo.nativedebug=true), then report live native objects by type at the end</li>
+ * <li>-poolassert: fail any step that has to allocate a new pooled scratch object after the pools were prewarmed (also
+ * turned on by -Dbulletdemo.poolassert=true)</li>
+ * </ul>
+ */
+public class BulletDemoHeadlessMain
+{
+    public static void main(String[] argv) throws FileNotFoundException
+    {
+        int steps = 3600;
+        int bodies = 200;
+        float speed = 0;
+        boolean coldBvh = false;
+        int assetThreads = Runtime.getRuntime().availableProcessors();
+        boolean countGL = false;
+        int worlds = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String recordFile = null;
+        String replayFile = null;
+        String trajectoryFile = null;
+        String checkpointFile = null;
+        String warmStartFile = null;
+        boolean nativeDebug = false;
+        boolean poolAssert = false;
+
+        for (int i = 0; i < argv.length; i++)
+        {
+            if ("-steps".equals(argv[i]) && i + 1 < argv.length)
+            {
+                steps = Integer.parseInt(argv[++i]);
+            }
+            else if ("-bodies".equals(argv[i]) && i + 1 < argv.length)
+            {
+                bodies = Integer.parseInt(argv[++i]);
+            }
+            else if ("-speed".equals(argv[i]) && i + 1 < argv.length)
+            {
+                speed = Float.parseFloat(argv[++i]);
+            }
+            else if ("-coldbvh".equals(argv[i]))
+            {
+                coldBvh = true;
+            }
+            else if ("-assetthreads".equals(argv[i]) && i + 1 < argv.length)
+            {
+                assetThreads = Integer.parseInt(argv[++i]);
+            }
+            else if ("-countgl".equals(argv[i]))
+            {
+                countGL = true;
+            }
+            else if ("-worlds".equals(argv[i]) && i + 1 < argv.length)
+            {
+                worlds = Integer.parseInt(argv[++i]);
+            }
+            else if ("-workers".equals(argv[i]) && i + 1 < argv.length)
+            {
+                workers = Integer.parseInt(argv[++i]);
+            }
+            else if ("-record".equals(argv[i]) && i + 1 < argv.length)
+            {
+                recordFile = argv[++i];
+            }
+            else if ("-replay".equals(argv[i]) && i + 1 < argv.length)
+            {
+                replayFile = argv[++i];
+            }
+            else if ("-checkpoint".equals(argv[i]) && i + 1 < argv.length)
+            {
+                checkpointFile = argv[++i];
+            }
+            else if ("-warmstart".equals(argv[i]) && i + 1 < argv.length)
+            {
+                warmStartFile = argv[++i];
+            }
+            else if ("-trajectory".equals(argv[i]) && i + 1 < argv.length)
+            {
+                trajectoryFile = argv[++i];
+            }
+            else if ("-nativedebug".equals(argv[i]))
+            {
+                nativeDebug = true;
+            }
+            else if ("-poolassert".equals(argv[i]))
+            {
+                poolAssert = true;
+            }
+            else
+            {
+                System.err.println("usage: BulletDemoHeadlessMain [-steps n] [-bodies n] [-speed x] [-coldbvh] [-assetthreads n] [-countgl] [-worlds n] [-workers n] [-record file] [-replay file] [-checkpoint file] [-warmstart file] [-trajectory file] [-nativedebug] [-poolassert]");
+                System.exit(1);
+            }
+        }
+
+        if (nativeDebug)
+        {
+            NativeRegistry.setDebug(true);
+        }
+        if (poolAssert)
+        {
+            Pools.setAssertFrames(true);
+        }
+
+        initializeHeadless();
+
+        if (worlds > 0)
+        {
+            runParallelWorlds(worlds, workers, bodies, steps, assetThreads);
+            return;
+        }
+
+        if (replayFile != null)
+        {
+            replay(replayFile, assetThreads);
+            return;
+        }
+
+        final long setupStart = System.nanoTime();
+        if (coldBvh)
+        {
+            // Before the screen starts building the terrain shape
+            DemoScreen.createBvhCache().clear();
+        }
+        final DemoScreen screen = new DemoScreen(null, true, assetThreads);
+        final ReplayRecorder recorder = recordFile != null ? new ReplayRecorder(new FileOutputStream(recordFile))
+                : null;
+        screen.setRecorder(recorder);
+        final TrajectoryRecorder trajectoryRecorder = trajectoryFile != null ? new TrajectoryRecorder(
+                absolute(trajectoryFile), screen.getPhysicsTimeStepSeconds()) : null;
+        screen.setTrajectoryRecorder(trajectoryRecorder);
+        screen.showHeadless();
+
+        final BvhCache bvhCache = screen.getBvhCache();
+        System.out.println("startup: " + (System.nanoTime() - setupStart) / 1000000 + " ms with " + assetThreads
+                + " asset threads (terrain BVH " + (bvhCache.wasLastHit() ? "warm" : "cold") + ": "
+                + bvhCache.getLastBvhNanos() / 1000000 + " ms)");
+
+        if (warmStartFile != null)
+        {
+            final long warmStart = System.nanoTime();
+            final WorldCheckpoint checkpoint = WorldCheckpoint.read(Gdx.files.absolute(new File(warmStartFile)
+                    .getAbsolutePath()));
+            screen.restore(checkpoint);
+            System.out.println("warm start: " + checkpoint.getCount() + " bodies from " + warmStartFile + " in "
+                    + (System.nanoTime() - warmStart) / 1000 + " us");
+        }
+        else
+        {
+            for (int i = 0; i < bodies; i++)
+            {
+                screen.dropThing(i % 2 == 0);
+            }
+        }
+
+        System.out.println("objects: " + screen.getCollisionSimulationObjectCount() + " steps: " + steps
+                + " speed: " + (speed > 0 ? speed + "x" : "unlimited"));
+
+        final LatencyHistogram recentStepTimes = screen.getStepTimes(false);
+        final LatencyHistogram allStepTimes = screen.getStepTimes(true);
+        final long startTime = System.nanoTime();
+        long lastReportTime = startTime;
+        int lastReportStep = 0;
+
+        for (int step = 0; step < steps; step++)
+        {
+            if (speed > 0)
+            {
+                // Wait until this step is due
+                final long due = startTime + (long) (step * screen.getPhysicsTimeStepNanos() / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0)
+                {
+                    try
+                    {
+                        Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+
+            screen.stepPhysicsFixed();
+            screen.updatePopulation();
+
+            final long now = System.nanoTime();
+            if (now - lastReportTime >= 1000000000L)
+            {
+                report("step " + (step + 1), step + 1 - lastReportStep, now - lastReportTime, recentStepTimes);
+                lastReportTime = now;
+                lastReportStep = step + 1;
+            }
+        }
+
+        report("total", steps, System.nanoTime() - startTime, allStepTimes);
+
+        if (countGL)
+        {
+            reportGLCalls(screen);
+        }
+
+        if (checkpointFile != null)
+        {
+            reportCheckpoint(screen, checkpointFile);
+        }
+
+        screen.dispose();
+
+        if (recorder != null)
+        {
+            recorder.dispose();
+            System.out.println("recorded " + recorder.getSteps() + " steps and " + recorder.getActions()
+                    + " actions in " + recorder.getBytes() + " bytes to " + recordFile);
+        }
+
+        if (trajectoryRecorder != null)
+        {
+            reportTrajectory(trajectoryRecorder, trajectoryFile);
+        }
+
+        // Only shared objects (pools, cached shapes) should be left
+        NativeRegistry.dumpStats();
+        Pools.dumpStats();
+    }
+
+    /**
+     * Finishes writing a trajectory, then reads it back and times decoding every frame (as playing it through would)
+     * and seeking to random frames (as scrubbing would).
+     */
+    private static void reportTrajectory(TrajectoryRecorder trajectoryRecorder, String file)
+    {
+        trajectoryRecorder.dispose();
+        System.out.println("trajectory: " + trajectoryRecorder.getFrames() + " frames, "
+                + trajectoryRecorder.getRecords() + " body records (" + trajectoryRecorder.getSkipped()
+                + " skipped as unchanged), " + trajectoryRecorder.getWrittenBytes() / 1024 + " KB to " + file);
+
+        final TrajectoryReader reader = TrajectoryReader.open(absolute(file));
+        long start = System.nanoTime();
+        for (int frame = 0; frame < reader.getFrameCount(); frame++)
+        {
+            reader.seek(frame);
+        }
+        final long playNanos = System.nanoTime() - start;
+
+        final int seeks = 100;
+        final Random random = new Random(0);
+        start = System.nanoTime();
+        for (int i = 0; i < seeks; i++)
+        {
+            reader.seek(random.nextInt(Math.max(1, reader.getFrameCount())));
+        }
+        System.out.println("trajectory decode: every frame in " + playNanos / 1000000 + " ms, random seeks "
+                + (System.nanoTime() - start) / seeks / 1000 + " us each");
+    }
+
+    private static FileHandle absolute(String file)
+    {
+        return Gdx.files.absolute(new File(file).getAbsolutePath());
+    }
+
+    /**
+     * Checkpoints the screen, steps a second, rewinds and steps the same second again, and reports the times and
+     * whether the second run ended in the same state. Then writes the checkpoint to a file and reads it back.
+     */
+    private static void reportCheckpoint(DemoScreen screen, String file)
+    {
+        // A rewind can't be replayed, so the recording (if any) ends here
+        screen.setRecorder(null);
+
+        long start = System.nanoTime();
+        final WorldCheckpoint checkpoint = screen.checkpoint();
+        final long checkpointNanos = System.nanoTime() - start;
+
+        final int steps = Math.round(1 / screen.getPhysicsTimeStepSeconds());
+        for (int step = 0; step < steps; step++)
+        {
+            screen.stepPhysicsFixed();
+        }
+        final int firstRun = screen.computeTransformChecksum();
+
+        start = System.nanoTime();
+        screen.restore(checkpoint);
+        final long restoreNanos = System.nanoTime() - start;
+
+        for (int step = 0; step < steps; step++)
+        {
+            screen.stepPhysicsFixed();
+        }
+        final boolean same = screen.computeTransformChecksum() == firstRun;
+
+        System.out.println("checkpoint: " + checkpoint.getCount() + " bodies, " + checkpoint.getBytes() / 1024
+                + " KB, taken in " + checkpointNanos / 1000 + " us, restored in " + restoreNanos / 1000
+                + " us; rerun after restore " + (same ? "matched" : "differed"));
+
+        final FileHandle handle = Gdx.files.absolute(new File(file).getAbsolutePath());
+        start = System.nanoTime();
+        checkpoint.write(handle);
+        final long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        WorldCheckpoint.read(handle);
+        System.out.println("checkpoint file: " + file + " written in " + writeNanos / 1000 + " us, read in "
+                + (System.nanoTime() - start) / 1000 + " us");
+    }
+
+    /**
+     * Replays a log and reports how fast it stepped and whether it reproduced the recorded states.
+     */
+    private static void replay(String file, int assetThreads) throws FileNotFoundException
+    {
+        final AssetRegistry assetRegistry = new AssetRegistry(assetThreads, AssetRegistry.DEFAULT_BUDGET_BYTES);
+        final ReplayPlayer player = new ReplayPlayer(assetRegistry);
+
+        final FileInputStream in = new FileInputStream(file);
+        try
+        {
+            player.play(in);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                // Only read from
+            }
+        }
+
+        final double stepsPerSecond = player.getSteps() / (player.getStepNanos() / 1000000000.0);
+        System.out.println("replayed " + player.getSteps() + " steps and " + player.getActions() + " actions ("
+                + player.getScreens() + " screens) in " + player.getElapsedNanos() / 1000000 + " ms, "
+                + String.format("%.1f", stepsPerSecond) + " steps/s"
+                + (player.isTruncated() ? " (log truncated)" : ""));
+
+        if (player.getMismatches() == 0)
+        {
+            System.out.println("checksums: all " + player.getSteps() + " steps match");
+        }
+        else
+        {
+            System.out.println("checksums: " + player.getMismatches() + " steps differ, first at step "
+                    + player.getFirstMismatchStep());
+        }
+
+        assetRegistry.dispose();
+    }
+
+    /**
+     * Steps worlds independent scenes for steps steps with 1, 2, 4... up to maxWorkers workers, each time from freshly
+     * built scenes so every run simulates the same thing, and reports how the throughput scales.
+     */
+    private static void runParallelWorlds(int worlds, int maxWorkers, int bodies, int steps, int assetThreads)
+    {
+        // Steps per round; the workers only synchronize between rounds
+        final int roundSteps = 60;
+
+        // Every scene maps the same meshes and terrain shape
+        final AssetRegistry assetRegistry = new AssetRegistry(assetThreads, AssetRegistry.DEFAULT_BUDGET_BYTES);
+
+        System.out.println("worlds: " + worlds + " objects per world: " + bodies + " steps: " + steps);
+
+        double baseline = 0;
+        int workers = 1;
+        while (true)
+        {
+            final DemoScreen[] screens = new DemoScreen[worlds];
+            final ParallelWorldStepper stepper = new ParallelWorldStepper(workers);
+            for (int i = 0; i < worlds; i++)
+            {
+                screens[i] = new DemoScreen(null, true, assetRegistry);
+                screens[i].showHeadless();
+                for (int j = 0; j < bodies; j++)
+                {
+                    screens[i].dropThing(j % 2 == 0);
+                }
+                stepper.add(screens[i].getPhysicsWorld());
+            }
+
+            for (int step = 0; step < steps; step += roundSteps)
+            {
+                stepper.step(Math.min(roundSteps, steps - step), screens[0].getPhysicsTimeStepSeconds());
+            }
+
+            // The slowest world's tail
+            long worstP99 = 0;
+            for (int i = 0; i < worlds; i++)
+            {
+                final PhysicsWorld world = stepper.getWorld(i);
+                worstP99 = Math.max(worstP99, world.getStepTimes().percentile(99));
+            }
+
+            final double stepsPerSecond = stepper.getStepsPerSecond();
+            if (workers == 1)
+            {
+                baseline = stepsPerSecond;
+            }
+
+            System.out.println("workers: " + workers + " " + String.format("%.1f", stepsPerSecond)
+                    + " world steps/s (" + String.format("%.2f", stepsPerSecond / baseline)
+                    + "x) slowest world p99 us: " + worstP99 / 1000);
+
+            stepper.dispose();
+            for (int i = 0; i < worlds; i++)
+            {
+                screens[i].dispose();
+            }
+
+            if (workers >= maxWorkers)
+            {
+                break;
+            }
+            workers = Math.min(workers * 2, maxWorkers);
+        }
+
+        assetRegistry.dispose();
+    }
+
+    /**
+     * Loads the natives and sets up the parts of {@link Gdx} that a headless {@link SimulationScreen} needs. There is
+     * no application, so only {@link Gdx#files} is available.
+     */
+    public static void initializeHeadless()
+    {
+        GdxNativesLoader.load();
+        Gdx.files = new LwjglFiles();
+    }
+
+    /**
+     * Draws the world once each way on a {@link CountingGL10} with no GL behind it.
+     */
+    private static void reportGLCalls(SimulationScreen screen)
+    {
+        final CountingGL10 gl = CountingGL10.install();
+
+        screen.setRenderBatching(false);
+        renderCounted(screen, "unbatched", gl);
+
+        screen.setRenderBatching(true);
+        renderCounted(screen, "batched", gl);
+        System.out.println("  in " + screen.getRenderBatchCount() + " batches");
+
+        gl.uninstall();
+    }
+
+    /**
+     * Draws the world twice from a cold state cache, and reports the calls made the second time (when only real
+     * changes get through).
+     */
+    private static void renderCounted(SimulationScreen screen, String label, CountingGL10 gl)
+    {
+        final GLStateCache glState = screen.getGLState();
+        glState.invalidate();
+        screen.renderSimulationObjects();
+        glState.endFrame();
+
+        gl.reset();
+        screen.renderSimulationObjects();
+        glState.endFrame();
+
+        System.out.println(label + ": " + gl + ", " + glState.getLastFilteredCalls() + " filtered by the state cache");
+    }
+
+    private static void report(String label, int steps, long elapsedNanos, LatencyHistogram stepTimes)
+    {
+        final double stepsPerSecond = steps / (elapsedNanos / 1000000000.0);
+
+        System.out.println(label + ": " + String.format("%.1f", stepsPerSecond) + " steps/s, stepSimulation (us, "
+                + stepTimes.getCount() + " steps) mean: " + stepTimes.mean() / 1000 + " p50: "
+                + stepTimes.percentile(50) / 1000 + " p90: " + stepTimes.percentile(90) / 1000 + " p99: "
+                + stepTimes.percentile(99) / 1000 + " p99.9: " + stepTimes.percentile(99.9) / 1000 + " max: "
+                + stepTimes.max() / 1000);
+    }
+}
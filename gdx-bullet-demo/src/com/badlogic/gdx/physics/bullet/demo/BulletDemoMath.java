@@ -19,4 +19,35 @@ public class BulletDemoMath
         }
         return ((float) (Math.acos(vDot)));
     }
+
+    /**
+     * Writes the column-major OpenGL matrix for a rotation (unit quaternion x, y, z, w) followed by a translation.
+     */
+    public static void toOpenGLMatrix(float px, float py, float pz, float qx, float qy, float qz, float qw,
+            float[] out, int offset)
+    {
+        final float xx = qx * qx, yy = qy * qy, zz = qz * qz;
+        final float xy = qx * qy, xz = qx * qz, yz = qy * qz;
+        final float wx = qw * qx, wy = qw * qy, wz = qw * qz;
+
+        out[offset] = 1 - 2 * (yy + zz);
+        out[offset + 1] = 2 * (xy + wz);
+        out[offset + 2] = 2 * (xz - wy);
+        out[offset + 3] = 0;
+
+        out[offset + 4] = 2 * (xy - wz);
+        out[offset + 5] = 1 - 2 * (xx + zz);
+        out[offset + 6] = 2 * (yz + wx);
+        out[offset + 7] = 0;
+
+        out[offset + 8] = 2 * (xz + wy);
+        out[offset + 9] = 2 * (yz - wx);
+        out[offset + 10] = 1 - 2 * (xx + yy);
+        out[offset + 11] = 0;
+
+        out[offset + 12] = px;
+        out[offset + 13] = py;
+        out[offset + 14] = pz;
+        out[offset + 15] = 1;
+    }
 }
@@ -0,0 +1,218 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.GL11;
+import com.badlogic.gdx.graphics.GLCommon;
+
+/**
+ * A stand-in for {@link Gdx#gl10} (and {@link Gdx#gl11}) that counts the calls made through it, by name, and passes
+ * them on to the real GL if there is one. Without one (headless), calls do nothing and return zero, so rendering code
+ * can be run and its draw calls and state changes checked without a GPU:
+ *
+ * <pre>
+ * final CountingGL10 gl = CountingGL10.install();
+ * screen.renderSimulationObjects();
+ * System.out.println(gl.getDrawCalls() + " draws, " + gl.getStateChanges() + " state changes");
+ * gl.uninstall();
+ * </pre>
+ *
+ * Every call goes through reflection, so this is for measuring, not for playing.
+ */
+public class CountingGL10 implements InvocationHandler
+{
+    private static final Set<String> DRAW_CALLS = new HashSet<String>(Arrays.asList("glDrawArrays",
+            "glDrawElements"));
+
+    // Calls that change state the fixed function pipeline draws with
+    private static final Set<String> STATE_CHANGES = new HashSet<String>(Arrays.asList("glEnable", "glDisable",
+            "glEnableClientState", "glDisableClientState", "glBindTexture", "glBindBuffer", "glColor4f", "glColor4x",
+            "glVertexPointer", "glNormalPointer", "glTexCoordPointer", "glColorPointer", "glBlendFunc", "glFogf",
+            "glFogfv", "glLightf", "glLightfv", "glLightModelf", "glLightModelfv", "glMaterialf", "glMaterialfv",
+            "glTexEnvf", "glTexEnvfv", "glShadeModel", "glCullFace", "glDepthFunc", "glDepthMask", "glHint"));
+
+    private final GLCommon delegate;
+    private final GL10 gl;
+
+    // Counts by method name (int[1] so counting doesn't box)
+    private final Map<String, int[]> counts = new HashMap<String, int[]>();
+    private int totalCalls;
+    private int drawCalls;
+    private int stateChanges;
+
+    // What install() replaced
+    private GLCommon previousGL;
+    private GL10 previousGL10;
+    private GL11 previousGL11;
+
+    /**
+     * @param delegate
+     *            the GL to pass calls on to, or null to only count them
+     */
+    public CountingGL10(GL10 delegate)
+    {
+        this.delegate = delegate;
+
+        // Keep the GL11 methods available if the delegate has them
+        final Class<?> type = delegate instanceof GL11 ? GL11.class : GL10.class;
+        this.gl = (GL10) Proxy.newProxyInstance(GL10.class.getClassLoader(), new Class<?>[] { type }, this);
+    }
+
+    /**
+     * Creates a counter for the current {@link Gdx#gl10} (or for nothing, headless) and puts it in its place, along
+     * with {@link Gdx#gl} and {@link Gdx#gl11}.
+     */
+    public static CountingGL10 install()
+    {
+        final CountingGL10 counter = new CountingGL10(Gdx.gl11 != null ? Gdx.gl11 : Gdx.gl10);
+        counter.previousGL = Gdx.gl;
+        counter.previousGL10 = Gdx.gl10;
+        counter.previousGL11 = Gdx.gl11;
+
+        Gdx.gl = counter.gl;
+        Gdx.gl10 = counter.gl;
+        if (Gdx.gl11 != null)
+        {
+            Gdx.gl11 = (GL11) counter.gl;
+        }
+        return counter;
+    }
+
+    /**
+     * Puts back what {@link #install()} replaced.
+     */
+    public void uninstall()
+    {
+        Gdx.gl = previousGL;
+        Gdx.gl10 = previousGL10;
+        Gdx.gl11 = previousGL11;
+    }
+
+    /**
+     * @return the counting GL
+     */
+    public GL10 getGL()
+    {
+        return gl;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        final String name = method.getName();
+
+        if (method.getDeclaringClass() == Object.class)
+        {
+            // toString(), hashCode() and equals() are about the proxy, not GL calls
+            if ("equals".equals(name))
+            {
+                return proxy == args[0];
+            }
+            return "hashCode".equals(name) ? System.identityHashCode(proxy) : "CountingGL10 proxy";
+        }
+
+        int[] count = counts.get(name);
+        if (count == null)
+        {
+            count = new int[1];
+            counts.put(name, count);
+        }
+        count[0]++;
+        totalCalls++;
+
+        if (DRAW_CALLS.contains(name))
+        {
+            drawCalls++;
+        }
+        else if (STATE_CHANGES.contains(name))
+        {
+            stateChanges++;
+        }
+
+        if (delegate == null)
+        {
+            return defaultValue(method.getReturnType());
+        }
+
+        try
+        {
+            return method.invoke(delegate, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+        if (type == int.class)
+        {
+            return 0;
+        }
+        if (type == float.class)
+        {
+            return 0f;
+        }
+        return null;
+    }
+
+    /**
+     * @return how many times the named method was called
+     */
+    public int getCount(String name)
+    {
+        final int[] count = counts.get(name);
+        return count == null ? 0 : count[0];
+    }
+
+    public int getTotalCalls()
+    {
+        return totalCalls;
+    }
+
+    /**
+     * @return calls to glDrawArrays and glDrawElements
+     */
+    public int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+    /**
+     * @return calls that set capabilities, bindings, pointers, colors, or fog, light and material parameters
+     */
+    public int getStateChanges()
+    {
+        return stateChanges;
+    }
+
+    public void reset()
+    {
+        counts.clear();
+        totalCalls = 0;
+        drawCalls = 0;
+        stateChanges = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return totalCalls + " calls (" + drawCalls + " draws, " + stateChanges + " state changes, "
+                + getCount("glPushMatrix") + " pushes)";
+    }
+}
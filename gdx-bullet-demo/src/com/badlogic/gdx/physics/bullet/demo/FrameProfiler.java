@@ -0,0 +1,178 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records timed spans ("the physics took this long in this frame") into a preallocated ring buffer, and writes the
+ * most recent ones out as a Chrome trace_event JSON file (load it in chrome://tracing).
+ * <p>
+ * Recording doesn't allocate or lock, so it can stay on all the time and be used from any thread:
+ *
+ * <pre>
+ * final long start = profiler.begin();
+ * doSomething();
+ * profiler.end(PHASE_SOMETHING, start);
+ * </pre>
+ */
+public class FrameProfiler
+{
+    private final String[] phaseNames;
+    private int phaseCount;
+
+    // The ring: one span per slot
+    private final int capacity;
+    private final long[] starts;
+    private final long[] ends;
+    private final int[] phases;
+    private final long[] threadIds;
+    private final AtomicLong cursor = new AtomicLong();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * @param capacity
+     *            the number of spans to keep (older spans are overwritten)
+     * @param maxPhases
+     *            the maximum number of phases that can be registered
+     */
+    public FrameProfiler(int capacity, int maxPhases)
+    {
+        this.capacity = capacity;
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.phases = new int[capacity];
+        this.threadIds = new long[capacity];
+        this.phaseNames = new String[maxPhases];
+    }
+
+    /**
+     * @return the id to pass to {@link #end(int, long)} for spans with this name
+     */
+    public int registerPhase(String name)
+    {
+        phaseNames[phaseCount] = name;
+        return phaseCount++;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @return the start time to pass to {@link #end(int, long)}
+     */
+    public long begin()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a span from start until now.
+     */
+    public void end(int phase, long start)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        final long end = System.nanoTime();
+        final int slot = (int) (cursor.getAndIncrement() % capacity);
+
+        // Write the end last: a reader skips slots where it's older than the start (still being written)
+        starts[slot] = start;
+        phases[slot] = phase;
+        threadIds[slot] = Thread.currentThread().getId();
+        ends[slot] = end;
+    }
+
+    /**
+     * Writes the spans that ended in the last periodNanos as a Chrome trace_event JSON document. Spans recorded while
+     * this runs may or may not be included.
+     */
+    public void writeChromeTrace(Writer writer, long periodNanos) throws IOException
+    {
+        final long now = System.nanoTime();
+        final long last = cursor.get();
+        final long first = Math.max(0, last - capacity);
+
+        // Find the oldest span we'll write, so timestamps can start near 0
+        long origin = Long.MAX_VALUE;
+        for (long i = first; i < last; i++)
+        {
+            final int slot = (int) (i % capacity);
+            if (isWritable(slot, now, periodNanos) && starts[slot] < origin)
+            {
+                origin = starts[slot];
+            }
+        }
+
+        final Map<Long, String> threadNames = new HashMap<Long, String>();
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            threadNames.put(thread.getId(), thread.getName());
+        }
+
+        writer.write("{\"traceEvents\":[\n");
+
+        boolean firstEvent = true;
+        for (Map.Entry<Long, String> entry : threadNames.entrySet())
+        {
+            if (!firstEvent)
+            {
+                writer.write(",\n");
+            }
+            firstEvent = false;
+
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + entry.getKey()
+                    + ",\"args\":{\"name\":\"" + escape(entry.getValue()) + "\"}}");
+        }
+
+        for (long i = first; i < last; i++)
+        {
+            final int slot = (int) (i % capacity);
+            if (!isWritable(slot, now, periodNanos))
+            {
+                continue;
+            }
+
+            if (!firstEvent)
+            {
+                writer.write(",\n");
+            }
+            firstEvent = false;
+
+            writer.write("{\"name\":\"" + escape(phaseNames[phases[slot]]) + "\",\"ph\":\"X\",\"pid\":1,\"tid\":"
+                    + threadIds[slot] + ",\"ts\":" + micros(starts[slot] - origin) + ",\"dur\":"
+                    + micros(ends[slot] - starts[slot]) + "}");
+        }
+
+        writer.write("\n]}\n");
+    }
+
+    private boolean isWritable(int slot, long now, long periodNanos)
+    {
+        return ends[slot] >= starts[slot] && now - ends[slot] <= periodNanos;
+    }
+
+    private static String micros(long nanos)
+    {
+        return String.format(Locale.US, "%.3f", nanos / 1000.0);
+    }
+
+    private static String escape(String s)
+    {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
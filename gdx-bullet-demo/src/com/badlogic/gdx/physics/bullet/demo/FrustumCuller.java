@@ -0,0 +1,153 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * Tests boxes against a camera's view frustum, with an optional maximum distance (past the fog, say) in place of the
+ * far plane. Plain float math, so it works the same with or without a GL context.
+ * <p>
+ * Boxes are given in an object's own space (such as a Bullet collision shape's AABB) along with the object's OpenGL
+ * matrix; they are transformed into a world space box that contains them before testing, so a rotated object is never
+ * culled while any of it could be visible (it may be drawn when just outside, which is harmless).
+ */
+public class FrustumCuller
+{
+    // Six planes (left, right, bottom, top, near, far) as a, b, c, d with ax + by + cz + d >= 0 inside
+    private final float[] planes = new float[6 * 4];
+    private boolean valid;
+
+    private float maxDistance;
+
+    /**
+     * Sets the maximum distance from the camera, measured along its view direction, at which boxes are visible. It
+     * replaces the far plane; 0 keeps the far plane.
+     */
+    public void setMaxDistance(float maxDistance)
+    {
+        this.maxDistance = maxDistance;
+    }
+
+    public float getMaxDistance()
+    {
+        return maxDistance;
+    }
+
+    /**
+     * Extracts the planes from a camera's combined projection and view matrix.
+     *
+     * @param viewProjection
+     *            the combined matrix, column major (as in {@link com.badlogic.gdx.math.Matrix4#val})
+     * @param position
+     *            the camera position (only used with a maximum distance)
+     * @param direction
+     *            the camera's normalized view direction (only used with a maximum distance)
+     */
+    public void update(float[] viewProjection, Vector3 position, Vector3 direction)
+    {
+        final float[] m = viewProjection;
+
+        // Rows of the matrix: row i is m[i], m[4 + i], m[8 + i], m[12 + i]
+        for (int i = 0; i < 3; i++)
+        {
+            // Plane 2i is w + row i, plane 2i + 1 is w - row i
+            setPlane(i * 2, m[3] + m[i], m[7] + m[4 + i], m[11] + m[8 + i], m[15] + m[12 + i]);
+            setPlane(i * 2 + 1, m[3] - m[i], m[7] - m[4 + i], m[11] - m[8 + i], m[15] - m[12 + i]);
+        }
+
+        if (maxDistance > 0)
+        {
+            // Inside while direction . (p - position) <= maxDistance
+            setPlane(5, -direction.x, -direction.y, -direction.z, direction.dot(position) + maxDistance);
+        }
+
+        valid = true;
+    }
+
+    /**
+     * Forgets the planes, so everything is visible until the next {@link #update(float[], Vector3, Vector3)}.
+     */
+    public void invalidate()
+    {
+        valid = false;
+    }
+
+    public boolean isValid()
+    {
+        return valid;
+    }
+
+    /**
+     * Copies a plane (0 to 5: left, right, bottom, top, near, far or max distance) as a, b, c, d into out.
+     */
+    void getPlane(int plane, float[] out)
+    {
+        System.arraycopy(planes, plane * 4, out, 0, 4);
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d)
+    {
+        // Normalized, so distances are in world units
+        final float length = (float) Math.sqrt(a * a + b * b + c * c);
+        final int i = plane * 4;
+        planes[i] = a / length;
+        planes[i + 1] = b / length;
+        planes[i + 2] = c / length;
+        planes[i + 3] = d / length;
+    }
+
+    /**
+     * @return false only if the world space box with the given center and half extents is completely outside the
+     *         frustum
+     */
+    public boolean isVisible(float centerX, float centerY, float centerZ, float extentX, float extentY, float extentZ)
+    {
+        if (!valid)
+        {
+            return true;
+        }
+
+        for (int i = 0; i < planes.length; i += 4)
+        {
+            final float a = planes[i];
+            final float b = planes[i + 1];
+            final float c = planes[i + 2];
+
+            // The box's distance from the plane at its center, and its "radius" toward the plane
+            final float distance = a * centerX + b * centerY + c * centerZ + planes[i + 3];
+            final float radius = Math.abs(a) * extentX + Math.abs(b) * extentY + Math.abs(c) * extentZ;
+
+            if (distance + radius < 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param localBounds
+     *            the box in the object's own space: min x, y, z, max x, y, z
+     * @param glMatrix
+     *            the object's OpenGL matrix (column major)
+     * @return false only if the box is completely outside the frustum
+     */
+    public boolean isVisible(float[] localBounds, float[] glMatrix)
+    {
+        final float centerX = (localBounds[0] + localBounds[3]) / 2;
+        final float centerY = (localBounds[1] + localBounds[4]) / 2;
+        final float centerZ = (localBounds[2] + localBounds[5]) / 2;
+        final float extentX = (localBounds[3] - localBounds[0]) / 2;
+        final float extentY = (localBounds[4] - localBounds[1]) / 2;
+        final float extentZ = (localBounds[5] - localBounds[2]) / 2;
+
+        final float[] m = glMatrix;
+
+        // Transform the center, and grow the extents to hold the rotated box (|M| times the extents)
+        return isVisible(m[0] * centerX + m[4] * centerY + m[8] * centerZ + m[12], m[1] * centerX + m[5] * centerY
+                + m[9] * centerZ + m[13], m[2] * centerX + m[6] * centerY + m[10] * centerZ + m[14],
+                Math.abs(m[0]) * extentX + Math.abs(m[4]) * extentY + Math.abs(m[8]) * extentZ, Math.abs(m[1])
+                        * extentX + Math.abs(m[5]) * extentY + Math.abs(m[9]) * extentZ, Math.abs(m[2]) * extentX
+                        + Math.abs(m[6]) * extentY + Math.abs(m[10]) * extentZ);
+    }
+}
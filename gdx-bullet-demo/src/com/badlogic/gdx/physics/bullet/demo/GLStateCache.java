@@ -0,0 +1,556 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.GL11;
+import com.badlogic.gdx.graphics.GLCommon;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Sits in front of {@link Gdx#gl10} for the fixed function state the demo sets every frame (capabilities, the bound
+ * texture, the current color, the blend function, hints, and fog and light parameters), and skips calls that wouldn't
+ * change anything.
+ * <p>
+ * The demo's own rendering calls the cache's methods directly. {@link #install()} also puts a {@link GL10} in place of
+ * {@link Gdx#gl10} (and {@link Gdx#gl}, and {@link Gdx#gl11} if there is one), the way {@link CountingGL10} does, that
+ * sends the calls above through the cache and passes everything else on. Code that knows nothing about the cache (a
+ * {@link com.badlogic.gdx.graphics.g2d.SpriteBatch}, for example) then keeps it up to date too. That GL is a proxy,
+ * because the set of GL10 methods differs between libgdx versions, so its calls cost a reflective invoke each.
+ * <p>
+ * Without it installed, the cache only knows about calls made through it. After anything else changes the same state,
+ * invalidate what it touched so the next call goes through. Light positions and spot directions are always passed on,
+ * because GL transforms them by the current modelview matrix.
+ * <p>
+ * Not thread safe; use it on the GL thread.
+ */
+public class GLStateCache
+{
+    private static final byte UNKNOWN = 0;
+    private static final byte ENABLED = 1;
+    private static final byte DISABLED = 2;
+
+    // Capabilities seen so far and their state
+    private int[] capabilities = new int[16];
+    private byte[] capabilityStates = new byte[16];
+    private int capabilityCount;
+
+    private int boundTexture = -1;
+
+    private boolean colorKnown;
+    private float red, green, blue, alpha;
+
+    private int blendSource = -1;
+    private int blendDestination = -1;
+
+    private final ParameterCache hints = new ParameterCache();
+    private final ParameterCache fogParameters = new ParameterCache();
+    private final ParameterCache lightParameters = new ParameterCache();
+    private final float[] scalar = new float[1];
+
+    // Where calls go while installed (otherwise whatever Gdx.gl10 is), and what install() replaced
+    private GL10 delegate;
+    private GLCommon previousGL;
+    private GL10 previousGL10;
+    private GL11 previousGL11;
+
+    // Counts since the last endFrame(), and for the frame before
+    private int issuedCalls;
+    private int filteredCalls;
+    private int lastIssuedCalls;
+    private int lastFilteredCalls;
+
+    /**
+     * Floating point parameters by key, in small arrays (there are only ever a handful).
+     */
+    private static final class ParameterCache
+    {
+        private long[] keys = new long[8];
+        private float[][] values = new float[8][];
+        private int count;
+
+        /**
+         * @return false if the parameter already has these values; otherwise remembers them and returns true
+         */
+        boolean update(long key, float[] params, int offset, int length)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                if (keys[i] == key)
+                {
+                    final float[] cached = values[i];
+                    boolean same = true;
+                    for (int j = 0; j < length; j++)
+                    {
+                        if (cached[j] != params[offset + j])
+                        {
+                            same = false;
+                            cached[j] = params[offset + j];
+                        }
+                    }
+                    return !same;
+                }
+            }
+
+            if (count == keys.length)
+            {
+                final long[] newKeys = new long[count * 2];
+                System.arraycopy(keys, 0, newKeys, 0, count);
+                keys = newKeys;
+
+                final float[][] newValues = new float[count * 2][];
+                System.arraycopy(values, 0, newValues, 0, count);
+                values = newValues;
+            }
+
+            keys[count] = key;
+            values[count] = new float[4];
+            System.arraycopy(params, offset, values[count], 0, length);
+            count++;
+            return true;
+        }
+
+        void clear()
+        {
+            count = 0;
+        }
+    }
+
+    public void glEnable(int capability)
+    {
+        if (setCapability(capability, ENABLED))
+        {
+            gl().glEnable(capability);
+        }
+    }
+
+    public void glDisable(int capability)
+    {
+        if (setCapability(capability, DISABLED))
+        {
+            gl().glDisable(capability);
+        }
+    }
+
+    /**
+     * @return true if the capability's state changes (or wasn't known)
+     */
+    private boolean setCapability(int capability, byte state)
+    {
+        for (int i = 0; i < capabilityCount; i++)
+        {
+            if (capabilities[i] == capability)
+            {
+                return update(capabilityStates, i, state);
+            }
+        }
+
+        if (capabilityCount == capabilities.length)
+        {
+            final int[] newCapabilities = new int[capabilityCount * 2];
+            System.arraycopy(capabilities, 0, newCapabilities, 0, capabilityCount);
+            capabilities = newCapabilities;
+
+            final byte[] newStates = new byte[capabilityCount * 2];
+            System.arraycopy(capabilityStates, 0, newStates, 0, capabilityCount);
+            capabilityStates = newStates;
+        }
+
+        capabilities[capabilityCount] = capability;
+        capabilityStates[capabilityCount] = UNKNOWN;
+        return update(capabilityStates, capabilityCount++, state);
+    }
+
+    private boolean update(byte[] states, int index, byte state)
+    {
+        if (states[index] == state)
+        {
+            filteredCalls++;
+            return false;
+        }
+
+        states[index] = state;
+        issuedCalls++;
+        return true;
+    }
+
+    /**
+     * Binds the texture unless it's already bound.
+     */
+    public void bindTexture(Texture texture)
+    {
+        glBindTexture(GL10.GL_TEXTURE_2D, texture.getTextureObjectHandle());
+    }
+
+    public void glBindTexture(int target, int texture)
+    {
+        // Only 2D textures are cached
+        if (target != GL10.GL_TEXTURE_2D)
+        {
+            issuedCalls++;
+            gl().glBindTexture(target, texture);
+            return;
+        }
+
+        if (texture == boundTexture)
+        {
+            filteredCalls++;
+            return;
+        }
+
+        boundTexture = texture;
+        issuedCalls++;
+        gl().glBindTexture(target, texture);
+    }
+
+    public void glColor4f(float red, float green, float blue, float alpha)
+    {
+        if (colorKnown && red == this.red && green == this.green && blue == this.blue && alpha == this.alpha)
+        {
+            filteredCalls++;
+            return;
+        }
+
+        colorKnown = true;
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.alpha = alpha;
+        issuedCalls++;
+        gl().glColor4f(red, green, blue, alpha);
+    }
+
+    public void glBlendFunc(int source, int destination)
+    {
+        if (source == blendSource && destination == blendDestination)
+        {
+            filteredCalls++;
+            return;
+        }
+
+        blendSource = source;
+        blendDestination = destination;
+        issuedCalls++;
+        gl().glBlendFunc(source, destination);
+    }
+
+    public void glHint(int target, int mode)
+    {
+        scalar[0] = mode;
+        if (changed(hints, target, scalar, 0, 1))
+        {
+            gl().glHint(target, mode);
+        }
+    }
+
+    public void glFogf(int pname, float param)
+    {
+        scalar[0] = param;
+        if (changed(fogParameters, pname, scalar, 0, 1))
+        {
+            gl().glFogf(pname, param);
+        }
+    }
+
+    public void glFogfv(int pname, float[] params, int offset)
+    {
+        if (changed(fogParameters, pname, params, offset, Math.min(4, params.length - offset)))
+        {
+            gl().glFogfv(pname, params, offset);
+        }
+    }
+
+    public void glLightf(int light, int pname, float param)
+    {
+        scalar[0] = param;
+        if (changed(lightParameters, (long) light << 32 | pname, scalar, 0, 1))
+        {
+            gl().glLightf(light, pname, param);
+        }
+    }
+
+    public void glLightfv(int light, int pname, float[] params, int offset)
+    {
+        // Positions and directions are in eye space, so they change with the modelview matrix
+        if (pname == GL10.GL_POSITION || pname == GL10.GL_SPOT_DIRECTION)
+        {
+            issuedCalls++;
+            gl().glLightfv(light, pname, params, offset);
+            return;
+        }
+
+        if (changed(lightParameters, (long) light << 32 | pname, params, offset, Math.min(4, params.length - offset)))
+        {
+            gl().glLightfv(light, pname, params, offset);
+        }
+    }
+
+    public void glLightModelfv(int pname, float[] params, int offset)
+    {
+        // Light model parameters share the light cache, under a key no light uses
+        if (changed(lightParameters, -1L << 32 | pname, params, offset, Math.min(4, params.length - offset)))
+        {
+            gl().glLightModelfv(pname, params, offset);
+        }
+    }
+
+    private boolean changed(ParameterCache cache, long key, float[] params, int offset, int length)
+    {
+        if (cache.update(key, params, offset, length))
+        {
+            issuedCalls++;
+            return true;
+        }
+
+        filteredCalls++;
+        return false;
+    }
+
+    private GL10 gl()
+    {
+        return delegate != null ? delegate : Gdx.gl10;
+    }
+
+    /**
+     * Puts a GL that filters through this cache in place of {@link Gdx#gl10}, {@link Gdx#gl} and {@link Gdx#gl11}
+     * (see the class comment). The cache passes calls on to the GL that was there.
+     * 
+     * @return the installed GL
+     */
+    public GL10 install()
+    {
+        if (delegate != null)
+        {
+            throw new GdxRuntimeException("The state cache is already installed");
+        }
+        if (Gdx.gl10 == null)
+        {
+            throw new GdxRuntimeException("No GL10 to cache the state of");
+        }
+
+        previousGL = Gdx.gl;
+        previousGL10 = Gdx.gl10;
+        previousGL11 = Gdx.gl11;
+
+        // Keep the GL11 methods available if the GL has them
+        final GL10 current = Gdx.gl11 != null ? Gdx.gl11 : Gdx.gl10;
+        final Class<?> type = current instanceof GL11 ? GL11.class : GL10.class;
+        final GL10 gl = (GL10) Proxy.newProxyInstance(GL10.class.getClassLoader(), new Class<?>[] { type },
+                new Filter());
+        delegate = current;
+
+        Gdx.gl = gl;
+        Gdx.gl10 = gl;
+        if (Gdx.gl11 != null)
+        {
+            Gdx.gl11 = (GL11) gl;
+        }
+        return gl;
+    }
+
+    /**
+     * Puts back what {@link #install()} replaced.
+     */
+    public void uninstall()
+    {
+        if (delegate == null)
+        {
+            return;
+        }
+
+        Gdx.gl = previousGL;
+        Gdx.gl10 = previousGL10;
+        Gdx.gl11 = previousGL11;
+        delegate = null;
+    }
+
+    public boolean isInstalled()
+    {
+        return delegate != null;
+    }
+
+    /**
+     * Sends the calls the cache knows through it, and passes the rest on.
+     */
+    private final class Filter implements InvocationHandler
+    {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            final String name = method.getName();
+
+            if (method.getDeclaringClass() == Object.class)
+            {
+                // toString(), hashCode() and equals() are about the proxy, not GL calls
+                if ("equals".equals(name))
+                {
+                    return proxy == args[0];
+                }
+                return "hashCode".equals(name) ? System.identityHashCode(proxy) : "GLStateCache proxy";
+            }
+
+            if (filter(name, method.getParameterTypes(), args))
+            {
+                return null;
+            }
+
+            try
+            {
+                return method.invoke(delegate, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * @return true if the call was handled by the cache
+         */
+        private boolean filter(String name, Class<?>[] types, Object[] args)
+        {
+            if ("glEnable".equals(name))
+            {
+                glEnable((Integer) args[0]);
+            }
+            else if ("glDisable".equals(name))
+            {
+                glDisable((Integer) args[0]);
+            }
+            else if ("glBindTexture".equals(name))
+            {
+                glBindTexture((Integer) args[0], (Integer) args[1]);
+            }
+            else if ("glColor4f".equals(name))
+            {
+                glColor4f((Float) args[0], (Float) args[1], (Float) args[2], (Float) args[3]);
+            }
+            else if ("glBlendFunc".equals(name))
+            {
+                glBlendFunc((Integer) args[0], (Integer) args[1]);
+            }
+            else if ("glHint".equals(name))
+            {
+                glHint((Integer) args[0], (Integer) args[1]);
+            }
+            else if ("glFogf".equals(name))
+            {
+                glFogf((Integer) args[0], (Float) args[1]);
+            }
+            else if ("glLightf".equals(name))
+            {
+                glLightf((Integer) args[0], (Integer) args[1], (Float) args[2]);
+            }
+            // The array forms only; the buffer forms go straight through
+            else if ("glFogfv".equals(name) && types[1] == float[].class)
+            {
+                glFogfv((Integer) args[0], (float[]) args[1], (Integer) args[2]);
+            }
+            else if ("glLightfv".equals(name) && types[2] == float[].class)
+            {
+                glLightfv((Integer) args[0], (Integer) args[1], (float[]) args[2], (Integer) args[3]);
+            }
+            else if ("glLightModelfv".equals(name) && types[1] == float[].class)
+            {
+                glLightModelfv((Integer) args[0], (float[]) args[1], (Integer) args[2]);
+            }
+            else
+            {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Forgets everything, so every next call goes through.
+     */
+    public void invalidate()
+    {
+        capabilityCount = 0;
+        invalidateTexture();
+        invalidateColor();
+        invalidateBlendFunc();
+        hints.clear();
+        fogParameters.clear();
+        lightParameters.clear();
+    }
+
+    /**
+     * Forgets whether the capability is enabled.
+     */
+    public void invalidateCapability(int capability)
+    {
+        for (int i = 0; i < capabilityCount; i++)
+        {
+            if (capabilities[i] == capability)
+            {
+                capabilityStates[i] = UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * Forgets which texture is bound (call after binding textures some other way).
+     */
+    public void invalidateTexture()
+    {
+        boundTexture = -1;
+    }
+
+    public void invalidateBlendFunc()
+    {
+        blendSource = -1;
+        blendDestination = -1;
+    }
+
+    /**
+     * Forgets the current color (call after drawing with a color array, which leaves it undefined).
+     */
+    public void invalidateColor()
+    {
+        colorKnown = false;
+    }
+
+    /**
+     * Makes this frame's counts the "last frame" counts and starts counting again.
+     */
+    public void endFrame()
+    {
+        lastIssuedCalls = issuedCalls;
+        lastFilteredCalls = filteredCalls;
+        issuedCalls = 0;
+        filteredCalls = 0;
+    }
+
+    /**
+     * @return the calls passed on to GL since the last {@link #endFrame()}
+     */
+    public int getIssuedCalls()
+    {
+        return issuedCalls;
+    }
+
+    /**
+     * @return the calls skipped since the last {@link #endFrame()}
+     */
+    public int getFilteredCalls()
+    {
+        return filteredCalls;
+    }
+
+    public int getLastIssuedCalls()
+    {
+        return lastIssuedCalls;
+    }
+
+    public int getLastFilteredCalls()
+    {
+        return lastFilteredCalls;
+    }
+}
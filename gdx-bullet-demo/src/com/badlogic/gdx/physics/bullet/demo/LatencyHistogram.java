@@ -0,0 +1,243 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+/**
+ * A fixed-size, log-bucketed histogram of non-negative samples (usually nanosecond latencies) that reports
+ * percentiles without allocating.
+ * <p>
+ * Values below 16 get their own bucket. Above that, every power of two is split into 16 linear sub-buckets, so any
+ * reported percentile is within 1/16 (about 6%) of the true value.
+ * <p>
+ * A histogram is either cumulative (every sample since the last {@link #reset()}) or windowed (only the last n
+ * samples, which it also keeps so the oldest can be taken back out of the buckets).
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS + 1);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    // Only for windowed histograms
+    private final long[] window;
+    private int windowIndex;
+
+    /**
+     * Creates a cumulative histogram.
+     */
+    public LatencyHistogram()
+    {
+        this(0);
+    }
+
+    /**
+     * @param windowSize
+     *            the number of most recent samples to report on, or 0 for a cumulative histogram
+     */
+    public LatencyHistogram(int windowSize)
+    {
+        this.window = windowSize > 0 ? new long[windowSize] : null;
+        reset();
+    }
+
+    public void add(long sample)
+    {
+        if (sample < 0)
+        {
+            sample = 0;
+        }
+
+        if (window != null)
+        {
+            if (count == window.length)
+            {
+                // Take the oldest sample out
+                final long oldest = window[windowIndex];
+                counts[bucketIndex(oldest)]--;
+                sum -= oldest;
+                count--;
+            }
+
+            window[windowIndex++] = sample;
+            if (windowIndex == window.length)
+            {
+                windowIndex = 0;
+            }
+        }
+
+        counts[bucketIndex(sample)]++;
+        sum += sample;
+        count++;
+
+        if (sample < min)
+        {
+            min = sample;
+        }
+
+        if (sample > max)
+        {
+            max = sample;
+        }
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = 0;
+        }
+
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        windowIndex = 0;
+    }
+
+    /**
+     * @return the number of samples reported on (at most the window size for a windowed histogram)
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long mean()
+    {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return the smallest sample, or 0 if there are none
+     */
+    public long min()
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        if (window != null)
+        {
+            // The window may have rolled past the smallest sample; the lowest non-empty bucket is close enough
+            return Math.max(min, bucketLowerBound(firstNonEmptyBucket()));
+        }
+
+        return min;
+    }
+
+    /**
+     * @return the largest sample, or 0 if there are none
+     */
+    public long max()
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        if (window != null)
+        {
+            // The window may have rolled past the largest sample; the highest non-empty bucket is close enough
+            return Math.min(max, bucketUpperBound(lastNonEmptyBucket()));
+        }
+
+        return max;
+    }
+
+    /**
+     * @param percentile
+     *            0 to 100
+     * @return the (bucket accurate) value at or below which the given percentage of samples fall, or 0 if there are
+     *         no samples
+     */
+    public long percentile(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        if (rank < 1)
+        {
+            rank = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return Math.min(bucketUpperBound(i), max());
+            }
+        }
+
+        return max();
+    }
+
+    private int firstNonEmptyBucket()
+    {
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] != 0)
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private int lastNonEmptyBucket()
+    {
+        for (int i = counts.length - 1; i >= 0; i--)
+        {
+            if (counts[i] != 0)
+            {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        // Keep the top SUB_BUCKET_BITS + 1 bits: a leading one and the sub-bucket
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS * (shift + 1) + subBucket;
+    }
+
+    private static long bucketLowerBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    private static long bucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        return bucketLowerBound(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,152 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+import com.badlogic.gdx.physics.bullet.SWIGTYPE_p_unsigned_char;
+import com.badlogic.gdx.physics.bullet.SWIGTYPE_p_void;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Turns direct buffers into the raw pointer types the Bullet bindings take for memory the caller owns (void* and
+ * unsigned char* arguments and fields), so Bullet can read or write a buffer in place.
+ * <p>
+ * The bindings have no buffer overloads for these, and their pointer wrappers only take an address through a
+ * protected constructor, so this subclasses them. The address comes from the buffer itself (the field the VM keeps it
+ * in: "address" on desktop VMs, "effectiveDirectAddress" on Android), at the buffer's position.
+ * <p>
+ * Bullet only gets the address, so keep the buffer reachable for as long as Bullet uses the memory. Some VMs don't let
+ * the field be read (newer desktop VMs without --add-opens java.base/java.nio=ALL-UNNAMED); check
+ * {@link #isAvailable()} and fall back to copying there.
+ */
+public final class NativePointers
+{
+    private static final class VoidPointer extends SWIGTYPE_p_void
+    {
+        VoidPointer(long address)
+        {
+            super(address, false);
+        }
+    }
+
+    private static final class UnsignedCharPointer extends SWIGTYPE_p_unsigned_char
+    {
+        UnsignedCharPointer(long address)
+        {
+            super(address, false);
+        }
+    }
+
+    private static final Field ADDRESS = findAddressField();
+
+    private NativePointers()
+    {
+    }
+
+    private static Field findAddressField()
+    {
+        final String[] names = { "address", "effectiveDirectAddress" };
+        for (String name : names)
+        {
+            try
+            {
+                final Field field = Buffer.class.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            }
+            catch (NoSuchFieldException e)
+            {
+                // Try the next
+            }
+            catch (RuntimeException e)
+            {
+                // A security manager, or (InaccessibleObjectException) a module that isn't open to us
+                break;
+            }
+        }
+
+        // Reported when something needs it
+        return null;
+    }
+
+    /**
+     * @return true if buffer addresses can be read on this VM, so the other methods work for direct buffers
+     */
+    public static boolean isAvailable()
+    {
+        return ADDRESS != null;
+    }
+
+    /**
+     * @return the native address of the buffer's element at its position
+     * @throws GdxRuntimeException
+     *             if the buffer isn't direct, or the VM doesn't say where its buffers are
+     */
+    public static long address(Buffer buffer)
+    {
+        if (!buffer.isDirect())
+        {
+            throw new GdxRuntimeException("Bullet can only use direct buffers in place");
+        }
+        if (ADDRESS == null)
+        {
+            throw new GdxRuntimeException("Can't get buffer addresses on this VM");
+        }
+
+        final long base;
+        try
+        {
+            base = ADDRESS.getLong(buffer);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new GdxRuntimeException("Can't get buffer addresses on this VM", e);
+        }
+
+        if (base == 0)
+        {
+            throw new GdxRuntimeException("Buffer has no native address");
+        }
+        return base + (long) buffer.position() * elementSize(buffer);
+    }
+
+    /**
+     * @return a void* to the buffer's memory from its position on
+     */
+    public static SWIGTYPE_p_void toVoid(Buffer buffer)
+    {
+        return new VoidPointer(address(buffer));
+    }
+
+    /**
+     * @return an unsigned char* to the buffer's memory from its position on
+     */
+    public static SWIGTYPE_p_unsigned_char toUnsignedChar(Buffer buffer)
+    {
+        return new UnsignedCharPointer(address(buffer));
+    }
+
+    private static int elementSize(Buffer buffer)
+    {
+        if (buffer instanceof ByteBuffer)
+        {
+            return 1;
+        }
+        if (buffer instanceof ShortBuffer || buffer instanceof CharBuffer)
+        {
+            return 2;
+        }
+        if (buffer instanceof LongBuffer || buffer instanceof DoubleBuffer)
+        {
+            return 8;
+        }
+
+        // Float and int
+        return 4;
+    }
+}
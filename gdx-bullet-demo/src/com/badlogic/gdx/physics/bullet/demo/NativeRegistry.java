@@ -0,0 +1,448 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Keeps count of the Bullet native objects (the bt* classes) the demo allocates, by type, with a rough estimate of
+ * their native size, and guards their deletion.
+ * <p>
+ * Every allocation goes through {@link #track(Object)} (or {@link #trackShared(Object)} for objects meant to outlive
+ * a screen, like pooled scratch transforms and shapes the asset registry keeps), and every delete is guarded by
+ * {@link #release(Object)}:
+ *
+ * <pre>
+ * if (NativeRegistry.release(shape))
+ * {
+ *     shape.delete();
+ * }
+ * </pre>
+ *
+ * release() returns false for an object that isn't live (already deleted, or never tracked), so a second delete of
+ * the same object never reaches Bullet.
+ * <p>
+ * In debug mode (see {@link #setDebug(boolean)}, or start with -Dbulletdemo.nativedebug=true) the registry also
+ * remembers where each object was allocated and deleted, throws on double deletes and when
+ * {@link #checkLive(Object)} finds a deleted object, and leak reports say where each leaked object came from. Deleted
+ * objects are remembered for good, so only use it to hunt something down.
+ * <p>
+ * Screens open a scope when they're created and close it when they're disposed. When the last open scope closes,
+ * everything tracked (not shared) since the first one opened that's still live is reported as a leak.
+ * <p>
+ * Thread safe. Every call synchronizes on the class, which is fine at the rate objects are created and deleted
+ * (bodies are pooled), but keep it out of per-step code. The exception is {@link #checkLive(Object)}, which does
+ * nothing outside debug mode.
+ */
+public final class NativeRegistry
+{
+    // Rough native sizes in bytes; enough to see what grows, not exact
+    private static final long DEFAULT_ESTIMATED_BYTES = 64;
+    private static final Map<String, Long> ESTIMATED_BYTES = new HashMap<String, Long>();
+
+    static
+    {
+        ESTIMATED_BYTES.put("btTransform", 64L);
+        ESTIMATED_BYTES.put("btDefaultMotionState", 208L);
+        ESTIMATED_BYTES.put("btRigidBodyConstructionInfo", 160L);
+        ESTIMATED_BYTES.put("btRigidBody", 720L);
+        ESTIMATED_BYTES.put("btBoxShape", 96L);
+        ESTIMATED_BYTES.put("btSphereShape", 80L);
+        ESTIMATED_BYTES.put("btStaticPlaneShape", 96L);
+        ESTIMATED_BYTES.put("btIndexedMesh", 64L);
+        ESTIMATED_BYTES.put("btTriangleIndexVertexArray", 96L);
+        ESTIMATED_BYTES.put("btBvhTriangleMeshShape", 128L);
+        ESTIMATED_BYTES.put("btSequentialImpulseConstraintSolver", 512L);
+        ESTIMATED_BYTES.put("btDbvtBroadphase", 1024L);
+        ESTIMATED_BYTES.put("btCollisionDispatcher", 8 * 1024L);
+        ESTIMATED_BYTES.put("btDiscreteDynamicsWorld", 2 * 1024L);
+
+        // Mostly its persistent manifold and collision algorithm pools (4096 of each by default)
+        ESTIMATED_BYTES.put("btDefaultCollisionConfiguration", 4 * 1024 * 1024L);
+    }
+
+    // The most leaks listed one by one when a scope closes (the rest are only counted by type)
+    private static final int MAX_LEAKS_LISTED = 20;
+
+    // The most untracked deletes reported
+    private static final int MAX_UNTRACKED_REPORTED = 10;
+
+    private static final class TypeStats
+    {
+        final String name;
+        int live;
+        long liveBytes;
+        long allocated;
+        long deleted;
+
+        TypeStats(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private static final class Entry
+    {
+        final TypeStats type;
+        final long bytes;
+        final boolean shared;
+        final long sequence;
+
+        // Debug mode only
+        final Throwable allocatedAt;
+        Throwable deletedAt;
+
+        Entry(TypeStats type, long bytes, boolean shared, long sequence, Throwable allocatedAt)
+        {
+            this.type = type;
+            this.bytes = bytes;
+            this.shared = shared;
+            this.sequence = sequence;
+            this.allocatedAt = allocatedAt;
+        }
+    }
+
+    private static volatile boolean debug = Boolean.getBoolean("bulletdemo.nativedebug");
+
+    private static final IdentityHashMap<Object, Entry> live = new IdentityHashMap<Object, Entry>();
+    private static final IdentityHashMap<Object, Entry> deleted = new IdentityHashMap<Object, Entry>();
+    private static final Map<Class<?>, TypeStats> types = new HashMap<Class<?>, TypeStats>();
+
+    private static long sequence;
+    private static long liveBytes;
+    private static long doubleDeletes;
+    private static long untrackedDeletes;
+
+    private static int openScopes;
+    private static long scopeStart;
+
+    private NativeRegistry()
+    {
+    }
+
+    /**
+     * Turns debug mode on or off. Objects allocated before it was on have no allocation site.
+     */
+    public static synchronized void setDebug(boolean debug)
+    {
+        NativeRegistry.debug = debug;
+        if (!debug)
+        {
+            deleted.clear();
+        }
+    }
+
+    public static synchronized boolean isDebug()
+    {
+        return debug;
+    }
+
+    /**
+     * Counts a new native object, with its size estimated from its type.
+     *
+     * @return the object
+     */
+    public static <T> T track(T object)
+    {
+        return track(object, estimateBytes(object), false);
+    }
+
+    /**
+     * Counts a new native object whose size the caller knows better than the type does (a shape with a BVH, say).
+     *
+     * @return the object
+     */
+    public static <T> T track(T object, long bytes)
+    {
+        return track(object, bytes, false);
+    }
+
+    /**
+     * Counts a new native object that's meant to outlive the screen that made it, so it's never reported as a leak
+     * when the screen is disposed (it's still counted, and its deletes still guarded).
+     *
+     * @return the object
+     */
+    public static <T> T trackShared(T object)
+    {
+        return track(object, estimateBytes(object), true);
+    }
+
+    /**
+     * Like {@link #trackShared(Object)}, with a known size.
+     */
+    public static <T> T trackShared(T object, long bytes)
+    {
+        return track(object, bytes, true);
+    }
+
+    private static synchronized <T> T track(T object, long bytes, boolean shared)
+    {
+        final TypeStats type = getType(object);
+        final Entry entry = new Entry(type, bytes, shared, sequence++, debug ? new Throwable("Allocated here") : null);
+
+        if (live.put(object, entry) != null)
+        {
+            throw new GdxRuntimeException("Tracked twice: " + type.name);
+        }
+
+        type.live++;
+        type.liveBytes += bytes;
+        type.allocated++;
+        liveBytes += bytes;
+        return object;
+    }
+
+    /**
+     * Stops counting an object that's about to be deleted.
+     *
+     * @return true if the object was live, so the caller should delete it; false if it isn't (deleted already, or not
+     *         tracked), so deleting it could be a double delete
+     * @throws GdxRuntimeException
+     *             in debug mode, for an object that was already deleted
+     */
+    public static synchronized boolean release(Object object)
+    {
+        final Entry entry = live.remove(object);
+        if (entry == null)
+        {
+            return releaseUnknown(object);
+        }
+
+        entry.type.live--;
+        entry.type.liveBytes -= entry.bytes;
+        entry.type.deleted++;
+        liveBytes -= entry.bytes;
+
+        if (debug)
+        {
+            entry.deletedAt = new Throwable("Deleted here");
+            deleted.put(object, entry);
+        }
+        return true;
+    }
+
+    private static boolean releaseUnknown(Object object)
+    {
+        final Entry entry = deleted.get(object);
+        if (entry != null)
+        {
+            doubleDeletes++;
+            throw new GdxRuntimeException("Double delete of " + entry.type.name + " (the cause is the first delete)",
+                    entry.deletedAt);
+        }
+
+        // Outside debug mode there's no telling a double delete from an object nobody tracked; either way, not
+        // deleting it is the safe choice (a leak beats a crash)
+        if (untrackedDeletes++ < MAX_UNTRACKED_REPORTED)
+        {
+            System.err.println("NativeRegistry: not deleting " + object.getClass().getSimpleName()
+                    + " again (already deleted, or allocated without track())");
+        }
+        return false;
+    }
+
+    /**
+     * In debug mode, makes sure an object hasn't been deleted before it's handed to Bullet. Does nothing otherwise.
+     *
+     * @throws GdxRuntimeException
+     *             if the object was deleted (the cause says where)
+     */
+    public static void checkLive(Object object)
+    {
+        if (!debug)
+        {
+            return;
+        }
+
+        synchronized (NativeRegistry.class)
+        {
+            final Entry entry = deleted.get(object);
+            if (entry != null)
+            {
+                throw new GdxRuntimeException("Use after delete of " + entry.type.name, entry.deletedAt);
+            }
+        }
+    }
+
+    /**
+     * Opens a scope (see the class comment). Screens call this when they're created.
+     */
+    public static synchronized void beginScope()
+    {
+        if (openScopes++ == 0)
+        {
+            scopeStart = sequence;
+        }
+    }
+
+    /**
+     * Closes a scope. If it was the last open one, reports every unshared object tracked since the first one opened
+     * that's still live.
+     *
+     * @param name
+     *            what's closing it, for the report
+     * @return the number of leaks reported (0 while other scopes are still open)
+     */
+    public static synchronized int endScope(String name)
+    {
+        if (openScopes == 0)
+        {
+            throw new IllegalStateException("No open scope to end");
+        }
+        if (--openScopes > 0)
+        {
+            return 0;
+        }
+
+        final List<Entry> leaks = new ArrayList<Entry>();
+        for (Entry entry : live.values())
+        {
+            if (!entry.shared && entry.sequence >= scopeStart)
+            {
+                leaks.add(entry);
+            }
+        }
+
+        if (leaks.isEmpty())
+        {
+            return 0;
+        }
+
+        // Totals by type, then the first few one by one
+        final Map<TypeStats, long[]> byType = new IdentityHashMap<TypeStats, long[]>();
+        for (Entry leak : leaks)
+        {
+            long[] counts = byType.get(leak.type);
+            if (counts == null)
+            {
+                counts = new long[2];
+                byType.put(leak.type, counts);
+            }
+            counts[0]++;
+            counts[1] += leak.bytes;
+        }
+
+        System.err.println(name + " disposed with " + leaks.size() + " native objects leaked:");
+        for (Map.Entry<TypeStats, long[]> type : byType.entrySet())
+        {
+            System.err.println("  " + type.getKey().name + ": " + type.getValue()[0] + " (~" + type.getValue()[1]
+                    / 1024 + " KB)");
+        }
+
+        for (int i = 0; i < leaks.size() && i < MAX_LEAKS_LISTED; i++)
+        {
+            final Entry leak = leaks.get(i);
+            System.err.println("  leaked " + leak.type.name + " #" + leak.sequence + allocationSite(leak));
+        }
+        if (!debug)
+        {
+            System.err.println("  (run with -Dbulletdemo.nativedebug=true to see where they were allocated)");
+        }
+
+        return leaks.size();
+    }
+
+    /**
+     * @return " allocated at" and the first frames outside this class, or nothing outside debug mode
+     */
+    private static String allocationSite(Entry entry)
+    {
+        if (entry.allocatedAt == null)
+        {
+            return "";
+        }
+
+        final StringBuilder site = new StringBuilder(" allocated at");
+        int frames = 0;
+        for (StackTraceElement frame : entry.allocatedAt.getStackTrace())
+        {
+            if (frame.getClassName().equals(NativeRegistry.class.getName()))
+            {
+                continue;
+            }
+
+            site.append("\n      ").append(frame);
+            if (++frames == 4)
+            {
+                break;
+            }
+        }
+        return site.toString();
+    }
+
+    /**
+     * @return the number of tracked objects not deleted yet
+     */
+    public static synchronized int getLiveCount()
+    {
+        return live.size();
+    }
+
+    /**
+     * @return the number of live objects of a type
+     */
+    public static synchronized int getLiveCount(Class<?> type)
+    {
+        final TypeStats stats = types.get(type);
+        return stats != null ? stats.live : 0;
+    }
+
+    /**
+     * @return the estimated native size of every live object in bytes
+     */
+    public static synchronized long getLiveBytes()
+    {
+        return liveBytes;
+    }
+
+    /**
+     * @return the number of double deletes caught (in debug mode)
+     */
+    public static synchronized long getDoubleDeletes()
+    {
+        return doubleDeletes;
+    }
+
+    /**
+     * @return the number of deletes refused because the object wasn't live
+     */
+    public static synchronized long getUntrackedDeletes()
+    {
+        return untrackedDeletes;
+    }
+
+    /**
+     * Prints live, allocated and deleted counts for every type seen.
+     */
+    public static synchronized void dumpStats()
+    {
+        System.out.println("native objects: " + live.size() + " live (~" + liveBytes / 1024 + " KB)");
+        for (TypeStats type : types.values())
+        {
+            System.out.println("  " + type.name + ": " + type.live + " live (~" + type.liveBytes / 1024 + " KB), "
+                    + type.allocated + " allocated, " + type.deleted + " deleted");
+        }
+    }
+
+    private static TypeStats getType(Object object)
+    {
+        TypeStats type = types.get(object.getClass());
+        if (type == null)
+        {
+            type = new TypeStats(object.getClass().getSimpleName());
+            types.put(object.getClass(), type);
+        }
+        return type;
+    }
+
+    private static long estimateBytes(Object object)
+    {
+        final Long bytes = ESTIMATED_BYTES.get(object.getClass().getSimpleName());
+        return bytes != null ? bytes.longValue() : DEFAULT_ESTIMATED_BYTES;
+    }
+}
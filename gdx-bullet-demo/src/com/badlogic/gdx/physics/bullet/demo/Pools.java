@@ -6,12 +6,20 @@ import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.physics.bullet.btTransform;
-import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 
+/**
+ * Scratch objects for every thread (see {@link ThreadLocalPool}).
+ * <p>
+ * A thread that calls {@link #prewarm()} can also bracket its hot path with {@link #beginFrame()} and
+ * {@link #endFrame(String)} (or {@link #abortFrame()} if it threw). With frame assertions on (see
+ * {@link #setAssertFrames(boolean)}, or start with -Dbulletdemo.poolassert=true), endFrame() throws if anything in
+ * between had to allocate a new pooled object.
+ */
 public class Pools
 {
     // Gdx types
-    public static final Pool<Vector3> VECTOR3 = new Pool<Vector3>()
+    public static final ThreadLocalPool<Vector3> VECTOR3 = new ThreadLocalPool<Vector3>("Vector3")
     {
         @Override
         protected Vector3 newObject()
@@ -20,7 +28,7 @@ public class Pools
         }
     };
 
-    public static final Pool<Matrix3> MATRIX3 = new Pool<Matrix3>()
+    public static final ThreadLocalPool<Matrix3> MATRIX3 = new ThreadLocalPool<Matrix3>("Matrix3")
     {
         @Override
         protected Matrix3 newObject()
@@ -29,7 +37,7 @@ public class Pools
         }
     };
 
-    public static final Pool<Matrix4> MATRIX4 = new Pool<Matrix4>()
+    public static final ThreadLocalPool<Matrix4> MATRIX4 = new ThreadLocalPool<Matrix4>("Matrix4")
     {
         @Override
         protected Matrix4 newObject()
@@ -38,7 +46,7 @@ public class Pools
         }
     };
 
-    public static final Pool<BoundingBox> BOUNDINGBOX = new Pool<BoundingBox>()
+    public static final ThreadLocalPool<BoundingBox> BOUNDINGBOX = new ThreadLocalPool<BoundingBox>("BoundingBox")
     {
         @Override
         protected BoundingBox newObject()
@@ -47,7 +55,7 @@ public class Pools
         }
     };
 
-    public static final Pool<Quaternion> QUATERNION = new Pool<Quaternion>()
+    public static final ThreadLocalPool<Quaternion> QUATERNION = new ThreadLocalPool<Quaternion>("Quaternion")
     {
         @Override
         protected Quaternion newObject()
@@ -57,12 +65,208 @@ public class Pools
     };
 
     // Bullet types
-    public static final Pool<btTransform> btTRANSFORM = new Pool<btTransform>()
+    public static final ThreadLocalPool<btTransform> btTRANSFORM = new ThreadLocalPool<btTransform>("btTransform")
     {
         @Override
         protected btTransform newObject()
         {
-            return new btTransform();
+            // Pooled for good, so never a screen's leak
+            return NativeRegistry.trackShared(new btTransform());
+        }
+
+        @Override
+        protected void discard(btTransform object)
+        {
+            if (NativeRegistry.release(object))
+            {
+                object.delete();
+            }
         }
     };
+
+    private static final ThreadLocalPool<?>[] ALL = { VECTOR3, MATRIX3, MATRIX4, BOUNDINGBOX, QUATERNION, btTRANSFORM };
+
+    // How many of each prewarm() puts on the free list; more than the hot paths ever have out at once
+    private static final int[] PREWARM_COUNTS = { 16, 4, 4, 4, 4, 8 };
+
+    private static final class FrameState
+    {
+        boolean prewarmed;
+        int depth;
+        final long[] allocations = new long[ALL.length];
+    }
+
+    private static final ThreadLocal<FrameState> frameState = new ThreadLocal<FrameState>()
+    {
+        @Override
+        protected FrameState initialValue()
+        {
+            return new FrameState();
+        }
+    };
+
+    private static volatile boolean assertFrames = Boolean.getBoolean("bulletdemo.poolassert");
+
+    /**
+     * Fills this thread's free lists so the hot paths don't allocate, and turns on frame assertions for the thread.
+     * Does nothing the second time on a thread.
+     */
+    public static void prewarm()
+    {
+        final FrameState state = frameState.get();
+        if (state.prewarmed)
+        {
+            return;
+        }
+
+        for (int i = 0; i < ALL.length; i++)
+        {
+            ALL[i].prewarm(PREWARM_COUNTS[i]);
+        }
+        state.prewarmed = true;
+    }
+
+    public static void setAssertFrames(boolean assertFrames)
+    {
+        Pools.assertFrames = assertFrames;
+    }
+
+    public static boolean isAssertingFrames()
+    {
+        return assertFrames;
+    }
+
+    /**
+     * Starts a stretch of this thread's work that shouldn't allocate. Frames nest; only the outermost is checked.
+     */
+    public static void beginFrame()
+    {
+        if (!assertFrames)
+        {
+            return;
+        }
+
+        final FrameState state = frameState.get();
+        if (state.depth++ == 0)
+        {
+            for (int i = 0; i < ALL.length; i++)
+            {
+                state.allocations[i] = ALL[i].getAllocations();
+            }
+        }
+    }
+
+    /**
+     * Ends a stretch started by {@link #beginFrame()}.
+     *
+     * @param where
+     *            what the stretch was, for the message
+     * @throws GdxRuntimeException
+     *             if frame assertions are on, the thread was prewarmed and any pool had to allocate since the outermost
+     *             beginFrame()
+     */
+    public static void endFrame(String where)
+    {
+        if (!assertFrames)
+        {
+            return;
+        }
+
+        final FrameState state = frameState.get();
+
+        // Assertions were turned on mid frame
+        if (state.depth == 0 || --state.depth > 0 || !state.prewarmed)
+        {
+            return;
+        }
+
+        StringBuilder allocated = null;
+        for (int i = 0; i < ALL.length; i++)
+        {
+            final long count = ALL[i].getAllocations() - state.allocations[i];
+            if (count > 0)
+            {
+                if (allocated == null)
+                {
+                    allocated = new StringBuilder();
+                }
+                allocated.append(' ').append(count).append(' ').append(ALL[i].getName()).append(" (peak ")
+                        .append(ALL[i].getPeakOutstanding()).append(')');
+            }
+        }
+
+        if (allocated != null)
+        {
+            throw new GdxRuntimeException(where + " on " + Thread.currentThread().getName()
+                    + " allocated new pooled objects after prewarming:" + allocated);
+        }
+    }
+
+    /**
+     * Ends a stretch started by {@link #beginFrame()} without checking it. Call it instead of
+     * {@link #endFrame(String)} when the stretch threw, so the frame depth stays right and the check doesn't hide what
+     * was thrown.
+     */
+    public static void abortFrame()
+    {
+        if (!assertFrames)
+        {
+            return;
+        }
+
+        final FrameState state = frameState.get();
+        if (state.depth > 0)
+        {
+            state.depth--;
+        }
+    }
+
+    /**
+     * Reports the objects this thread obtained and never freed.
+     *
+     * @param where
+     *            what just finished, for the report
+     * @return the number of objects still out, over every pool
+     */
+    public static int checkLeaks(String where)
+    {
+        int total = 0;
+        for (int i = 0; i < ALL.length; i++)
+        {
+            final int outstanding = ALL[i].getOutstanding();
+            if (outstanding != 0)
+            {
+                System.err.println(where + ": " + outstanding + " " + ALL[i].getName() + " never freed on "
+                        + Thread.currentThread().getName());
+                total += outstanding;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Drops this thread's free objects (deleting the native ones) and its counters. Call it before a thread that used
+     * the pools ends.
+     */
+    public static void releaseThread()
+    {
+        for (int i = 0; i < ALL.length; i++)
+        {
+            ALL[i].releaseThread();
+        }
+        frameState.remove();
+    }
+
+    /**
+     * Prints every pool's counters for every thread that has used it.
+     */
+    public static void dumpStats()
+    {
+        final StringBuilder out = new StringBuilder("pools:\n");
+        for (int i = 0; i < ALL.length; i++)
+        {
+            ALL[i].appendStats(out);
+        }
+        System.out.print(out);
+    }
 }
@@ -0,0 +1,250 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool with the same obtain/free API as libgdx's {@link com.badlogic.gdx.utils.Pool}, but with a free list for each
+ * thread, so the GL thread, the physics thread and the parallel world workers can all use the same pool without
+ * locking. Each thread also counts its obtains, frees, new allocations and outstanding objects.
+ * <p>
+ * Free an object on the thread that obtained it. Freeing it on another thread works (it just moves to that thread's
+ * free list), but it throws off both threads' outstanding counts.
+ * <p>
+ * Threads that stop using a pool should call {@link #releaseThread()}, or their free list lives as long as the
+ * thread.
+ */
+public abstract class ThreadLocalPool<T>
+{
+    /**
+     * One thread's free list and counters. Only that thread writes them; other threads only read them for
+     * {@link ThreadLocalPool#appendStats(StringBuilder)}, so what they see may be a little stale.
+     */
+    private static final class Local<T>
+    {
+        final String threadName;
+        final ArrayList<T> free = new ArrayList<T>();
+        long obtains;
+        long frees;
+        long allocations;
+        int outstanding;
+        int peakOutstanding;
+
+        Local(String threadName)
+        {
+            this.threadName = threadName;
+        }
+    }
+
+    private final String name;
+    private final int max;
+
+    private final ThreadLocal<Local<T>> local = new ThreadLocal<Local<T>>()
+    {
+        @Override
+        protected Local<T> initialValue()
+        {
+            final Local<T> value = new Local<T>(Thread.currentThread().getName());
+            synchronized (locals)
+            {
+                locals.add(value);
+            }
+            return value;
+        }
+    };
+
+    // Every thread's, for the stats
+    private final List<Local<T>> locals = new ArrayList<Local<T>>();
+
+    /**
+     * @param name
+     *            what to call the pool in stats and assertion messages
+     */
+    public ThreadLocalPool(String name)
+    {
+        this(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param max
+     *            the most free objects each thread keeps; more are discarded when freed
+     */
+    public ThreadLocalPool(String name, int max)
+    {
+        this.name = name;
+        this.max = max;
+    }
+
+    protected abstract T newObject();
+
+    /**
+     * Called for an object the pool drops (freed past the max, or cleared). The default does nothing; override it to
+     * delete native objects.
+     */
+    protected void discard(T object)
+    {
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return an object from this thread's free list, or a new one if it's empty
+     */
+    public T obtain()
+    {
+        final Local<T> l = local.get();
+
+        l.obtains++;
+        if (++l.outstanding > l.peakOutstanding)
+        {
+            l.peakOutstanding = l.outstanding;
+        }
+
+        final int size = l.free.size();
+        if (size == 0)
+        {
+            l.allocations++;
+            return newObject();
+        }
+        return l.free.remove(size - 1);
+    }
+
+    /**
+     * Puts an object on this thread's free list.
+     */
+    public void free(T object)
+    {
+        if (object == null)
+        {
+            throw new IllegalArgumentException("object cannot be null.");
+        }
+
+        final Local<T> l = local.get();
+
+        l.frees++;
+        l.outstanding--;
+
+        if (l.free.size() < max)
+        {
+            l.free.add(object);
+        }
+        else
+        {
+            discard(object);
+        }
+    }
+
+    /**
+     * Fills this thread's free list up to count objects, so that a hot path that never has more than count out at once
+     * never allocates.
+     */
+    public void prewarm(int count)
+    {
+        final Local<T> l = local.get();
+
+        final int target = Math.min(count, max);
+        while (l.free.size() < target)
+        {
+            l.allocations++;
+            l.free.add(newObject());
+        }
+    }
+
+    /**
+     * Discards this thread's free objects. Objects still out aren't affected.
+     */
+    public void clear()
+    {
+        final Local<T> l = local.get();
+
+        for (int i = 0; i < l.free.size(); i++)
+        {
+            discard(l.free.get(i));
+        }
+        l.free.clear();
+    }
+
+    /**
+     * Discards this thread's free objects and forgets the thread, counters and all.
+     *
+     * @return the number of objects the thread obtained and never freed
+     */
+    public int releaseThread()
+    {
+        clear();
+
+        final Local<T> l = local.get();
+        synchronized (locals)
+        {
+            locals.remove(l);
+        }
+        local.remove();
+
+        return l.outstanding;
+    }
+
+    // This thread's counters
+
+    public long getObtains()
+    {
+        return local.get().obtains;
+    }
+
+    public long getFrees()
+    {
+        return local.get().frees;
+    }
+
+    /**
+     * @return the number of objects this thread had to create (obtained from an empty free list, or prewarmed)
+     */
+    public long getAllocations()
+    {
+        return local.get().allocations;
+    }
+
+    /**
+     * @return the number of objects this thread obtained and hasn't freed yet
+     */
+    public int getOutstanding()
+    {
+        return local.get().outstanding;
+    }
+
+    /**
+     * @return the most objects this thread has had out at once
+     */
+    public int getPeakOutstanding()
+    {
+        return local.get().peakOutstanding;
+    }
+
+    /**
+     * @return the number of objects on this thread's free list
+     */
+    public int getFreeCount()
+    {
+        return local.get().free.size();
+    }
+
+    /**
+     * Appends a line of counters for every thread that has used the pool.
+     */
+    public void appendStats(StringBuilder out)
+    {
+        synchronized (locals)
+        {
+            for (int i = 0; i < locals.size(); i++)
+            {
+                final Local<T> l = locals.get(i);
+                out.append(name).append(" [").append(l.threadName).append("]: obtains ").append(l.obtains);
+                out.append(" frees ").append(l.frees).append(" new ").append(l.allocations);
+                out.append(" out ").append(l.outstanding).append(" peak ").append(l.peakOutstanding);
+                out.append(" free ").append(l.free.size()).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.badlogic.gdx.physics.bullet.demo.assets;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.physics.bullet.demo.mesh.BinaryMesh;
+import com.badlogic.gdx.physics.bullet.demo.mesh.MeshData;
+import com.badlogic.gdx.physics.bullet.demo.mesh.ObjStreamReader;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Loads assets on a pool of worker threads. Files are read and decoded (and anything else submitted, such as collision
+ * shapes, is built) on the workers; only the GL uploads are queued for the GL thread, which runs them from
+ * {@link #update(long)} (with a per-frame time budget) or while it waits in {@link #await(Future)}.
+ * <p>
+ * With no worker threads, everything (GL uploads included) runs right away on the calling thread, which is how the
+ * demo used to load.
+ */
+public class AssetLoader implements Disposable
+{
+    private final int threads;
+    private final ExecutorService executor;
+    private final BlockingQueue<Runnable> glTasks = new LinkedBlockingQueue<Runnable>();
+
+    private final AtomicInteger totalCount = new AtomicInteger();
+    private final AtomicInteger completedCount = new AtomicInteger();
+
+    // The reader keeps its buffers between files, so each thread gets its own
+    private final ThreadLocal<ObjStreamReader> objReaders = new ThreadLocal<ObjStreamReader>()
+    {
+        @Override
+        protected ObjStreamReader initialValue()
+        {
+            return new ObjStreamReader();
+        }
+    };
+
+    /**
+     * @param threads
+     *            the number of worker threads, or 0 to load everything on the calling thread
+     */
+    public AssetLoader(int threads)
+    {
+        this.threads = threads;
+
+        if (threads == 0)
+        {
+            executor = null;
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                final Thread thread = new Thread(runnable, "assets-" + count.incrementAndGet());
+
+                // Don't keep the VM alive for loads nobody waits for
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Runs the task on a worker.
+     */
+    public <T> PendingAsset<T> submit(String name, Callable<T> task)
+    {
+        final PendingAsset<T> asset = newAsset(name);
+        runOnWorker(asset, task);
+        return asset;
+    }
+
+    /**
+     * Runs the task on a worker once the dependency is done (or fails with the dependency's failure).
+     */
+    public <T> PendingAsset<T> submitAfter(PendingAsset<?> dependency, String name, Callable<T> task)
+    {
+        final PendingAsset<T> asset = newAsset(name);
+        after(dependency, asset, task, false);
+        return asset;
+    }
+
+    /**
+     * Runs the task on the GL thread once the dependency is done (or fails with the dependency's failure).
+     */
+    public <T> PendingAsset<T> submitGLAfter(PendingAsset<?> dependency, String name, Callable<T> task)
+    {
+        final PendingAsset<T> asset = newAsset(name);
+        after(dependency, asset, task, true);
+        return asset;
+    }
+
+    /**
+     * Reads a mesh's data on a worker: {@link BinaryMesh} files (.mesh) are mapped, anything else is parsed as OBJ.
+     */
+    public PendingAsset<MeshData> loadMeshData(final FileHandle file)
+    {
+        return submit(file.path(), new Callable<MeshData>()
+        {
+            @Override
+            public MeshData call()
+            {
+                if (file.extension().equals("mesh"))
+                {
+                    return BinaryMesh.load(file).getMeshData();
+                }
+                return objReaders.get().readData(file, false);
+            }
+        });
+    }
+
+    /**
+     * Creates a mesh on the GL thread once its data is loaded.
+     */
+    public PendingAsset<Mesh> createMesh(final PendingAsset<MeshData> data)
+    {
+        return submitGLAfter(data, data.getName() + " (upload)", new Callable<Mesh>()
+        {
+            @Override
+            public Mesh call() throws Exception
+            {
+                return data.get().createMesh();
+            }
+        });
+    }
+
+    /**
+     * Decodes an image on a worker, then uploads it as a texture on the GL thread.
+     */
+    public PendingAsset<Texture> loadTexture(final FileHandle file, final boolean mipmaps)
+    {
+        final PendingAsset<Pixmap> pixmap = submit(file.path(), new Callable<Pixmap>()
+        {
+            @Override
+            public Pixmap call()
+            {
+                return new Pixmap(file);
+            }
+        });
+
+        return submitGLAfter(pixmap, file.path() + " (upload)", new Callable<Texture>()
+        {
+            @Override
+            public Texture call() throws Exception
+            {
+                final Pixmap decoded = pixmap.get();
+                try
+                {
+                    return new Texture(decoded, mipmaps);
+                }
+                finally
+                {
+                    decoded.dispose();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs queued GL uploads until they're all done or the budget is used up. Call once a frame on the GL thread.
+     *
+     * @return true if every asset submitted so far is done
+     */
+    public boolean update(long budgetNanos)
+    {
+        final long start = System.nanoTime();
+
+        Runnable task;
+        while (System.nanoTime() - start < budgetNanos && (task = glTasks.poll()) != null)
+        {
+            task.run();
+        }
+
+        return isDone();
+    }
+
+    /**
+     * Waits for the asset on the GL thread, running GL uploads (for any asset) in the meantime.
+     *
+     * @throws GdxRuntimeException
+     *             if the asset couldn't be loaded
+     */
+    public <T> T await(Future<T> asset)
+    {
+        try
+        {
+            while (!asset.isDone())
+            {
+                final Runnable task = glTasks.poll(1, TimeUnit.MILLISECONDS);
+                if (task != null)
+                {
+                    task.run();
+                }
+            }
+
+            return asset.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while loading " + asset, e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new GdxRuntimeException(e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * @return true if every asset submitted so far is done
+     */
+    public boolean isDone()
+    {
+        return completedCount.get() == totalCount.get();
+    }
+
+    /**
+     * @return the fraction of submitted assets (uploads count separately) that are done, from 0 to 1
+     */
+    public float getProgress()
+    {
+        final int total = totalCount.get();
+        return total == 0 ? 1 : completedCount.get() / (float) total;
+    }
+
+    public int getCompletedCount()
+    {
+        return completedCount.get();
+    }
+
+    public int getTotalCount()
+    {
+        return totalCount.get();
+    }
+
+    /**
+     * Stops the workers. Assets still loading are abandoned (anything they've created isn't disposed), so wait for
+     * them first.
+     */
+    @Override
+    public void dispose()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+        glTasks.clear();
+    }
+
+    private <T> PendingAsset<T> newAsset(String name)
+    {
+        totalCount.incrementAndGet();
+        return new PendingAsset<T>(name);
+    }
+
+    private <T> void after(final PendingAsset<?> dependency, final PendingAsset<T> asset, final Callable<T> task,
+            final boolean gl)
+    {
+        dependency.addListener(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (dependency.getFailure() != null)
+                {
+                    finish(asset, null, dependency.getFailure());
+                }
+                else if (gl)
+                {
+                    runOnGLThread(asset, task);
+                }
+                else
+                {
+                    runOnWorker(asset, task);
+                }
+            }
+        });
+    }
+
+    private <T> void runOnWorker(final PendingAsset<T> asset, final Callable<T> task)
+    {
+        final Runnable runnable = newRunnable(asset, task);
+        if (executor == null)
+        {
+            runnable.run();
+        }
+        else
+        {
+            executor.execute(runnable);
+        }
+    }
+
+    private <T> void runOnGLThread(final PendingAsset<T> asset, final Callable<T> task)
+    {
+        final Runnable runnable = newRunnable(asset, task);
+        if (executor == null)
+        {
+            // Serial loading happens on the GL thread already
+            runnable.run();
+        }
+        else
+        {
+            glTasks.add(runnable);
+        }
+    }
+
+    private <T> Runnable newRunnable(final PendingAsset<T> asset, final Callable<T> task)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                T value = null;
+                Throwable failure = null;
+                try
+                {
+                    value = task.call();
+                }
+                catch (Throwable t)
+                {
+                    failure = t;
+                }
+                finish(asset, value, failure);
+            }
+        };
+    }
+
+    private <T> void finish(PendingAsset<T> asset, T value, Throwable failure)
+    {
+        // Count it first, so anyone who sees the asset done also sees it counted
+        completedCount.incrementAndGet();
+        if (failure != null)
+        {
+            asset.fail(failure);
+        }
+        else
+        {
+            asset.set(value);
+        }
+    }
+}
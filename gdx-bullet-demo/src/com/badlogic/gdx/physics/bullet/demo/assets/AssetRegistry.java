@@ -0,0 +1,464 @@
+package com.badlogic.gdx.physics.bullet.demo.assets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.physics.bullet.demo.mesh.MeshData;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.BvhCache;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.TriangleMeshShape;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Shares loaded meshes, textures and triangle mesh shapes between screens, keyed by the path they were loaded from.
+ * Screens acquire assets instead of loading them, and release them instead of disposing them.
+ * <p>
+ * Assets stay loaded when their last reference is released, so the next screen to ask for them gets them back without
+ * loading anything. Unreferenced assets are disposed, least recently released first, only when the (estimated) size of
+ * everything loaded goes over the budget.
+ * <p>
+ * Loading goes through an {@link AssetLoader} owned by the registry. Not thread safe; acquire and release on the GL
+ * thread.
+ */
+public class AssetRegistry implements Disposable
+{
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * How to size and dispose one kind of asset.
+     */
+    private interface AssetType<T>
+    {
+        long estimateBytes(T value);
+
+        void dispose(T value);
+    }
+
+    private static final AssetType<MeshData> MESH_DATA = new AssetType<MeshData>()
+    {
+        @Override
+        public long estimateBytes(MeshData data)
+        {
+            return data.getVertexCount() * data.getVertexSize() + data.getIndexCount() * 2;
+        }
+
+        @Override
+        public void dispose(MeshData data)
+        {
+            // Just buffers (or a mapped file), freed when collected
+        }
+    };
+
+    private static final AssetType<Mesh> MESH = new AssetType<Mesh>()
+    {
+        @Override
+        public long estimateBytes(Mesh mesh)
+        {
+            // The buffer object, plus the copy the mesh keeps in memory
+            return 2L * (mesh.getNumVertices() * mesh.getVertexSize() + mesh.getNumIndices() * 2);
+        }
+
+        @Override
+        public void dispose(Mesh mesh)
+        {
+            mesh.dispose();
+        }
+    };
+
+    private static final AssetType<Texture> TEXTURE = new AssetType<Texture>()
+    {
+        @Override
+        public long estimateBytes(Texture texture)
+        {
+            // RGBA, plus a third for mipmaps
+            return texture.getWidth() * texture.getHeight() * 4L * 4 / 3;
+        }
+
+        @Override
+        public void dispose(Texture texture)
+        {
+            texture.dispose();
+        }
+    };
+
+    private static final AssetType<TriangleMeshShape> TRIANGLE_MESH_SHAPE = new AssetType<TriangleMeshShape>()
+    {
+        @Override
+        public long estimateBytes(TriangleMeshShape shape)
+        {
+            return shape.getEstimatedBytes();
+        }
+
+        @Override
+        public void dispose(TriangleMeshShape shape)
+        {
+            shape.dispose();
+        }
+    };
+
+    private static final class Entry<T>
+    {
+        final String key;
+        final AssetType<T> type;
+        final PendingAsset<T> asset;
+
+        // Another asset this one holds a reference to until it's disposed, if any
+        final PendingAsset<?> dependency;
+
+        int references = 1;
+        long bytes = -1;
+
+        Entry(String key, AssetType<T> type, PendingAsset<T> asset, PendingAsset<?> dependency)
+        {
+            this.key = key;
+            this.type = type;
+            this.asset = asset;
+            this.dependency = dependency;
+        }
+
+        /**
+         * @return the estimated size, or 0 if the asset is still loading or failed to
+         */
+        long getBytes()
+        {
+            if (bytes < 0 && asset.isDone())
+            {
+                bytes = asset.getFailure() != null ? 0 : type.estimateBytes(getValue());
+            }
+            return bytes < 0 ? 0 : bytes;
+        }
+
+        T getValue()
+        {
+            try
+            {
+                return asset.get();
+            }
+            catch (Exception e)
+            {
+                throw new GdxRuntimeException(e);
+            }
+        }
+
+        void disposeValue()
+        {
+            if (asset.getFailure() == null)
+            {
+                type.dispose(getValue());
+            }
+        }
+    }
+
+    private final AssetLoader loader;
+    private final long budgetBytes;
+
+    private final Map<String, Entry<?>> entries = new HashMap<String, Entry<?>>();
+    private final Map<PendingAsset<?>, Entry<?>> entriesByAsset = new IdentityHashMap<PendingAsset<?>, Entry<?>>();
+
+    // Entries nobody references, least recently released first
+    private final LinkedHashMap<String, Entry<?>> unreferenced = new LinkedHashMap<String, Entry<?>>();
+
+    // Stats
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * @param loaderThreads
+     *            the number of threads to load on (see {@link AssetLoader#AssetLoader(int)})
+     * @param budgetBytes
+     *            how much (estimated) memory loaded assets may use before unreferenced ones are disposed
+     */
+    public AssetRegistry(int loaderThreads, long budgetBytes)
+    {
+        this.loader = new AssetLoader(loaderThreads);
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return the loader, to wait for acquired assets with
+     */
+    public AssetLoader getLoader()
+    {
+        return loader;
+    }
+
+    /**
+     * Acquires a mesh's data (see {@link AssetLoader#loadMeshData(FileHandle)}).
+     */
+    public PendingAsset<MeshData> acquireMeshData(FileHandle file)
+    {
+        final String key = "data:" + file.path();
+        PendingAsset<MeshData> data = lookup(key);
+        if (data == null)
+        {
+            data = register(key, MESH_DATA, loader.loadMeshData(file), null);
+        }
+        return data;
+    }
+
+    /**
+     * Acquires a mesh, loading its data on the loader's threads and uploading it on the GL thread.
+     */
+    public PendingAsset<Mesh> acquireMesh(FileHandle file)
+    {
+        final String key = "mesh:" + file.path();
+        PendingAsset<Mesh> mesh = lookup(key);
+        if (mesh == null)
+        {
+            // The data is only needed until the upload
+            final PendingAsset<MeshData> data = acquireMeshData(file);
+            mesh = register(key, MESH, loader.submitGLAfter(data, key, new Callable<Mesh>()
+            {
+                @Override
+                public Mesh call() throws Exception
+                {
+                    try
+                    {
+                        return data.get().createMesh();
+                    }
+                    finally
+                    {
+                        release(data);
+                    }
+                }
+            }), null);
+        }
+        return mesh;
+    }
+
+    /**
+     * Acquires a texture, decoding it on the loader's threads and uploading it on the GL thread.
+     */
+    public PendingAsset<Texture> acquireTexture(FileHandle file, boolean mipmaps)
+    {
+        final String key = "texture:" + file.path() + (mipmaps ? "#mipmaps" : "");
+        PendingAsset<Texture> texture = lookup(key);
+        if (texture == null)
+        {
+            texture = register(key, TEXTURE, loader.loadTexture(file, mipmaps), null);
+        }
+        return texture;
+    }
+
+    /**
+     * Acquires a triangle mesh shape for a mesh file, built on the loader's threads. The shape holds on to the mesh's
+     * data (which Bullet reads the triangles from) for as long as it's loaded.
+     */
+    public PendingAsset<TriangleMeshShape> acquireTriangleMeshShape(FileHandle file, final BvhCache bvhCache)
+    {
+        final String key = "shape:" + file.path();
+        PendingAsset<TriangleMeshShape> shape = lookup(key);
+        if (shape == null)
+        {
+            final PendingAsset<MeshData> data = acquireMeshData(file);
+            shape = register(key, TRIANGLE_MESH_SHAPE, loader.submitAfter(data, key, new Callable<TriangleMeshShape>()
+            {
+                @Override
+                public TriangleMeshShape call() throws Exception
+                {
+                    return new TriangleMeshShape(data.get(), bvhCache);
+                }
+            }), data);
+        }
+        return shape;
+    }
+
+    /**
+     * Gives back an acquired asset. It stays loaded until the registry goes over budget (or is disposed).
+     */
+    public void release(PendingAsset<?> asset)
+    {
+        final Entry<?> entry = entriesByAsset.get(asset);
+        if (entry == null)
+        {
+            throw new IllegalArgumentException("Not a registered asset: " + asset);
+        }
+        if (entry.references <= 0)
+        {
+            throw new IllegalStateException("Asset released more times than it was acquired: " + entry.key);
+        }
+
+        entry.references--;
+        if (entry.references == 0)
+        {
+            unreferenced.put(entry.key, entry);
+            evict();
+        }
+    }
+
+    /**
+     * @return the number of assets loaded (or loading), referenced or not
+     */
+    public int getAssetCount()
+    {
+        return entries.size();
+    }
+
+    public int getUnreferencedCount()
+    {
+        return unreferenced.size();
+    }
+
+    /**
+     * @return the estimated size of every loaded asset
+     */
+    public long getEstimatedBytes()
+    {
+        long bytes = 0;
+        for (Entry<?> entry : entries.values())
+        {
+            bytes += entry.getBytes();
+        }
+        return bytes;
+    }
+
+    public long getBudgetBytes()
+    {
+        return budgetBytes;
+    }
+
+    /**
+     * @return how many acquires found the asset already loaded (or loading)
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    public int getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Waits for anything still loading, then disposes every asset, referenced or not, and stops the loader.
+     */
+    @Override
+    public void dispose()
+    {
+        // Uploads run while waiting can release data, so not over the map itself
+        for (Entry<?> entry : new ArrayList<Entry<?>>(entries.values()))
+        {
+            if (!entry.asset.isDone())
+            {
+                try
+                {
+                    loader.await(entry.asset);
+                }
+                catch (GdxRuntimeException e)
+                {
+                    // Nothing to dispose
+                }
+            }
+        }
+
+        // Shapes first, while their data is still around
+        for (Entry<?> entry : entries.values())
+        {
+            if (entry.type == TRIANGLE_MESH_SHAPE)
+            {
+                entry.disposeValue();
+            }
+        }
+        for (Entry<?> entry : entries.values())
+        {
+            if (entry.type != TRIANGLE_MESH_SHAPE)
+            {
+                entry.disposeValue();
+            }
+        }
+
+        entries.clear();
+        entriesByAsset.clear();
+        unreferenced.clear();
+
+        loader.dispose();
+    }
+
+    /**
+     * @return the asset, acquired again, or null if it isn't registered
+     */
+    @SuppressWarnings("unchecked")
+    private <T> PendingAsset<T> lookup(String key)
+    {
+        final Entry<?> entry = entries.get(key);
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        if (entry.references == 0)
+        {
+            unreferenced.remove(key);
+        }
+        entry.references++;
+        return (PendingAsset<T>) entry.asset;
+    }
+
+    private <T> PendingAsset<T> register(String key, AssetType<T> type, PendingAsset<T> asset,
+            PendingAsset<?> dependency)
+    {
+        final Entry<T> entry = new Entry<T>(key, type, asset, dependency);
+        entries.put(key, entry);
+        entriesByAsset.put(asset, entry);
+
+        // Loading more may push older assets out
+        evict();
+        return asset;
+    }
+
+    /**
+     * Disposes unreferenced assets, least recently released first, until everything fits in the budget. Assets that
+     * failed to load are always dropped (so the next acquire tries again); ones still loading are left alone.
+     */
+    private void evict()
+    {
+        long bytes = getEstimatedBytes();
+        final List<Entry<?>> evicted = new ArrayList<Entry<?>>();
+
+        final Iterator<Entry<?>> iterator = unreferenced.values().iterator();
+        while (iterator.hasNext())
+        {
+            final Entry<?> entry = iterator.next();
+            if (!entry.asset.isDone() || (bytes <= budgetBytes && entry.asset.getFailure() == null))
+            {
+                continue;
+            }
+
+            bytes -= entry.getBytes();
+            iterator.remove();
+            entries.remove(entry.key);
+            entriesByAsset.remove(entry.asset);
+            evicted.add(entry);
+        }
+
+        // Releasing dependencies can evict more, so only after we're done iterating
+        for (Entry<?> entry : evicted)
+        {
+            System.out.println("Evicting " + entry.key + " (~" + entry.getBytes() / 1024 + " KB)");
+            evictions++;
+            entry.disposeValue();
+            if (entry.dependency != null)
+            {
+                release(entry.dependency);
+            }
+        }
+    }
+}
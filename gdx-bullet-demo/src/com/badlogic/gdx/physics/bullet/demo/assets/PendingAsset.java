@@ -0,0 +1,140 @@
+package com.badlogic.gdx.physics.bullet.demo.assets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of an {@link AssetLoader} task, available once the task (and whatever it depends on) is done. Loads
+ * can't be cancelled.
+ * <p>
+ * On the GL thread, wait with {@link AssetLoader#await(Future)} rather than {@link #get()}: get() doesn't run the
+ * queued GL uploads, so it waits forever for anything that needs one.
+ */
+public class PendingAsset<T> implements Future<T>
+{
+    private final String name;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile T value;
+    private volatile Throwable failure;
+
+    // Run once when the asset is done; null after that
+    private List<Runnable> listeners = new ArrayList<Runnable>(2);
+
+    PendingAsset(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Runs the listener when the asset is done (on the thread that finishes it), or now if it already is.
+     */
+    public void addListener(Runnable listener)
+    {
+        synchronized (this)
+        {
+            if (listeners != null)
+            {
+                listeners.add(listener);
+                return;
+            }
+        }
+
+        listener.run();
+    }
+
+    void set(T value)
+    {
+        this.value = value;
+        complete();
+    }
+
+    void fail(Throwable failure)
+    {
+        this.failure = failure;
+        complete();
+    }
+
+    private void complete()
+    {
+        final List<Runnable> toRun;
+        synchronized (this)
+        {
+            toRun = listeners;
+            listeners = null;
+            done.countDown();
+        }
+
+        for (Runnable listener : toRun)
+        {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return why the asset couldn't be loaded, or null if it was (or isn't done yet)
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+        done.await();
+        return getNow();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if (!done.await(timeout, unit))
+        {
+            throw new TimeoutException(name);
+        }
+        return getNow();
+    }
+
+    private T getNow() throws ExecutionException
+    {
+        if (failure != null)
+        {
+            throw new ExecutionException("Couldn't load " + name, failure);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
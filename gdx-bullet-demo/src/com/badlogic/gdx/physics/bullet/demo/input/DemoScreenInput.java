@@ -5,7 +5,9 @@ import java.util.Random;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.physics.bullet.demo.screens.CatchUpPolicy;
 import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
 
 public class DemoScreenInput extends InputAdapter
 {
@@ -48,9 +50,53 @@ public class DemoScreenInput extends InputAdapter
                 screen.dropThing(random.nextBoolean());
             }
             return true;
+        case 't':
+            screen.setPhysicsThreaded(!screen.isPhysicsThreaded());
+            return true;
+        case 'i':
+            screen.setInterpolationEnabled(!screen.isInterpolationEnabled());
+            return true;
+        case 'f':
+            // Toggle between the default rate and half of it
+            if (screen.getPhysicsTimeStepNanos() == SimulationScreen.PHYSICS_TIME_STEP_NANOS)
+            {
+                screen.setPhysicsTimeStep(SimulationScreen.PHYSICS_TIME_STEP_SECONDS * 2);
+            }
+            else
+            {
+                screen.setPhysicsTimeStep(SimulationScreen.PHYSICS_TIME_STEP_SECONDS);
+            }
+            return true;
+        case 'u':
+            // Cycle through the catch-up policies
+            final CatchUpPolicy[] policies = CatchUpPolicy.values();
+            screen.setCatchUpPolicy(policies[(screen.getCatchUpPolicy().ordinal() + 1) % policies.length],
+                    screen.getMaxStepsPerFrame());
+            return true;
+        case 'h':
+            screen.resetStats();
+            return true;
+        case 'e':
+            screen.dumpTrace(10);
+            return true;
+        case 'c':
+            screen.clearThings();
+            return true;
+        case 'b':
+            screen.setRenderBatching(!screen.isRenderBatching());
+            return true;
+        case 'v':
+            screen.setCullingEnabled(!screen.isCullingEnabled());
+            return true;
         case 'r':
+            // Only the bodies are rebuilt; the new screen gets its assets from the same registry
             screen.getGame().getScreen().dispose();
-            screen.getGame().setScreen(new DemoScreen(screen.getGame()));
+            final DemoScreen reset = new DemoScreen(screen.getGame(), screen.getAssetRegistry());
+
+            // A recording goes on into the new screen
+            reset.setRecorder(screen.getRecorder());
+            reset.setTrajectoryRecorder(screen.getTrajectoryRecorder());
+            screen.getGame().setScreen(reset);
             return true;
         }
 
@@ -0,0 +1,89 @@
+package com.badlogic.gdx.physics.bullet.demo.input;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.physics.bullet.demo.screens.TrajectoryPlaybackScreen;
+
+public class TrajectoryPlaybackInput extends InputAdapter
+{
+    private final TrajectoryPlaybackScreen screen;
+
+    public TrajectoryPlaybackInput(TrajectoryPlaybackScreen screen)
+    {
+        this.screen = screen;
+    }
+
+    @Override
+    public boolean keyTyped(char character)
+    {
+        switch (character)
+        {
+        case 'p':
+        case ' ':
+            if (screen.isPaused())
+            {
+                // From the start again once it's at the end
+                if (screen.getSpeed() > 0 && screen.getPosition() >= screen.getReader().getFrameCount() - 1)
+                {
+                    screen.setPosition(0);
+                }
+                screen.resume();
+            }
+            else
+            {
+                screen.pause();
+            }
+            return true;
+        case '[':
+            screen.setSpeed(screen.getSpeed() / 2);
+            return true;
+        case ']':
+            screen.setSpeed(screen.getSpeed() * 2);
+            return true;
+        case '-':
+            screen.setSpeed(-screen.getSpeed());
+            return true;
+        case 'b':
+            screen.setRenderBatching(!screen.isRenderBatching());
+            return true;
+        case 'v':
+            screen.setCullingEnabled(!screen.isCullingEnabled());
+            return true;
+        case ',':
+            screen.pause();
+            screen.setPosition((int) screen.getPosition() - 1);
+            return true;
+        case '.':
+            screen.pause();
+            screen.setPosition((int) screen.getPosition() + 1);
+            return true;
+        case '0':
+            screen.setPosition(0);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean touchDown(int x, int y, int pointer, int button)
+    {
+        scrub(x);
+        return true;
+    }
+
+    @Override
+    public boolean touchDragged(int x, int y, int pointer)
+    {
+        scrub(x);
+        return true;
+    }
+
+    /**
+     * Moves to the frame as far through the recording as x is across the window.
+     */
+    private void scrub(int x)
+    {
+        screen.setPosition((float) x / Gdx.graphics.getWidth() * (screen.getReader().getFrameCount() - 1));
+    }
+}
@@ -0,0 +1,557 @@
+package com.badlogic.gdx.physics.bullet.demo.mesh;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A precompiled mesh: the vertex and index data exactly as a {@link Mesh} holds them, so loading is a bulk copy
+ * instead of parsing text. {@link BinaryMeshConverter} writes them from OBJ files.
+ * <p>
+ * The format is little endian throughout:
+ * 
+ * <pre>
+ * int     magic ("GMSH")
+ * int     version
+ * int     flags (FLAG_INT_INDICES, FLAG_COLLISION)
+ * int     attribute count, then for each: int usage, int components, int alias length, alias (UTF-8)
+ * int     vertex count
+ * int     vertex size in bytes
+ * int     index count (0 for unindexed meshes)
+ * float*6 bounds (min x, y, z, max x, y, z)
+ *         padding to a multiple of 4 bytes
+ *         vertices (interleaved floats)
+ *         indices (unsigned shorts, or ints with FLAG_INT_INDICES), padded to a multiple of 4 bytes
+ * with FLAG_COLLISION:
+ * int     collision vertex count
+ * int     collision index count
+ *         collision vertices (x, y, z floats)
+ *         collision indices (ints, three per triangle)
+ * </pre>
+ * 
+ * Meshes with more than 65536 vertices need int indices, which {@link Mesh} can't render; they're loaded unindexed.
+ */
+public class BinaryMesh
+{
+    public static final int MAGIC = 0x48534d47; // "GMSH" in little endian
+    public static final int VERSION = 1;
+
+    public static final int FLAG_INT_INDICES = 1;
+    public static final int FLAG_COLLISION = 2;
+
+    private final MeshData meshData;
+    private final BoundingBox bounds;
+
+    // Only with collision data (direct and native order, ready for Bullet)
+    private final FloatBuffer collisionVertices;
+    private final IntBuffer collisionIndices;
+
+    private BinaryMesh(MeshData meshData, BoundingBox bounds, FloatBuffer collisionVertices, IntBuffer collisionIndices)
+    {
+        this.meshData = meshData;
+        this.bounds = bounds;
+        this.collisionVertices = collisionVertices;
+        this.collisionIndices = collisionIndices;
+    }
+
+    /**
+     * @return the vertices and indices (for files on the file system, still in the mapped file)
+     */
+    public MeshData getMeshData()
+    {
+        return meshData;
+    }
+
+    /**
+     * Creates a new mesh from the data, with a bulk copy of the vertices and indices. Call on the GL thread.
+     * 
+     * @return the mesh (the caller disposes it)
+     */
+    public Mesh createMesh()
+    {
+        return meshData.createMesh();
+    }
+
+    public BoundingBox getBounds()
+    {
+        return bounds;
+    }
+
+    public boolean hasCollisionTriangles()
+    {
+        return collisionVertices != null;
+    }
+
+    /**
+     * @return the collision triangles' vertices (x, y, z), or null if the file had none
+     */
+    public FloatBuffer getCollisionVertices()
+    {
+        return collisionVertices;
+    }
+
+    /**
+     * @return the collision triangles' indices (three per triangle), or null if the file had none
+     */
+    public IntBuffer getCollisionIndices()
+    {
+        return collisionIndices;
+    }
+
+    /**
+     * Loads a binary mesh (on any thread). Files on the file system are memory mapped; others (classpath, Android
+     * assets) are read into memory in one go.
+     */
+    public static BinaryMesh load(FileHandle file)
+    {
+        final ByteBuffer data;
+        try
+        {
+            data = file.type() != FileType.Classpath && file.file().isFile() ? map(file.file()) : read(file);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't read binary mesh " + file, e);
+        }
+
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.getInt() != MAGIC || data.getInt() != VERSION)
+        {
+            throw new GdxRuntimeException("Not a binary mesh (or an old version): " + file);
+        }
+
+        final int flags = data.getInt();
+
+        final VertexAttribute[] attributes = new VertexAttribute[data.getInt()];
+        for (int i = 0; i < attributes.length; i++)
+        {
+            final int usage = data.getInt();
+            final int components = data.getInt();
+            final byte[] alias = new byte[data.getInt()];
+            data.get(alias);
+            attributes[i] = new VertexAttribute(usage, components, utf8(alias));
+        }
+
+        final int vertexCount = data.getInt();
+        final int vertexSize = data.getInt();
+        final int indexCount = data.getInt();
+
+        final Vector3 min = new Vector3(data.getFloat(), data.getFloat(), data.getFloat());
+        final Vector3 max = new Vector3(data.getFloat(), data.getFloat(), data.getFloat());
+        final BoundingBox bounds = new BoundingBox(min, max);
+        align(data);
+
+        final FloatBuffer vertices;
+        final ShortBuffer indices;
+        if ((flags & FLAG_INT_INDICES) != 0)
+        {
+            // Mesh only has short indices, so expand to unindexed data
+            final FloatBuffer indexedVertices = slice(data, vertexCount * vertexSize).asFloatBuffer();
+            final IntBuffer intIndices = slice(data, indexCount * 4).asIntBuffer();
+
+            final int floatsPerVertex = vertexSize / 4;
+            final float[] vertex = new float[floatsPerVertex];
+            vertices = ByteBuffer.allocateDirect(indexCount * vertexSize).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            for (int i = 0; i < indexCount; i++)
+            {
+                indexedVertices.position(intIndices.get(i) * floatsPerVertex);
+                indexedVertices.get(vertex);
+                vertices.put(vertex);
+            }
+            vertices.flip();
+
+            indices = ByteBuffer.allocateDirect(0).order(ByteOrder.nativeOrder()).asShortBuffer();
+        }
+        else
+        {
+            vertices = nativeOrder(slice(data, vertexCount * vertexSize), 4).asFloatBuffer();
+            indices = nativeOrder(slice(data, indexCount * 2), 2).asShortBuffer();
+        }
+        align(data);
+
+        FloatBuffer collisionVertices = null;
+        IntBuffer collisionIndices = null;
+        if ((flags & FLAG_COLLISION) != 0)
+        {
+            final int collisionVertexCount = data.getInt();
+            final int collisionIndexCount = data.getInt();
+
+            collisionVertices = ByteBuffer.allocateDirect(collisionVertexCount * 3 * 4).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            collisionVertices.put(slice(data, collisionVertexCount * 3 * 4).asFloatBuffer());
+            collisionVertices.flip();
+
+            collisionIndices = ByteBuffer.allocateDirect(collisionIndexCount * 4).order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            collisionIndices.put(slice(data, collisionIndexCount * 4).asIntBuffer());
+            collisionIndices.flip();
+        }
+
+        return new BinaryMesh(new MeshData(attributes, vertices, indices), bounds, collisionVertices, collisionIndices);
+    }
+
+    /**
+     * Writes a mesh in the binary format. Unindexed meshes are indexed (identical vertices are merged) on the way.
+     * 
+     * @param collision
+     *            if true, also writes the mesh's triangles (positions only, identical ones merged) as collision data
+     */
+    public static void write(Mesh mesh, boolean collision, OutputStream out) throws IOException
+    {
+        final VertexAttributes attributes = mesh.getVertexAttributes();
+        final int vertexSize = mesh.getVertexSize();
+        final int floatsPerVertex = vertexSize / 4;
+
+        final float[] sourceVertices = new float[mesh.getNumVertices() * floatsPerVertex];
+        mesh.getVertices(sourceVertices);
+
+        // Indices into sourceVertices, one per triangle corner
+        final int[] corners;
+        if (mesh.getNumIndices() > 0)
+        {
+            final short[] shortIndices = new short[mesh.getNumIndices()];
+            mesh.getIndices(shortIndices);
+            corners = new int[shortIndices.length];
+            for (int i = 0; i < corners.length; i++)
+            {
+                corners[i] = shortIndices[i] & 0xffff;
+            }
+        }
+        else
+        {
+            corners = new int[mesh.getNumVertices()];
+            for (int i = 0; i < corners.length; i++)
+            {
+                corners[i] = i;
+            }
+        }
+
+        // Merge identical vertices
+        final float[] vertices = new float[sourceVertices.length];
+        final int[] indices = new int[corners.length];
+        final int vertexCount = mergeVertices(sourceVertices, floatsPerVertex, 0, floatsPerVertex, corners, vertices,
+                indices);
+        final boolean intIndices = vertexCount > 0x10000;
+
+        final int positionOffset = mesh.getVertexAttribute(Usage.Position).offset / 4;
+        final float[] min = new float[] { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+        final float[] max = new float[] { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+        for (int v = 0; v < vertexCount; v++)
+        {
+            for (int axis = 0; axis < 3; axis++)
+            {
+                final float value = vertices[v * floatsPerVertex + positionOffset + axis];
+                min[axis] = Math.min(min[axis], value);
+                max[axis] = Math.max(max[axis], value);
+            }
+        }
+
+        final LittleEndianWriter writer = new LittleEndianWriter(out);
+        writer.writeInt(MAGIC);
+        writer.writeInt(VERSION);
+        writer.writeInt((intIndices ? FLAG_INT_INDICES : 0) | (collision ? FLAG_COLLISION : 0));
+
+        writer.writeInt(attributes.size());
+        for (int i = 0; i < attributes.size(); i++)
+        {
+            final VertexAttribute attribute = attributes.get(i);
+            final byte[] alias = attribute.alias.getBytes("UTF-8");
+            writer.writeInt(attribute.usage);
+            writer.writeInt(attribute.numComponents);
+            writer.writeInt(alias.length);
+            writer.write(alias);
+        }
+
+        writer.writeInt(vertexCount);
+        writer.writeInt(vertexSize);
+        writer.writeInt(indices.length);
+
+        for (int axis = 0; axis < 3; axis++)
+        {
+            writer.writeFloat(min[axis]);
+        }
+        for (int axis = 0; axis < 3; axis++)
+        {
+            writer.writeFloat(max[axis]);
+        }
+        writer.align();
+
+        for (int i = 0; i < vertexCount * floatsPerVertex; i++)
+        {
+            writer.writeFloat(vertices[i]);
+        }
+
+        for (int i = 0; i < indices.length; i++)
+        {
+            if (intIndices)
+            {
+                writer.writeInt(indices[i]);
+            }
+            else
+            {
+                writer.writeShort(indices[i]);
+            }
+        }
+        writer.align();
+
+        if (collision)
+        {
+            // Just the positions, merged again now that the other attributes don't keep them apart
+            final float[] positions = new float[vertexCount * 3];
+            final int[] collisionIndices = new int[indices.length];
+            final int positionCount = mergeVertices(vertices, floatsPerVertex, positionOffset, 3, indices, positions,
+                    collisionIndices);
+
+            writer.writeInt(positionCount);
+            writer.writeInt(collisionIndices.length);
+            for (int i = 0; i < positionCount * 3; i++)
+            {
+                writer.writeFloat(positions[i]);
+            }
+            for (int i = 0; i < collisionIndices.length; i++)
+            {
+                writer.writeInt(collisionIndices[i]);
+            }
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Copies the vertices referenced by corners into merged, dropping duplicates, and writes the merged index for each
+     * corner into mergedIndices.
+     * 
+     * @param stride
+     *            floats per source vertex
+     * @param offset
+     *            the first float of each source vertex to keep
+     * @param length
+     *            how many floats of each source vertex to keep
+     * @return the number of merged vertices
+     */
+    private static int mergeVertices(float[] source, int stride, int offset, int length, int[] corners,
+            float[] merged, int[] mergedIndices)
+    {
+        final Map<VertexKey, Integer> seen = new HashMap<VertexKey, Integer>();
+        int count = 0;
+
+        for (int i = 0; i < corners.length; i++)
+        {
+            final VertexKey key = new VertexKey(source, corners[i] * stride + offset, length);
+            Integer index = seen.get(key);
+            if (index == null)
+            {
+                index = count++;
+                seen.put(key, index);
+                System.arraycopy(source, corners[i] * stride + offset, merged, index * length, length);
+            }
+            mergedIndices[i] = index;
+        }
+
+        return count;
+    }
+
+    /**
+     * A run of floats in an array, compared bit for bit.
+     */
+    private static final class VertexKey
+    {
+        private final float[] array;
+        private final int offset;
+        private final int length;
+        private final int hash;
+
+        VertexKey(float[] array, int offset, int length)
+        {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+
+            int h = 1;
+            for (int i = 0; i < length; i++)
+            {
+                h = h * 31 + Float.floatToIntBits(array[offset + i]);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            final VertexKey other = (VertexKey) obj;
+            for (int i = 0; i < length; i++)
+            {
+                if (Float.floatToIntBits(array[offset + i]) != Float.floatToIntBits(other.array[other.offset + i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            // The mapping stays valid
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer read(FileHandle file)
+    {
+        return ByteBuffer.wrap(file.readBytes());
+    }
+
+    /**
+     * @return the next length bytes of data as a little endian buffer, advancing past them
+     */
+    private static ByteBuffer slice(ByteBuffer data, int length)
+    {
+        final ByteBuffer slice = data.slice();
+        slice.limit(length);
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        data.position(data.position() + length);
+        return slice;
+    }
+
+    /**
+     * @return the little endian bytes as they are if this platform is little endian (or a direct native order copy of
+     *         the 2 or 4 byte elements if not), so GL and Bullet can use them
+     */
+    private static ByteBuffer nativeOrder(ByteBuffer littleEndian, int elementSize)
+    {
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN && littleEndian.isDirect())
+        {
+            return littleEndian;
+        }
+
+        final ByteBuffer copy = ByteBuffer.allocateDirect(littleEndian.remaining()).order(ByteOrder.nativeOrder());
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN)
+        {
+            copy.put(littleEndian);
+        }
+        else if (elementSize == 4)
+        {
+            while (littleEndian.hasRemaining())
+            {
+                copy.putInt(littleEndian.getInt());
+            }
+        }
+        else
+        {
+            while (littleEndian.hasRemaining())
+            {
+                copy.putShort(littleEndian.getShort());
+            }
+        }
+        copy.flip();
+        return copy;
+    }
+
+    private static void align(ByteBuffer data)
+    {
+        data.position((data.position() + 3) & ~3);
+    }
+
+    private static String utf8(byte[] bytes)
+    {
+        try
+        {
+            return new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // Every Java platform has UTF-8
+            throw new GdxRuntimeException(e);
+        }
+    }
+
+    /**
+     * {@link DataOutputStream} is big endian; this writes little endian and tracks the position for padding.
+     */
+    private static final class LittleEndianWriter
+    {
+        private final DataOutputStream out;
+        private long position;
+
+        LittleEndianWriter(OutputStream out)
+        {
+            this.out = new DataOutputStream(out);
+        }
+
+        void writeInt(int value) throws IOException
+        {
+            out.writeInt(Integer.reverseBytes(value));
+            position += 4;
+        }
+
+        void writeShort(int value) throws IOException
+        {
+            out.writeShort(Short.reverseBytes((short) value));
+            position += 2;
+        }
+
+        void writeFloat(float value) throws IOException
+        {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        void write(byte[] bytes) throws IOException
+        {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void align() throws IOException
+        {
+            while ((position & 3) != 0)
+            {
+                out.write(0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException
+        {
+            out.flush();
+        }
+    }
+}
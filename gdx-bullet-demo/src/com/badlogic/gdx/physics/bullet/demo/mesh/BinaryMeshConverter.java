@@ -0,0 +1,81 @@
+package com.badlogic.gdx.physics.bullet.demo.mesh;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoHeadlessMain;
+
+/**
+ * Converts OBJ files to {@link BinaryMesh} files (next to the originals, with a .mesh extension).
+ * <p>
+ * Usage: BinaryMeshConverter [-collision] file.obj...
+ * <p>
+ * With -collision, the meshes' triangles are also written as collision data.
+ */
+public class BinaryMeshConverter
+{
+    public static void main(String[] argv) throws IOException
+    {
+        boolean collision = false;
+        int converted = 0;
+
+        BulletDemoHeadlessMain.initializeHeadless();
+
+        for (String arg : argv)
+        {
+            if ("-collision".equals(arg))
+            {
+                collision = true;
+                continue;
+            }
+
+            final File objFile = new File(arg);
+            final String name = objFile.getName();
+            final File meshFile = new File(objFile.getParentFile(), (name.endsWith(".obj") ? name.substring(0,
+                    name.length() - 4) : name) + ".mesh");
+
+            convert(objFile, meshFile, collision);
+            converted++;
+        }
+
+        if (converted == 0)
+        {
+            System.err.println("usage: BinaryMeshConverter [-collision] file.obj...");
+            System.exit(1);
+        }
+    }
+
+    public static void convert(File objFile, File meshFile, boolean collision) throws IOException
+    {
+        final Mesh mesh;
+        final InputStream in = new FileInputStream(objFile);
+        try
+        {
+            mesh = new ObjStreamReader().read(in, false);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(meshFile));
+        try
+        {
+            BinaryMesh.write(mesh, collision, out);
+        }
+        finally
+        {
+            out.close();
+            mesh.dispose();
+        }
+
+        System.out.println(objFile + " (" + objFile.length() + " bytes) -> " + meshFile + " (" + meshFile.length()
+                + " bytes)");
+    }
+}
@@ -0,0 +1,145 @@
+package com.badlogic.gdx.physics.bullet.demo.mesh;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+
+/**
+ * A mesh's vertices and indices in CPU memory, before (or without) a {@link Mesh}. Loading can happen on any thread;
+ * only {@link #createMesh()} has to run on the GL thread.
+ * <p>
+ * The buffers are direct (or memory mapped) and in native order, so Bullet can use them in place.
+ */
+public class MeshData
+{
+    private final VertexAttribute[] attributes;
+    private final int vertexSize;
+    private final FloatBuffer vertices;
+    private final ShortBuffer indices;
+
+    /**
+     * @param vertices
+     *            interleaved vertices, from position 0 to the limit
+     * @param indices
+     *            unsigned short indices, from position 0 to the limit (empty or null for unindexed meshes)
+     */
+    public MeshData(VertexAttribute[] attributes, FloatBuffer vertices, ShortBuffer indices)
+    {
+        this.attributes = attributes;
+        this.vertices = vertices;
+        this.indices = indices;
+
+        int size = 0;
+        for (VertexAttribute attribute : attributes)
+        {
+            size += attribute.numComponents * 4;
+        }
+        this.vertexSize = size;
+    }
+
+    /**
+     * @return data sharing the mesh's buffers
+     */
+    public static MeshData fromMesh(Mesh mesh)
+    {
+        final VertexAttributes meshAttributes = mesh.getVertexAttributes();
+        final VertexAttribute[] attributes = new VertexAttribute[meshAttributes.size()];
+        for (int i = 0; i < attributes.length; i++)
+        {
+            attributes[i] = meshAttributes.get(i);
+        }
+
+        final FloatBuffer vertices = mesh.getVerticesBuffer().duplicate();
+        vertices.position(0);
+        vertices.limit(mesh.getNumVertices() * mesh.getVertexSize() / 4);
+
+        final ShortBuffer indices = mesh.getIndicesBuffer().duplicate();
+        indices.position(0);
+        indices.limit(mesh.getNumIndices());
+
+        return new MeshData(attributes, vertices, indices);
+    }
+
+    /**
+     * Creates a static mesh and copies the data into it in bulk. Call on the GL thread.
+     */
+    public Mesh createMesh()
+    {
+        final Mesh mesh = new Mesh(true, getVertexCount(), getIndexCount(), attributes);
+
+        final FloatBuffer meshVertices = mesh.getVerticesBuffer();
+        meshVertices.clear();
+        meshVertices.put(vertices.duplicate());
+        meshVertices.flip();
+
+        if (getIndexCount() > 0)
+        {
+            final ShortBuffer meshIndices = mesh.getIndicesBuffer();
+            meshIndices.clear();
+            meshIndices.put(indices.duplicate());
+            meshIndices.flip();
+        }
+
+        return mesh;
+    }
+
+    public VertexAttribute[] getAttributes()
+    {
+        return attributes;
+    }
+
+    /**
+     * @return the size of one vertex in bytes
+     */
+    public int getVertexSize()
+    {
+        return vertexSize;
+    }
+
+    /**
+     * @return the offset of the position in each vertex in bytes
+     */
+    public int getPositionOffset()
+    {
+        int offset = 0;
+        for (VertexAttribute attribute : attributes)
+        {
+            if (attribute.usage == Usage.Position)
+            {
+                return offset;
+            }
+            offset += attribute.numComponents * 4;
+        }
+        throw new IllegalStateException("Mesh data has no positions");
+    }
+
+    public int getVertexCount()
+    {
+        return vertices.limit() * 4 / vertexSize;
+    }
+
+    public int getIndexCount()
+    {
+        return indices == null ? 0 : indices.limit();
+    }
+
+    /**
+     * @return the vertices (don't change the position or limit; use {@link FloatBuffer#duplicate()})
+     */
+    public FloatBuffer getVertices()
+    {
+        return vertices;
+    }
+
+    /**
+     * @return the indices, or null (don't change the position or limit; use {@link ShortBuffer#duplicate()})
+     */
+    public ShortBuffer getIndices()
+    {
+        return indices;
+    }
+}
@@ -0,0 +1,567 @@
+package com.badlogic.gdx.physics.bullet.demo.mesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Reads OBJ files into {@link Mesh}es (or {@link MeshData}) like {@link com.badlogic.gdx.graphics.g3d.loaders.obj.ObjLoader} (same vertex
+ * attributes: position, then normal and texture coordinates if the file has any), but without creating a String or a
+ * boxed number per token.
+ * <p>
+ * The file is streamed through a fixed size byte buffer and parsed in place. Positions, normals, texture coordinates
+ * and face corners are collected in primitive arrays, which a reader keeps between files, and the vertices are written
+ * straight into direct buffers ready for the mesh. Identical corners are merged into one indexed vertex when the mesh fits in short
+ * indices. Polygons are triangulated as fans.
+ * <p>
+ * Only v, vt, vn and f lines are read; everything else is skipped. Comments may follow a face; line continuations
+ * aren't supported. A reader isn't thread safe; use one per thread.
+ */
+public class ObjStreamReader
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static
+    {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+        {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private ReadableByteChannel channel;
+
+    // The line being parsed (one-based), for error messages
+    private int line;
+
+    private final FloatArray positions = new FloatArray(1024);
+    private final FloatArray normals = new FloatArray(1024);
+    private final FloatArray uvs = new FloatArray(1024);
+
+    // Three zero-based ints per triangle corner: position, texture coordinate and normal index (-1 if absent)
+    private final IntArray corners = new IntArray(3 * 1024);
+
+    // Scratch for one polygon's corners
+    private final IntArray polygon = new IntArray(3 * 8);
+
+    // Corner merging: an open addressing table of unique corner numbers (-1 when empty)
+    private int[] table = new int[0];
+    private final IntArray uniqueCorners = new IntArray(1024);
+    private final IntArray cornerIndices = new IntArray(1024);
+
+    /**
+     * Reads and closes the file. Call on the GL thread.
+     */
+    public Mesh read(FileHandle file, boolean flipV)
+    {
+        return readData(file, flipV).createMesh();
+    }
+
+    /**
+     * Reads the stream to the end (the caller closes it). Call on the GL thread.
+     * 
+     * @param flipV
+     *            true to flip texture coordinates vertically, as {@link com.badlogic.gdx.graphics.g3d.loaders.obj.ObjLoader}
+     *            does
+     */
+    public Mesh read(InputStream in, boolean flipV)
+    {
+        return readData(in, flipV).createMesh();
+    }
+
+    /**
+     * Like {@link #read(FileHandle, boolean)}, but stops short of creating the {@link Mesh}, so it can run on any
+     * thread.
+     */
+    public MeshData readData(FileHandle file, boolean flipV)
+    {
+        final InputStream in = file.read();
+        try
+        {
+            return readData(in, flipV);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                // Already read
+            }
+        }
+    }
+
+    /**
+     * Like {@link #read(InputStream, boolean)}, but stops short of creating the {@link Mesh}, so it can run on any
+     * thread.
+     */
+    public MeshData readData(InputStream in, boolean flipV)
+    {
+        positions.clear();
+        normals.clear();
+        uvs.clear();
+        corners.clear();
+
+        channel = Channels.newChannel(in);
+        buffer.clear();
+        buffer.flip();
+        line = 0;
+
+        try
+        {
+            parse();
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't read OBJ", e);
+        }
+        finally
+        {
+            channel = null;
+        }
+
+        return build(flipV);
+    }
+
+    private void parse() throws IOException
+    {
+        int c;
+        while ((c = next()) != EOF)
+        {
+            // Every pass reads one whole line
+            line++;
+
+            if (c == 'v')
+            {
+                c = next();
+                if (c == ' ' || c == '\t')
+                {
+                    positions.add(parseFloat());
+                    positions.add(parseFloat());
+                    positions.add(parseFloat());
+                }
+                else if (c == 'n')
+                {
+                    normals.add(parseFloat());
+                    normals.add(parseFloat());
+                    normals.add(parseFloat());
+                }
+                else if (c == 't')
+                {
+                    uvs.add(parseFloat());
+                    uvs.add(parseFloat());
+                }
+            }
+            else if (c == 'f')
+            {
+                parseFace();
+            }
+
+            // Ignore whatever is left (w components, comments, unsupported statements)
+            skipLine(c);
+        }
+    }
+
+    private void parseFace() throws IOException
+    {
+        polygon.clear();
+
+        while (true)
+        {
+            skipSpaces();
+            final int c = peek();
+            if (c == EOF || c == '\n' || c == '\r' || c == '#')
+            {
+                // The rest of a line with a comment is skipped by parse()
+                break;
+            }
+
+            final int position = toIndex(parseInt(), positions.size / 3);
+            int uv = -1;
+            int normal = -1;
+
+            if (peek() == '/')
+            {
+                next();
+                if (peek() != '/')
+                {
+                    uv = toIndex(parseInt(), uvs.size / 2);
+                }
+                if (peek() == '/')
+                {
+                    next();
+                    normal = toIndex(parseInt(), normals.size / 3);
+                }
+            }
+
+            polygon.add(position);
+            polygon.add(uv);
+            polygon.add(normal);
+        }
+
+        // Fan triangulation (just the triangle for triangles)
+        final int count = polygon.size / 3;
+        for (int i = 1; i + 1 < count; i++)
+        {
+            addCorner(0);
+            addCorner(i);
+            addCorner(i + 1);
+        }
+    }
+
+    private void addCorner(int polygonCorner)
+    {
+        corners.add(polygon.get(polygonCorner * 3));
+        corners.add(polygon.get(polygonCorner * 3 + 1));
+        corners.add(polygon.get(polygonCorner * 3 + 2));
+    }
+
+    /**
+     * Converts a one-based (or negative, relative to the end) OBJ index to a zero-based one.
+     */
+    private static int toIndex(int objIndex, int count)
+    {
+        return objIndex < 0 ? count + objIndex : objIndex - 1;
+    }
+
+    private MeshData build(boolean flipV)
+    {
+        final boolean hasNormals = normals.size > 0;
+        final boolean hasUVs = uvs.size > 0;
+        final int cornerCount = corners.size / 3;
+
+        final int uniqueCount = mergeCorners(cornerCount);
+        final boolean indexed = uniqueCount <= 0x10000;
+        final int vertexCount = indexed ? uniqueCount : cornerCount;
+
+        final VertexAttribute[] attributes = new VertexAttribute[1 + (hasNormals ? 1 : 0) + (hasUVs ? 1 : 0)];
+        int a = 0;
+        attributes[a++] = new VertexAttribute(Usage.Position, 3, ShaderProgram.POSITION_ATTRIBUTE);
+        if (hasNormals)
+        {
+            attributes[a++] = new VertexAttribute(Usage.Normal, 3, ShaderProgram.NORMAL_ATTRIBUTE);
+        }
+        if (hasUVs)
+        {
+            attributes[a++] = new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0");
+        }
+
+        int floatsPerVertex = 0;
+        for (VertexAttribute attribute : attributes)
+        {
+            floatsPerVertex += attribute.numComponents;
+        }
+
+        final FloatBuffer vertices = ByteBuffer.allocateDirect(vertexCount * floatsPerVertex * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int v = 0; v < vertexCount; v++)
+        {
+            final int corner = indexed ? uniqueCorners.get(v) : v;
+            final int position = corners.get(corner * 3) * 3;
+            final int uv = corners.get(corner * 3 + 1) * 2;
+            final int normal = corners.get(corner * 3 + 2) * 3;
+
+            vertices.put(positions.get(position));
+            vertices.put(positions.get(position + 1));
+            vertices.put(positions.get(position + 2));
+
+            if (hasNormals)
+            {
+                if (normal >= 0)
+                {
+                    vertices.put(normals.get(normal));
+                    vertices.put(normals.get(normal + 1));
+                    vertices.put(normals.get(normal + 2));
+                }
+                else
+                {
+                    vertices.put(0).put(0).put(0);
+                }
+            }
+
+            if (hasUVs)
+            {
+                if (uv >= 0)
+                {
+                    vertices.put(uvs.get(uv));
+                    vertices.put(flipV ? 1 - uvs.get(uv + 1) : uvs.get(uv + 1));
+                }
+                else
+                {
+                    vertices.put(0).put(0);
+                }
+            }
+        }
+        vertices.flip();
+
+        final ShortBuffer indices = ByteBuffer.allocateDirect(indexed ? cornerCount * 2 : 0)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        if (indexed)
+        {
+            for (int i = 0; i < cornerCount; i++)
+            {
+                indices.put((short) cornerIndices.get(i));
+            }
+        }
+        indices.flip();
+
+        return new MeshData(attributes, vertices, indices);
+    }
+
+    /**
+     * Finds the distinct corners: fills uniqueCorners with the first corner of each distinct (position, uv, normal)
+     * combination, and cornerIndices with each corner's index into uniqueCorners.
+     * 
+     * @return the number of distinct corners
+     */
+    private int mergeCorners(int cornerCount)
+    {
+        int capacity = 1;
+        while (capacity < cornerCount * 2)
+        {
+            capacity <<= 1;
+        }
+
+        if (table.length < capacity)
+        {
+            table = new int[capacity];
+        }
+
+        final int mask = capacity - 1;
+        for (int i = 0; i < capacity; i++)
+        {
+            table[i] = -1;
+        }
+
+        uniqueCorners.clear();
+        cornerIndices.clear();
+
+        final int[] c = corners.items;
+        for (int corner = 0; corner < cornerCount; corner++)
+        {
+            final int p = c[corner * 3];
+            final int t = c[corner * 3 + 1];
+            final int n = c[corner * 3 + 2];
+
+            int slot = ((p * 73856093) ^ (t * 19349663) ^ (n * 83492791)) & mask;
+            while (true)
+            {
+                final int unique = table[slot];
+                if (unique == -1)
+                {
+                    table[slot] = uniqueCorners.size;
+                    cornerIndices.add(uniqueCorners.size);
+                    uniqueCorners.add(corner);
+                    break;
+                }
+
+                final int other = uniqueCorners.get(unique);
+                if (c[other * 3] == p && c[other * 3 + 1] == t && c[other * 3 + 2] == n)
+                {
+                    cornerIndices.add(unique);
+                    break;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        return uniqueCorners.size;
+    }
+
+    // Tokenizing
+
+    private int peek() throws IOException
+    {
+        if (!buffer.hasRemaining() && !fill())
+        {
+            return EOF;
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private int next() throws IOException
+    {
+        if (!buffer.hasRemaining() && !fill())
+        {
+            return EOF;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    private boolean fill() throws IOException
+    {
+        buffer.clear();
+        int read;
+        do
+        {
+            read = channel.read(buffer);
+        }
+        while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    private void skipSpaces() throws IOException
+    {
+        int c;
+        while ((c = peek()) == ' ' || c == '\t')
+        {
+            next();
+        }
+    }
+
+    /**
+     * Skips to the start of the next line, unless c (the last character read) already ended the line.
+     */
+    private void skipLine(int c) throws IOException
+    {
+        if (c == '\n' || c == EOF)
+        {
+            return;
+        }
+
+        while ((c = next()) != '\n' && c != EOF)
+        {
+        }
+    }
+
+    /**
+     * @throws GdxRuntimeException
+     *             if there are no digits (anything else would never be consumed)
+     */
+    private int parseInt() throws IOException
+    {
+        skipSpaces();
+
+        boolean negative = false;
+        int c = peek();
+        if (c == '-' || c == '+')
+        {
+            negative = c == '-';
+            next();
+        }
+
+        int value = 0;
+        int digits = 0;
+        while ((c = peek()) >= '0' && c <= '9')
+        {
+            value = value * 10 + (c - '0');
+            digits++;
+            next();
+        }
+
+        if (digits == 0)
+        {
+            throw new GdxRuntimeException("Expected a number on line " + line + " of the OBJ, found "
+                    + (c == EOF ? "the end of the file" : "'" + (char) c + "'"));
+        }
+
+        return negative ? -value : value;
+    }
+
+    private float parseFloat() throws IOException
+    {
+        skipSpaces();
+
+        boolean negative = false;
+        int c = peek();
+        if (c == '-' || c == '+')
+        {
+            negative = c == '-';
+            next();
+        }
+
+        // Up to 18 significant digits in a long, and a decimal exponent
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+
+        while ((c = peek()) >= '0' && c <= '9')
+        {
+            if (digits < 18)
+            {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0)
+                {
+                    digits++;
+                }
+            }
+            else
+            {
+                exponent++;
+            }
+            next();
+        }
+
+        if (c == '.')
+        {
+            next();
+            while ((c = peek()) >= '0' && c <= '9')
+            {
+                if (digits < 18)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0)
+                    {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                next();
+            }
+        }
+
+        if (c == 'e' || c == 'E')
+        {
+            next();
+            boolean negativeExponent = false;
+            c = peek();
+            if (c == '-' || c == '+')
+            {
+                negativeExponent = c == '-';
+                next();
+            }
+
+            int e = 0;
+            while ((c = peek()) >= '0' && c <= '9')
+            {
+                e = e * 10 + (c - '0');
+                next();
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+
+        double value = mantissa;
+        if (exponent < 0)
+        {
+            value /= -exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[-exponent] : Math.pow(10, -exponent);
+        }
+        else if (exponent > 0)
+        {
+            value *= exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : Math.pow(10, exponent);
+        }
+
+        return (float) (negative ? -value : value);
+    }
+}
@@ -0,0 +1,53 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+/**
+ * The replay log: a header, then records, each a type byte followed by its fields (big endian, as written by
+ * {@link java.io.DataOutputStream}).
+ * <p>
+ * Records aren't stamped with a step index. Instead every physics step writes a {@link #STEP} record, so an action
+ * belongs to the step boundary it was recorded at: after all the steps before it and before all the steps after it.
+ * That costs five bytes a step and makes the index exact even while another thread steps.
+ */
+final class ReplayFormat
+{
+    static final int MAGIC = 0x42445250; // "BDRP"
+    static final int VERSION = 1;
+
+    /**
+     * A new screen (the first one or after a reset): seed (long), ground ordinal (byte).
+     */
+    static final int SCREEN = 1;
+
+    /**
+     * One step, and the transform checksum after it: checksum (int).
+     */
+    static final int STEP = 2;
+
+    /**
+     * A thing dropped at a random position: cube (boolean).
+     */
+    static final int DROP = 3;
+
+    static final int PAUSE = 4;
+
+    static final int RESUME = 5;
+
+    /**
+     * Every dropped thing removed.
+     */
+    static final int CLEAR = 6;
+
+    /**
+     * A population update that despawned something.
+     */
+    static final int POPULATION = 7;
+
+    /**
+     * A new physics step: seconds (float).
+     */
+    static final int TIME_STEP = 8;
+
+    private ReplayFormat()
+    {
+    }
+}
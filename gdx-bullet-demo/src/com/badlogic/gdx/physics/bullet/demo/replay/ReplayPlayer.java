@@ -0,0 +1,233 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry;
+import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Plays a {@link ReplayRecorder} log back on headless {@link DemoScreen}s as fast as they can step, applying each
+ * action at the step boundary it was recorded at, and checks the transform checksum after every step against the
+ * recorded one.
+ * <p>
+ * A replay with no mismatches simulated exactly what was recorded, so two builds replaying the same log did the same
+ * work, and their step times can be compared directly.
+ */
+public class ReplayPlayer
+{
+    private final AssetRegistry assetRegistry;
+
+    // Results of the last play()
+    private long steps;
+    private long actions;
+    private int screens;
+    private long mismatches;
+    private long firstMismatchStep = -1;
+    private long stepNanos;
+    private long elapsedNanos;
+    private boolean truncated;
+
+    /**
+     * @param assetRegistry
+     *            the registry every replayed screen gets its assets from
+     */
+    public ReplayPlayer(AssetRegistry assetRegistry)
+    {
+        this.assetRegistry = assetRegistry;
+    }
+
+    /**
+     * Replays the log from start to end. A log that ends in the middle of a record (the recording app was killed, say)
+     * is played up to there.
+     */
+    public void play(InputStream input)
+    {
+        steps = 0;
+        actions = 0;
+        screens = 0;
+        mismatches = 0;
+        firstMismatchStep = -1;
+        stepNanos = 0;
+        truncated = false;
+
+        final long start = System.nanoTime();
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+        DemoScreen screen = null;
+
+        try
+        {
+            if (in.readInt() != ReplayFormat.MAGIC)
+            {
+                throw new GdxRuntimeException("Not a replay log");
+            }
+            final int version = in.readUnsignedByte();
+            if (version != ReplayFormat.VERSION)
+            {
+                throw new GdxRuntimeException("Unsupported replay log version " + version);
+            }
+
+            int type;
+            while ((type = in.read()) >= 0)
+            {
+                if (type == ReplayFormat.STEP)
+                {
+                    final int expected = in.readInt();
+                    requireScreen(screen);
+
+                    final long stepStart = System.nanoTime();
+                    screen.stepPhysicsFixed();
+                    stepNanos += System.nanoTime() - stepStart;
+
+                    if (screen.computeTransformChecksum() != expected)
+                    {
+                        if (mismatches++ == 0)
+                        {
+                            firstMismatchStep = steps;
+                        }
+                    }
+                    steps++;
+                    continue;
+                }
+
+                actions++;
+                switch (type)
+                {
+                case ReplayFormat.SCREEN:
+                    final long seed = in.readLong();
+                    final DemoScreen.Ground ground = DemoScreen.Ground.values()[in.readUnsignedByte()];
+
+                    // A reset: the old screen goes, like in the app
+                    if (screen != null)
+                    {
+                        screen.dispose();
+                    }
+
+                    screen = new DemoScreen(null, true, assetRegistry);
+                    screen.setSeed(seed);
+                    screen.setGround(ground);
+                    screen.showHeadless();
+                    screens++;
+                    break;
+                case ReplayFormat.DROP:
+                    final boolean cube = in.readBoolean();
+                    requireScreen(screen);
+                    screen.dropThing(cube);
+                    break;
+                case ReplayFormat.PAUSE:
+                    requireScreen(screen);
+                    screen.pause();
+                    break;
+                case ReplayFormat.RESUME:
+                    requireScreen(screen);
+                    screen.resume();
+                    break;
+                case ReplayFormat.CLEAR:
+                    requireScreen(screen);
+                    screen.clearThings();
+                    break;
+                case ReplayFormat.POPULATION:
+                    requireScreen(screen);
+                    screen.updatePopulation();
+                    break;
+                case ReplayFormat.TIME_STEP:
+                    final float seconds = in.readFloat();
+                    requireScreen(screen);
+                    screen.setPhysicsTimeStep(seconds);
+                    break;
+                default:
+                    throw new GdxRuntimeException("Unknown replay record type " + type + " after " + steps + " steps");
+                }
+            }
+        }
+        catch (EOFException e)
+        {
+            truncated = true;
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't read the replay log", e);
+        }
+        finally
+        {
+            if (screen != null)
+            {
+                screen.dispose();
+            }
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void requireScreen(DemoScreen screen)
+    {
+        if (screen == null)
+        {
+            throw new GdxRuntimeException("Replay log has records before its first screen");
+        }
+    }
+
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return the number of records other than steps that were applied
+     */
+    public long getActions()
+    {
+        return actions;
+    }
+
+    /**
+     * @return the number of screens the log started (1 plus the number of resets)
+     */
+    public int getScreens()
+    {
+        return screens;
+    }
+
+    /**
+     * @return the number of steps after which the world's checksum didn't match the recorded one
+     */
+    public long getMismatches()
+    {
+        return mismatches;
+    }
+
+    /**
+     * @return the index of the first step (from the start of the log) that didn't match, or -1 if they all did
+     */
+    public long getFirstMismatchStep()
+    {
+        return firstMismatchStep;
+    }
+
+    /**
+     * @return the time spent in the steps alone, in nanoseconds
+     */
+    public long getStepNanos()
+    {
+        return stepNanos;
+    }
+
+    /**
+     * @return the time the whole replay took (screen setup and checksums included), in nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return true if the log ended in the middle of a record
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+}
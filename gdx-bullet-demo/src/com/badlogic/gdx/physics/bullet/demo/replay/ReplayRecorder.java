@@ -0,0 +1,183 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.badlogic.gdx.physics.bullet.demo.screens.DemoScreen;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Writes everything that changes a {@link DemoScreen}'s simulation (its seed, drops, pauses, clears, population
+ * updates, time step changes, and every step with the world's transform checksum) to a log that
+ * {@link ReplayPlayer} can play back step for step.
+ * <p>
+ * Screens record into it once given it with {@link DemoScreen#setRecorder(ReplayRecorder)}. Records are written
+ * from the render and the physics thread, both holding the world lock, so they're in the order they happened to the
+ * world.
+ */
+public class ReplayRecorder implements Disposable
+{
+    private final DataOutputStream out;
+
+    private long steps;
+    private long actions;
+
+    public ReplayRecorder(OutputStream out)
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+
+        try
+        {
+            this.out.writeInt(ReplayFormat.MAGIC);
+            this.out.writeByte(ReplayFormat.VERSION);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't start the replay log", e);
+        }
+    }
+
+    /**
+     * Records that a new screen started with the seed for its random drop positions.
+     */
+    public synchronized void recordScreen(long seed, DemoScreen.Ground ground)
+    {
+        try
+        {
+            writeAction(ReplayFormat.SCREEN);
+            out.writeLong(seed);
+            out.writeByte(ground.ordinal());
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write to the replay log", e);
+        }
+    }
+
+    public synchronized void recordStep(int checksum)
+    {
+        try
+        {
+            out.writeByte(ReplayFormat.STEP);
+            out.writeInt(checksum);
+            steps++;
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write to the replay log", e);
+        }
+    }
+
+    /**
+     * Records a drop at a random position (from the screen's seeded random).
+     */
+    public synchronized void recordDrop(boolean cube)
+    {
+        try
+        {
+            writeAction(ReplayFormat.DROP);
+            out.writeBoolean(cube);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write to the replay log", e);
+        }
+    }
+
+    public synchronized void recordPause()
+    {
+        writeSimpleAction(ReplayFormat.PAUSE);
+    }
+
+    public synchronized void recordResume()
+    {
+        writeSimpleAction(ReplayFormat.RESUME);
+    }
+
+    public synchronized void recordClear()
+    {
+        writeSimpleAction(ReplayFormat.CLEAR);
+    }
+
+    /**
+     * Records a population update. Only needed for updates that despawned something; the others changed nothing.
+     */
+    public synchronized void recordPopulation()
+    {
+        writeSimpleAction(ReplayFormat.POPULATION);
+    }
+
+    public synchronized void recordTimeStep(float seconds)
+    {
+        try
+        {
+            writeAction(ReplayFormat.TIME_STEP);
+            out.writeFloat(seconds);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write to the replay log", e);
+        }
+    }
+
+    private void writeSimpleAction(int type)
+    {
+        try
+        {
+            writeAction(type);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write to the replay log", e);
+        }
+    }
+
+    private void writeAction(int type) throws IOException
+    {
+        out.writeByte(type);
+        actions++;
+    }
+
+    /**
+     * @return the number of steps recorded
+     */
+    public synchronized long getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * @return the number of records other than steps
+     */
+    public synchronized long getActions()
+    {
+        return actions;
+    }
+
+    /**
+     * @return the size of the log so far in bytes
+     */
+    public synchronized int getBytes()
+    {
+        return out.size();
+    }
+
+    /**
+     * Flushes and closes the log.
+     */
+    @Override
+    public synchronized void dispose()
+    {
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't close the replay log", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+/**
+ * The trajectory stream: a header, then one frame per physics step.
+ * <p>
+ * The header is the magic, version, position quantum (float; positions are stored as multiples of it), step length
+ * in seconds (float) and keyframe interval (int). Each frame is its size in bytes (int, not counting itself), a flags
+ * byte, a record count (int), then the records. Everything fixed size is big endian.
+ * <p>
+ * A record starts with a varint tag, the body id shifted left two bits with the record type in the low bits. Ids are
+ * small and reused after a body is removed. {@link #SPAWN} is followed by the body's kind (zigzag varint) and its
+ * {@link #VALUES} quantized values; {@link #UPDATE} by the differences from the body's last values (zigzag varints,
+ * so a body that barely moved costs about a byte a value); {@link #REMOVE} by nothing.
+ * <p>
+ * Bodies that didn't change (asleep, static, or moved less than the quantum) have no record in a frame. Every
+ * keyframe interval frames, a {@link #KEYFRAME} spawns every body afresh, so a reader can seek to any frame by
+ * decoding at most one interval from the keyframe before it.
+ */
+final class TrajectoryFormat
+{
+    static final int MAGIC = 0x42445452; // "BDTR"
+    static final int VERSION = 1;
+
+    // Magic, version, position quantum, step seconds, keyframe interval
+    static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4;
+
+    // Flags, record count
+    static final int FRAME_HEADER_SIZE = 1 + 4;
+
+    /**
+     * Frame flag: forget every body before applying the records (which are all spawns).
+     */
+    static final int KEYFRAME = 1;
+
+    static final int SPAWN = 0;
+    static final int UPDATE = 1;
+    static final int REMOVE = 2;
+
+    /**
+     * Position x, y, z, then rotation x, y, z, w.
+     */
+    static final int VALUES = 7;
+
+    /**
+     * Rotation components are stored as multiples of 1 / ROTATION_SCALE, with w made positive (-q is the same
+     * rotation as q).
+     */
+    static final float ROTATION_SCALE = 32767;
+
+    private TrajectoryFormat()
+    {
+    }
+}
@@ -0,0 +1,304 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoMath;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Reads a {@link TrajectoryRecorder} stream through a memory mapping and decodes any frame of it on demand, without
+ * Bullet.
+ * <p>
+ * Opening only indexes where each frame starts. {@link #seek(int)} then decodes forward from the current frame, or
+ * from the keyframe before the one asked for if that's closer, so scrubbing anywhere costs at most one keyframe
+ * interval of decoding.
+ */
+public class TrajectoryReader
+{
+    private final MappedByteBuffer data;
+    private final float positionQuantum;
+    private final float stepSeconds;
+    private final int keyframeInterval;
+
+    private final int[] frameOffsets;
+    private final int frameCount;
+    private final boolean truncated;
+
+    // The decoded state of every body id at the current frame
+    private int frame = -1;
+    private int idLimit;
+    private boolean[] active = new boolean[64];
+    private int[] kinds = new int[64];
+    private int[] values = new int[64 * TrajectoryFormat.VALUES];
+
+    private TrajectoryReader(MappedByteBuffer data, FileHandle file)
+    {
+        this.data = data;
+
+        if (data.limit() < TrajectoryFormat.HEADER_SIZE || data.getInt() != TrajectoryFormat.MAGIC
+                || data.getInt() != TrajectoryFormat.VERSION)
+        {
+            throw new GdxRuntimeException("Not a trajectory: " + file);
+        }
+        positionQuantum = data.getFloat();
+        stepSeconds = data.getFloat();
+        keyframeInterval = data.getInt();
+
+        // Index the frames; one cut off by the end (the recording app was killed, say) is left out
+        int[] offsets = new int[1024];
+        int count = 0;
+        int position = TrajectoryFormat.HEADER_SIZE;
+        while (position + 4 <= data.limit())
+        {
+            final int size = data.getInt(position);
+            if (size < TrajectoryFormat.FRAME_HEADER_SIZE || position + 4 + size > data.limit())
+            {
+                break;
+            }
+
+            if (count == offsets.length)
+            {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = position + 4;
+            position += 4 + size;
+        }
+
+        frameOffsets = offsets;
+        frameCount = count;
+        truncated = position != data.limit();
+    }
+
+    public static TrajectoryReader open(FileHandle file)
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file.file(), "r");
+
+            // The mapping stays valid after the file is closed
+            return new TrajectoryReader(raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length()), file);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't read trajectory " + file, e);
+        }
+        finally
+        {
+            if (raf != null)
+            {
+                try
+                {
+                    raf.close();
+                }
+                catch (IOException e)
+                {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the bodies as they were after the given frame (clamped to the recording).
+     */
+    public void seek(int target)
+    {
+        if (frameCount == 0)
+        {
+            return;
+        }
+
+        target = Math.max(0, Math.min(frameCount - 1, target));
+        if (target == frame)
+        {
+            return;
+        }
+
+        // Carry on from here unless a keyframe at or before the target is closer (or we'd have to go backwards)
+        final int keyframe = target - target % keyframeInterval;
+        final int start = frame >= keyframe && frame < target ? frame + 1 : keyframe;
+
+        for (int f = start; f <= target; f++)
+        {
+            decode(f);
+        }
+        frame = target;
+    }
+
+    private void decode(int f)
+    {
+        data.position(frameOffsets[f]);
+
+        final int flags = data.get();
+        final int records = data.getInt();
+
+        if ((flags & TrajectoryFormat.KEYFRAME) != 0)
+        {
+            Arrays.fill(active, 0, idLimit, false);
+        }
+
+        for (int r = 0; r < records; r++)
+        {
+            final int tag = getVarint();
+            final int id = tag >>> 2;
+            final int offset = id * TrajectoryFormat.VALUES;
+
+            switch (tag & 3)
+            {
+            case TrajectoryFormat.SPAWN:
+                ensureCapacity(id + 1);
+                active[id] = true;
+                kinds[id] = unzigzag(getVarint());
+                for (int v = 0; v < TrajectoryFormat.VALUES; v++)
+                {
+                    values[offset + v] = unzigzag(getVarint());
+                }
+                break;
+            case TrajectoryFormat.UPDATE:
+                for (int v = 0; v < TrajectoryFormat.VALUES; v++)
+                {
+                    values[offset + v] += unzigzag(getVarint());
+                }
+                break;
+            case TrajectoryFormat.REMOVE:
+                if (id < idLimit)
+                {
+                    active[id] = false;
+                }
+                break;
+            default:
+                throw new GdxRuntimeException("Unknown trajectory record type " + (tag & 3) + " in frame " + f);
+            }
+        }
+    }
+
+    private void ensureCapacity(int ids)
+    {
+        if (ids > active.length)
+        {
+            final int capacity = Math.max(ids, active.length * 2);
+            active = Arrays.copyOf(active, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            values = Arrays.copyOf(values, capacity * TrajectoryFormat.VALUES);
+        }
+        idLimit = Math.max(idLimit, ids);
+    }
+
+    private int getVarint()
+    {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = data.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while (b < 0);
+        return value;
+    }
+
+    private static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the number of complete frames (steps) in the recording
+     */
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    /**
+     * @return the frame last decoded by {@link #seek(int)}, or -1 before the first seek
+     */
+    public int getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return the length of a recorded step in seconds
+     */
+    public float getStepSeconds()
+    {
+        return stepSeconds;
+    }
+
+    public int getKeyframeInterval()
+    {
+        return keyframeInterval;
+    }
+
+    /**
+     * @return true if the file ends in the middle of a frame
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * @return one more than the highest body id seen so far; ids from 0 up to it may be {@link #isActive(int)}
+     */
+    public int getIdLimit()
+    {
+        return idLimit;
+    }
+
+    /**
+     * @return true if the body was in the world at the current frame
+     */
+    public boolean isActive(int id)
+    {
+        return active[id];
+    }
+
+    /**
+     * @return the kind the recording screen gave the body (see
+     *         {@link com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen#getObjectKind})
+     */
+    public int getKind(int id)
+    {
+        return kinds[id];
+    }
+
+    /**
+     * Gets a body's transform at the current frame as an OpenGL matrix.
+     */
+    public void getOpenGLMatrix(int id, float[] glMatrix)
+    {
+        final int offset = id * TrajectoryFormat.VALUES;
+
+        float qx = values[offset + 3];
+        float qy = values[offset + 4];
+        float qz = values[offset + 5];
+        float qw = values[offset + 6];
+
+        // Quantizing shortened it a little
+        final float length = (float) Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw);
+        if (length > 0)
+        {
+            qx /= length;
+            qy /= length;
+            qz /= length;
+            qw /= length;
+        }
+        else
+        {
+            qw = 1;
+        }
+
+        BulletDemoMath.toOpenGLMatrix(values[offset] * positionQuantum, values[offset + 1] * positionQuantum,
+                values[offset + 2] * positionQuantum, qx, qy, qz, qw, glMatrix, 0);
+    }
+}
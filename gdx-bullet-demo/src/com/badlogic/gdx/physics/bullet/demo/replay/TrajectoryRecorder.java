@@ -0,0 +1,479 @@
+package com.badlogic.gdx.physics.bullet.demo.replay;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btCollisionObject;
+import com.badlogic.gdx.physics.bullet.btTransform;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Records every body's transform after each step of a {@link SimulationScreen} into a quantized, delta compressed
+ * stream (see {@link TrajectoryFormat}) for {@link TrajectoryReader} to play back without Bullet.
+ * <p>
+ * Screens record into it once given it with {@link SimulationScreen#setTrajectoryRecorder(TrajectoryRecorder)}.
+ * Frames are encoded on the thread that steps, but written to the file by the recorder's own thread, so a slow disk
+ * never holds up a step: encoded frames queue up (in recycled buffers) until they're written.
+ */
+public class TrajectoryRecorder implements Disposable
+{
+    /**
+     * Positions are stored to about a millimeter.
+     */
+    public static final float DEFAULT_POSITION_QUANTUM = 1f / 1024f;
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+
+    // Bullet's activation state of a body that's asleep (not wrapped)
+    private static final int ISLAND_SLEEPING = 2;
+
+    // The most a record can take: tag, kind and every value as 5 byte varints
+    private static final int MAX_RECORD_SIZE = 5 + 5 + TrajectoryFormat.VALUES * 5;
+
+    // Queued after the last frame to stop the writer
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final float positionScale;
+    private final int keyframeInterval;
+
+    // Encoder state, only used by the thread that steps
+    private final IdentityHashMap<CollisionSimulationObject, Integer> ids = new IdentityHashMap<CollisionSimulationObject, Integer>();
+    private CollisionSimulationObject[] objects = new CollisionSimulationObject[64];
+    private int[] lastValues = new int[64 * TrajectoryFormat.VALUES];
+    private long[] lastSeen = new long[64];
+    private int[] activeIds = new int[64];
+    private int activeCount;
+    private int[] freeIds = new int[64];
+    private int freeCount;
+    private int nextId;
+    private final int[] values = new int[TrajectoryFormat.VALUES];
+    // Shared since a recording can span screens (see DemoScreenInput's reset)
+    private final btTransform transform = NativeRegistry.trackShared(new btTransform());
+    private byte[] frame = new byte[4096];
+    private int frameSize;
+    private int frameRecords;
+    private long frames;
+    private long records;
+    private long skipped;
+
+    // Hands encoded frames to the writer and back
+    private final LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<ByteBuffer>();
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private volatile IOException writeError;
+    private final Thread writer;
+
+    public TrajectoryRecorder(FileHandle file, float stepSeconds)
+    {
+        this(file, stepSeconds, DEFAULT_POSITION_QUANTUM, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Starts a recording, replacing the file.
+     *
+     * @param stepSeconds
+     *            the screen's physics time step, for playing back at the recorded speed
+     * @param positionQuantum
+     *            the smallest change in position that's recorded
+     * @param keyframeInterval
+     *            the number of frames between keyframes: shorter seeks faster, longer is smaller
+     */
+    public TrajectoryRecorder(FileHandle file, float stepSeconds, float positionQuantum, int keyframeInterval)
+    {
+        this.positionScale = 1 / positionQuantum;
+        this.keyframeInterval = keyframeInterval;
+
+        try
+        {
+            stream = new FileOutputStream(file.file());
+            channel = stream.getChannel();
+
+            final ByteBuffer header = ByteBuffer.allocate(TrajectoryFormat.HEADER_SIZE);
+            header.putInt(TrajectoryFormat.MAGIC);
+            header.putInt(TrajectoryFormat.VERSION);
+            header.putFloat(positionQuantum);
+            header.putFloat(stepSeconds);
+            header.putInt(keyframeInterval);
+            header.flip();
+            write(header);
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't start the trajectory " + file, e);
+        }
+
+        writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        }, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encodes a frame with every object that changed since the last one (all of them in a keyframe), and queues it to
+     * be written. Called by {@link SimulationScreen#stepPhysicsFixed()} on the thread that stepped.
+     *
+     * @param screen
+     *            numbers the kinds of new objects (see
+     *            {@link SimulationScreen#getObjectKind(CollisionSimulationObject)})
+     */
+    public void recordStep(SimulationScreen screen, List<CollisionSimulationObject> objectList)
+    {
+        final boolean keyframe = frames % keyframeInterval == 0;
+
+        frameSize = 0;
+        frameRecords = 0;
+        ensureFrameCapacity(TrajectoryFormat.FRAME_HEADER_SIZE);
+        frame[frameSize++] = (byte) (keyframe ? TrajectoryFormat.KEYFRAME : 0);
+        frameSize += 4; // Record count, filled in at the end
+
+        for (int i = 0; i < objectList.size(); i++)
+        {
+            final CollisionSimulationObject object = objectList.get(i);
+            final btCollisionObject collisionObject = object.getCollisionObject();
+            if (collisionObject == null)
+            {
+                continue;
+            }
+
+            final Integer knownId = ids.get(object);
+            final int id = knownId != null ? knownId.intValue() : addObject(object);
+            final boolean spawn = knownId == null || keyframe;
+            lastSeen[id] = frames;
+
+            // Static bodies never move and sleeping ones haven't since they fell asleep (checked before any copying)
+            if (!spawn && (!object.isDynamic() || collisionObject.getActivationState() == ISLAND_SLEEPING))
+            {
+                skipped++;
+                continue;
+            }
+
+            quantize(collisionObject);
+
+            final int offset = id * TrajectoryFormat.VALUES;
+            if (!spawn && unchanged(offset))
+            {
+                skipped++;
+                continue;
+            }
+
+            ensureFrameCapacity(MAX_RECORD_SIZE);
+            if (spawn)
+            {
+                putVarint(id << 2 | TrajectoryFormat.SPAWN);
+                putVarint(zigzag(screen.getObjectKind(object)));
+                for (int v = 0; v < TrajectoryFormat.VALUES; v++)
+                {
+                    putVarint(zigzag(values[v]));
+                }
+            }
+            else
+            {
+                putVarint(id << 2 | TrajectoryFormat.UPDATE);
+                for (int v = 0; v < TrajectoryFormat.VALUES; v++)
+                {
+                    putVarint(zigzag(values[v] - lastValues[offset + v]));
+                }
+            }
+            System.arraycopy(values, 0, lastValues, offset, TrajectoryFormat.VALUES);
+            frameRecords++;
+        }
+
+        removeUnseen();
+
+        frame[1] = (byte) (frameRecords >>> 24);
+        frame[2] = (byte) (frameRecords >>> 16);
+        frame[3] = (byte) (frameRecords >>> 8);
+        frame[4] = (byte) frameRecords;
+        records += frameRecords;
+        frames++;
+
+        enqueue();
+    }
+
+    private int addObject(CollisionSimulationObject object)
+    {
+        final int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id >= objects.length)
+        {
+            final int capacity = objects.length * 2;
+            objects = Arrays.copyOf(objects, capacity);
+            lastValues = Arrays.copyOf(lastValues, capacity * TrajectoryFormat.VALUES);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+        }
+        if (activeCount == activeIds.length)
+        {
+            activeIds = Arrays.copyOf(activeIds, activeIds.length * 2);
+        }
+
+        objects[id] = object;
+        activeIds[activeCount++] = id;
+        ids.put(object, id);
+        return id;
+    }
+
+    /**
+     * Writes a removal for every object that wasn't in this frame, and frees its id for the next frame.
+     */
+    private void removeUnseen()
+    {
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++)
+        {
+            final int id = activeIds[i];
+            if (lastSeen[id] == frames)
+            {
+                activeIds[kept++] = id;
+                continue;
+            }
+
+            ensureFrameCapacity(MAX_RECORD_SIZE);
+            putVarint(id << 2 | TrajectoryFormat.REMOVE);
+            frameRecords++;
+
+            ids.remove(objects[id]);
+            objects[id] = null;
+            if (freeCount == freeIds.length)
+            {
+                freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+            }
+            freeIds[freeCount++] = id;
+        }
+        activeCount = kept;
+    }
+
+    private void quantize(btCollisionObject collisionObject)
+    {
+        collisionObject.getWorldTransform(transform);
+
+        // Copy out right away: Bullet reuses the returned objects
+        final Vector3 origin = transform.getOrigin();
+        values[0] = Math.round(origin.x * positionScale);
+        values[1] = Math.round(origin.y * positionScale);
+        values[2] = Math.round(origin.z * positionScale);
+
+        final Quaternion rotation = transform.getRotation();
+        final float scale = rotation.w < 0 ? -TrajectoryFormat.ROTATION_SCALE : TrajectoryFormat.ROTATION_SCALE;
+        values[3] = Math.round(rotation.x * scale);
+        values[4] = Math.round(rotation.y * scale);
+        values[5] = Math.round(rotation.z * scale);
+        values[6] = Math.round(rotation.w * scale);
+    }
+
+    private boolean unchanged(int offset)
+    {
+        for (int v = 0; v < TrajectoryFormat.VALUES; v++)
+        {
+            if (values[v] != lastValues[offset + v])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void putVarint(int value)
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            frame[frameSize++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        frame[frameSize++] = (byte) value;
+    }
+
+    private void ensureFrameCapacity(int bytes)
+    {
+        if (frameSize + bytes > frame.length)
+        {
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, frameSize + bytes));
+        }
+    }
+
+    /**
+     * Copies the frame (behind its size) into a free buffer and hands it to the writer. Only allocates while the free
+     * buffers are too small or all queued.
+     */
+    private void enqueue()
+    {
+        final int size = 4 + frameSize;
+
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null || buffer.capacity() < size)
+        {
+            buffer = ByteBuffer.allocate(Math.max(size, 64 * 1024));
+        }
+
+        buffer.putInt(frameSize);
+        buffer.put(frame, 0, frameSize);
+        buffer.flip();
+
+        queuedBytes.addAndGet(size);
+        queue.offer(buffer);
+    }
+
+    /**
+     * The writer thread: writes frames in order until {@link #END}.
+     */
+    private void drain()
+    {
+        while (true)
+        {
+            final ByteBuffer buffer;
+            try
+            {
+                buffer = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+
+            if (buffer == END)
+            {
+                return;
+            }
+
+            final int size = buffer.remaining();
+            if (writeError == null)
+            {
+                try
+                {
+                    write(buffer);
+                    writtenBytes.addAndGet(size);
+                }
+                catch (IOException e)
+                {
+                    // Keep taking frames (so they don't pile up), but stop writing
+                    writeError = e;
+                }
+            }
+            queuedBytes.addAndGet(-size);
+
+            buffer.clear();
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return the number of frames (steps) recorded
+     */
+    public long getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * @return the number of body records in all frames
+     */
+    public long getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * @return the number of times a body was left out of a frame because it was asleep, static or hadn't moved
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * @return the bytes encoded but not written yet
+     */
+    public long getQueuedBytes()
+    {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return the bytes of frames written so far (not counting the header)
+     */
+    public long getWrittenBytes()
+    {
+        return writtenBytes.get();
+    }
+
+    /**
+     * Waits for every queued frame to be written, then closes the file. Stop recording first (so no more steps are
+     * recorded).
+     */
+    @Override
+    public void dispose()
+    {
+        queue.offer(END);
+
+        boolean interrupted = false;
+        while (writer.isAlive())
+        {
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (NativeRegistry.release(transform))
+        {
+            transform.delete();
+        }
+
+        try
+        {
+            stream.close();
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't close the trajectory", e);
+        }
+
+        if (writeError != null)
+        {
+            throw new GdxRuntimeException("Couldn't write the trajectory", writeError);
+        }
+    }
+}
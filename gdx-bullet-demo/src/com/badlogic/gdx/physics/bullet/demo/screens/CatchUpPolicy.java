@@ -0,0 +1,32 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+/**
+ * What the fixed step loop does when more than the maximum number of steps per frame are due (after a long GC pause,
+ * a window drag, or simply a world that takes longer than real time to step).
+ */
+public enum CatchUpPolicy
+{
+    /**
+     * Run every step that's due, no matter how many. Simulation time never slips, but a long stall makes the next frame
+     * even longer.
+     */
+    UNBOUNDED,
+
+    /**
+     * Run at most the maximum steps per frame and leave the rest in the accumulator for later frames. Frame time is
+     * bounded, but the simulation falls behind real time until the load drops.
+     */
+    DEFER,
+
+    /**
+     * Run at most the maximum steps per frame and throw away the rest. Frame time is bounded and no backlog builds up,
+     * but the dropped time is lost for good: while overloaded, the simulation runs slower than real time.
+     */
+    DROP,
+
+    /**
+     * Like {@link #DEFER}, but slow simulated time down while there's a backlog and speed it back up gradually once
+     * the backlog is gone. A backlog that still grows past a few frames' worth is dropped.
+     */
+    DILATE
+}
@@ -1,36 +1,68 @@
 package com.badlogic.gdx.physics.bullet.demo.screens;
 
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.Texture.TextureWrap;
-import com.badlogic.gdx.graphics.g3d.loaders.obj.ObjLoader;
-import com.badlogic.gdx.math.Matrix3;
 import com.badlogic.gdx.math.Vector3;
-import com.badlogic.gdx.physics.bullet.btBoxShape;
+import com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape;
 import com.badlogic.gdx.physics.bullet.btCollisionObject.CollisionFlags;
-import com.badlogic.gdx.physics.bullet.btSphereShape;
 import com.badlogic.gdx.physics.bullet.btTransform;
-import com.badlogic.gdx.physics.bullet.btTriangleMesh;
+import com.badlogic.gdx.physics.bullet.demo.GLStateCache;
 import com.badlogic.gdx.physics.bullet.demo.Pools;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetLoader;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry;
+import com.badlogic.gdx.physics.bullet.demo.assets.PendingAsset;
 import com.badlogic.gdx.physics.bullet.demo.input.DemoScreenInput;
+import com.badlogic.gdx.physics.bullet.demo.mesh.BinaryMeshConverter;
+import com.badlogic.gdx.physics.bullet.demo.replay.ReplayRecorder;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.BvhCache;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionShapeCache;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
 import com.badlogic.gdx.physics.bullet.demo.simulationobjects.MeshSimulationObject;
 import com.badlogic.gdx.physics.bullet.demo.simulationobjects.RigidSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.RigidSimulationObjectPool;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.StaticPlaneSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.TriangleMeshShape;
 
 public class DemoScreen extends SimulationScreen
 {
-    private static final float[] SKY_COLOR = new float[] { .65f, .65f, 1, 1 };
+    /**
+     * The kind of ground {@link #hookAddSimulationObjects()} creates.
+     */
+    public enum Ground
+    {
+        /**
+         * A {@link btBvhTriangleMeshShape} built from the terrain mesh.
+         */
+        TERRAIN,
+
+        /**
+         * A flat {@link StaticPlaneSimulationObject}.
+         */
+        PLANE
+    }
+
+    static final float[] SKY_COLOR = new float[] { .65f, .65f, 1, 1 };
+
+    // Where the fog is opaque; nothing past it is worth drawing
+    static final float FOG_END = 100;
 
     private final Game game;
     private final DemoScreenInput input;
-    private final Random random = new Random();
+    // Drop positions; seeded, so a replay drops things in the same places
+    private long seed = System.nanoTime();
+    private final Random random = new Random(seed);
+
+    // Records what changes the simulation, if set
+    private ReplayRecorder recorder;
 
     private Mesh cubeMesh;
     private Mesh icosphereMesh;
@@ -40,70 +72,263 @@ public class DemoScreen extends SimulationScreen
     private Texture icosphereTexture;
     private Texture terrainTexture;
 
+    private Ground ground = Ground.TERRAIN;
     private RigidSimulationObject terrain;
-    // Holds a reference to Bullet's native mesh for the lifetime of the screen
-    private AtomicReference<btTriangleMesh> terrainTriangleMesh = new AtomicReference<btTriangleMesh>();
+
+    // Every dropped cube (and sphere) shares one collision shape
+    private final CollisionShapeCache shapeCache = new CollisionShapeCache();
+
+    // Dropped things are recycled instead of deleted
+    private static final int THING_POOL_SIZE = 1024;
+    private static final int THING_POOL_PREWARM = 32;
+    private static final int MAX_THINGS = 2000;
+
+    // Checkpoint (and trajectory) kinds of the dropped things and the terrain
+    static final int KIND_CUBE = 0;
+    static final int KIND_SPHERE = 1;
+    static final int KIND_TERRAIN = 2;
+
+    private final RigidSimulationObjectPool<MeshSimulationObject> cubePool = new RigidSimulationObjectPool<MeshSimulationObject>(
+            THING_POOL_SIZE)
+    {
+        @Override
+        protected MeshSimulationObject newObject()
+        {
+            final btTransform transform = obtainIdentityTransform();
+
+            // Don't autodispose the mesh and texture
+            final MeshSimulationObject object = new MeshSimulationObject(cubeMesh, GL10.GL_TRIANGLES, false,
+                    cubeTexture, false);
+            object.initialize(shapeCache.box(1, 1, 1), 50, -1, transform);
+
+            Pools.btTRANSFORM.free(transform);
+            return object;
+        }
+    };
+
+    private final RigidSimulationObjectPool<MeshSimulationObject> spherePool = new RigidSimulationObjectPool<MeshSimulationObject>(
+            THING_POOL_SIZE)
+    {
+        @Override
+        protected MeshSimulationObject newObject()
+        {
+            final btTransform transform = obtainIdentityTransform();
+
+            // Don't autodispose the mesh and texture
+            final MeshSimulationObject object = new MeshSimulationObject(icosphereMesh, GL10.GL_TRIANGLES, false,
+                    icosphereTexture, false);
+            object.initialize(shapeCache.sphere(1), 50, -1, transform);
+
+            Pools.btTRANSFORM.free(transform);
+            return object;
+        }
+    };
+
+    // The terrain's BVH is only built the first time; later screens map it from here
+    private final BvhCache bvhCache = createBvhCache();
+
+    // Meshes, textures and the terrain shape come from (and go back to) the registry, which loads them on its threads
+    private final AssetRegistry assetRegistry;
+    private final boolean ownsAssetRegistry;
+    private final long assetStart;
+    private final PendingAsset<Mesh> pendingCubeMesh;
+    private final PendingAsset<Mesh> pendingIcosphereMesh;
+    private final PendingAsset<Mesh> pendingTerrainMesh;
+    private final PendingAsset<TriangleMeshShape> pendingTerrainShape;
+    private PendingAsset<Texture> pendingCubeTexture;
+    private PendingAsset<Texture> pendingIcosphereTexture;
+    private PendingAsset<Texture> pendingTerrainTexture;
+    private TriangleMeshShape terrainShape;
+    private boolean assetsLoaded;
 
     private final StringBuffer osdStringBuffer = new StringBuffer();
 
     public DemoScreen(Game game)
+    {
+        this(game, false);
+    }
+
+    /**
+     * @param game
+     *            the game (may be null when headless)
+     * @param headless
+     *            if true, no input processor, lights, or textures are set up (meshes are still loaded because the
+     *            terrain collision shape is built from one)
+     */
+    public DemoScreen(Game game, boolean headless)
+    {
+        this(game, headless, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a screen with its own asset registry (disposed with the screen).
+     * 
+     * @param assetThreads
+     *            the number of threads to load meshes and textures on, or 0 to load them one after another on this
+     *            thread
+     */
+    public DemoScreen(Game game, boolean headless, int assetThreads)
+    {
+        this(game, headless, new AssetRegistry(assetThreads, AssetRegistry.DEFAULT_BUDGET_BYTES), true);
+    }
+
+    /**
+     * Creates a screen that gets its assets from a registry that outlives it, so a new screen (after a reset) doesn't
+     * load anything again.
+     */
+    public DemoScreen(Game game, AssetRegistry assetRegistry)
+    {
+        this(game, false, assetRegistry, false);
+    }
+
+    /**
+     * Like {@link #DemoScreen(Game, AssetRegistry)}, but can be headless (so many screens can share one registry's
+     * meshes and terrain shape).
+     */
+    public DemoScreen(Game game, boolean headless, AssetRegistry assetRegistry)
+    {
+        this(game, headless, assetRegistry, false);
+    }
+
+    private DemoScreen(Game game, boolean headless, AssetRegistry assetRegistry, boolean ownsAssetRegistry)
     {
         // Physics is configured when super() finishes
-        super();
+        super(headless);
 
         this.game = game;
+        this.assetRegistry = assetRegistry;
+        this.ownsAssetRegistry = ownsAssetRegistry;
+
+        // Start loading (whatever the registry doesn't have yet); hookAddSimulationObjects() waits for it all
+        assetStart = System.nanoTime();
+        pendingCubeMesh = assetRegistry.acquireMesh(findMesh("cube"));
+        pendingIcosphereMesh = assetRegistry.acquireMesh(findMesh("icosphere"));
+        final FileHandle terrainFile = findMesh("terrain");
+        pendingTerrainMesh = assetRegistry.acquireMesh(terrainFile);
+        pendingTerrainShape = assetRegistry.acquireTriangleMeshShape(terrainFile, bvhCache);
+
+        if (!headless)
+        {
+            pendingCubeTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/weird.png"), true);
+            pendingIcosphereTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/blue.png"), true);
+            pendingTerrainTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/grass.png"), true);
+        }
+
+        // Anything that rolls off the ground (about 48 units square) is gone for good
+        getPopulationManager().setBounds(-50, -50, -20, 50, 50, 100);
+        getPopulationManager().setMaxBodies(MAX_THINGS, PopulationManager.EvictionPolicy.OLDEST_FIRST);
+
+        setCullDistance(FOG_END);
+
+        if (headless)
+        {
+            this.input = null;
+            return;
+        }
+
         this.input = new DemoScreenInput(this, Gdx.input);
 
         Gdx.app.getInput().setInputProcessor(input);
 
+        setUpLights(getGLState());
+        setUpCamera(getPerspectiveCamera());
+    }
+
+    /**
+     * Sets up the ambient light and the one directional light every demo scene is lit with.
+     */
+    static void setUpLights(GLStateCache glState)
+    {
         // Ambient light
-        Gdx.gl10.glLightModelfv(GL10.GL_LIGHT_MODEL_AMBIENT, new float[] { .2f, .2f, .2f, 1 }, 0);
+        glState.glLightModelfv(GL10.GL_LIGHT_MODEL_AMBIENT, new float[] { .2f, .2f, .2f, 1 }, 0);
 
         // One directional light
-        Gdx.gl10.glLightfv(GL10.GL_LIGHT0, GL10.GL_AMBIENT, new float[] { .2f, .2f, .2f, 1 }, 0);
-        Gdx.gl10.glLightfv(GL10.GL_LIGHT0, GL10.GL_DIFFUSE, new float[] { 1, 1, 1, 1 }, 0);
-        Gdx.gl10.glLightfv(GL10.GL_LIGHT0, GL10.GL_SPECULAR, new float[] { 1, 1, 1, 1 }, 0);
-        Gdx.gl10.glLightf(GL10.GL_LIGHT0, GL10.GL_CONSTANT_ATTENUATION, 1);
-        Gdx.gl10.glLightf(GL10.GL_LIGHT0, GL10.GL_LINEAR_ATTENUATION, 0);
-        Gdx.gl10.glLightf(GL10.GL_LIGHT0, GL10.GL_QUADRATIC_ATTENUATION, 0);
-        Gdx.gl10.glLightfv(GL10.GL_LIGHT0, GL10.GL_POSITION, new float[] { -10, -10, 10, 1 }, 0);
-        Gdx.gl10.glEnable(GL10.GL_LIGHT0);
-
-        PerspectiveCamera camera = getPerspectiveCamera();
+        glState.glLightfv(GL10.GL_LIGHT0, GL10.GL_AMBIENT, new float[] { .2f, .2f, .2f, 1 }, 0);
+        glState.glLightfv(GL10.GL_LIGHT0, GL10.GL_DIFFUSE, new float[] { 1, 1, 1, 1 }, 0);
+        glState.glLightfv(GL10.GL_LIGHT0, GL10.GL_SPECULAR, new float[] { 1, 1, 1, 1 }, 0);
+        glState.glLightf(GL10.GL_LIGHT0, GL10.GL_CONSTANT_ATTENUATION, 1);
+        glState.glLightf(GL10.GL_LIGHT0, GL10.GL_LINEAR_ATTENUATION, 0);
+        glState.glLightf(GL10.GL_LIGHT0, GL10.GL_QUADRATIC_ATTENUATION, 0);
+        glState.glLightfv(GL10.GL_LIGHT0, GL10.GL_POSITION, new float[] { -10, -10, 10, 1 }, 0);
+        glState.glEnable(GL10.GL_LIGHT0);
+    }
+
+    /**
+     * Points the camera at the middle of the ground from above one side.
+     */
+    static void setUpCamera(PerspectiveCamera camera)
+    {
         camera.position.set(-25, 0, 20);
         camera.lookAt(0, 0, 0);
         camera.up.set(0, 0, 1);
         camera.fieldOfView = 60;
         camera.update();
+    }
+
+    /**
+     * Waits for everything acquired in the constructor (uploading meshes and textures on this thread as they're
+     * decoded). Does nothing after the first call.
+     */
+    private void awaitAssets()
+    {
+        if (assetsLoaded)
+        {
+            return;
+        }
+        assetsLoaded = true;
 
-        // Load meshes
-        cubeMesh = ObjLoader.loadObj(Gdx.app.getFiles().classpath("models/cube.obj").read(), false);
-        icosphereMesh = ObjLoader.loadObj(Gdx.app.getFiles().classpath("models/icosphere.obj").read(), false);
-        terrainMesh = ObjLoader.loadObj(Gdx.app.getFiles().classpath("models/terrain.obj").read(), false);
+        final AssetLoader loader = assetRegistry.getLoader();
+        cubeMesh = loader.await(pendingCubeMesh);
+        icosphereMesh = loader.await(pendingIcosphereMesh);
+        terrainMesh = loader.await(pendingTerrainMesh);
+        terrainShape = loader.await(pendingTerrainShape);
 
-        // Load textures
-        cubeTexture = new Texture(Gdx.files.classpath("textures/weird.png"), true);
-        cubeTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
-        icosphereTexture = new Texture(Gdx.files.classpath("textures/blue.png"), true);
-        icosphereTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
-        terrainTexture = new Texture(Gdx.files.classpath("textures/grass.png"), true);
-        terrainTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
-        terrainTexture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+        if (!isHeadless())
+        {
+            cubeTexture = loader.await(pendingCubeTexture);
+            cubeTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+            icosphereTexture = loader.await(pendingIcosphereTexture);
+            icosphereTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+            terrainTexture = loader.await(pendingTerrainTexture);
+            terrainTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+            terrainTexture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+        }
+
+        System.out.println("Assets loaded in " + (System.nanoTime() - assetStart) / 1000000 + " ms with "
+                + loader.getThreads() + " loader threads (" + assetRegistry.getHits() + " registry hits)");
     }
 
     @Override
     public void dispose()
     {
-        // Disposes all SimulationObjects we added
+        // In case the screen was never shown, so nothing is released while it's still loading
+        awaitAssets();
+
+        // Disposes all SimulationObjects we added, then our pools (see hookDispose())
         super.dispose();
 
-        cubeMesh.dispose();
-        icosphereMesh.dispose();
-        terrainMesh.dispose();
+        // The registry keeps them for the next screen (as long as they fit in its budget)
+        assetRegistry.release(pendingCubeMesh);
+        assetRegistry.release(pendingIcosphereMesh);
+        assetRegistry.release(pendingTerrainMesh);
+        assetRegistry.release(pendingTerrainShape);
 
-        cubeTexture.dispose();
-        icosphereTexture.dispose();
-        terrainTexture.dispose();
+        if (!isHeadless())
+        {
+            assetRegistry.release(pendingCubeTexture);
+            assetRegistry.release(pendingIcosphereTexture);
+            assetRegistry.release(pendingTerrainTexture);
+        }
+
+        if (ownsAssetRegistry)
+        {
+            assetRegistry.dispose();
+        }
+
+        if (isHeadless())
+        {
+            return;
+        }
 
         // Only remove if we're still it
         if (Gdx.app.getInput().getInputProcessor() == input)
@@ -112,45 +337,217 @@ public class DemoScreen extends SimulationScreen
         }
     }
 
+    /**
+     * @return models/name.mesh if it's there (see {@link BinaryMeshConverter}), otherwise models/name.obj
+     */
+    static FileHandle findMesh(String name)
+    {
+        final FileHandle binary = Gdx.files.classpath("models/" + name + ".mesh");
+        if (binary.exists())
+        {
+            return binary;
+        }
+
+        System.out.println("No " + binary.path() + ", parsing OBJ");
+        return Gdx.files.classpath("models/" + name + ".obj");
+    }
+
     public Game getGame()
     {
         return game;
     }
 
+    /**
+     * Sets the kind of ground to create. Only takes effect if called before the screen is shown.
+     */
+    public void setGround(Ground ground)
+    {
+        this.ground = ground;
+    }
+
+    public Ground getGround()
+    {
+        return ground;
+    }
+
+    /**
+     * @return the registry the screen's assets come from (pass it to the next screen to share them)
+     */
+    public AssetRegistry getAssetRegistry()
+    {
+        return assetRegistry;
+    }
+
+    /**
+     * Seeds the random drop positions. Only makes drops repeatable if called before anything is dropped.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+        random.setSeed(seed);
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Records the screen's seed, its drops, pauses and clears, the population updates that despawn something, time step
+     * changes and every step into a replay log. Set it before the screen is shown.
+     */
+    public void setRecorder(ReplayRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    public ReplayRecorder getRecorder()
+    {
+        return recorder;
+    }
+
+    public BvhCache getBvhCache()
+    {
+        return bvhCache;
+    }
+
+    /**
+     * @return a cache for the directory the demo keeps its BVHs in
+     */
+    public static BvhCache createBvhCache()
+    {
+        return new BvhCache(Gdx.files.local("bvh-cache"));
+    }
+
+    /**
+     * Drops a cube (type is true) or a sphere (type is false) at a random position. Does nothing while paused.
+     */
     public void dropThing(boolean type)
     {
-        if (!isPaused())
+        // So a recorder sees the drop between the same two steps the physics thread does
+        synchronized (getWorldLock())
         {
-            float x = (random.nextFloat() * 10f) - 5f;
-            float y = (random.nextFloat() * 10f) - 5f;
-            float z = 20;
+            if (!isPaused())
+            {
+                float x = (random.nextFloat() * 10f) - 5f;
+                float y = (random.nextFloat() * 10f) - 5f;
+                float z = 20;
 
+                dropThing(type, x, y, z);
+
+                if (recorder != null)
+                {
+                    recorder.recordDrop(type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops a cube (type is true) or a sphere (type is false) at the given position. Does nothing while paused. Not
+     * recorded; drops that should be replayable go through {@link #dropThing(boolean)}.
+     */
+    public void dropThing(boolean type, float x, float y, float z)
+    {
+        if (!isPaused())
+        {
             final btTransform transform = Pools.btTRANSFORM.obtain();
             final Vector3 vector = Pools.VECTOR3.obtain();
-            final Matrix3 basis = Pools.MATRIX3.obtain();
 
             transform.setIdentity();
             transform.setOrigin(vector.set(x, y, z));
 
-            MeshSimulationObject object;
+            final MeshSimulationObject object;
             if (type)
             {
-                // Don't autodispose the mesh and texture
-                object = new MeshSimulationObject(cubeMesh, GL10.GL_TRIANGLES, false, cubeTexture, false);
-                object.initialize(new btBoxShape(vector.set(1, 1, 1)), 50, -1, transform);
+                object = cubePool.obtain(transform);
             }
             else
             {
-                // Don't autodispose the mesh and texture
-                object = new MeshSimulationObject(icosphereMesh, GL10.GL_TRIANGLES, false, icosphereTexture, false);
-                object.initialize(new btSphereShape(1), 50, -1, transform);
+                object = spherePool.obtain(transform);
             }
 
             addCollisionSimulationObject(object);
 
             Pools.btTRANSFORM.free(transform);
             Pools.VECTOR3.free(vector);
-            Pools.MATRIX3.free(basis);
+        }
+    }
+
+    /**
+     * Removes all the dropped things from the world (back into their pools).
+     */
+    public void clearThings()
+    {
+        synchronized (getWorldLock())
+        {
+            despawnDynamicObjects();
+
+            if (recorder != null)
+            {
+                recorder.recordClear();
+            }
+        }
+    }
+
+    @Override
+    public void pause()
+    {
+        synchronized (getWorldLock())
+        {
+            super.pause();
+
+            if (recorder != null)
+            {
+                recorder.recordPause();
+            }
+        }
+    }
+
+    @Override
+    public void resume()
+    {
+        synchronized (getWorldLock())
+        {
+            super.resume();
+
+            if (recorder != null)
+            {
+                recorder.recordResume();
+            }
+        }
+    }
+
+    @Override
+    public void setPhysicsTimeStep(float seconds)
+    {
+        // Stopped (not locked, the thread needs the lock to finish) so no step runs before the change is recorded
+        final boolean threaded = isPhysicsThreaded();
+        setPhysicsThreaded(false);
+
+        super.setPhysicsTimeStep(seconds);
+
+        if (recorder != null)
+        {
+            recorder.recordTimeStep(seconds);
+        }
+
+        setPhysicsThreaded(threaded);
+    }
+
+    @Override
+    public boolean updatePopulation()
+    {
+        synchronized (getWorldLock())
+        {
+            // Updates that despawn nothing change nothing, so they don't need replaying
+            final boolean despawned = super.updatePopulation();
+
+            if (despawned && recorder != null)
+            {
+                recorder.recordPopulation();
+            }
+            return despawned;
         }
     }
 
@@ -165,21 +562,36 @@ public class DemoScreen extends SimulationScreen
     @Override
     public void enableLights()
     {
-        Gdx.gl10.glEnable(GL10.GL_LIGHTING);
+        getGLState().glEnable(GL10.GL_LIGHTING);
     }
 
     @Override
     public void disableLights()
     {
-        Gdx.gl10.glDisable(GL10.GL_LIGHTING);
+        getGLState().glDisable(GL10.GL_LIGHTING);
     }
 
     @Override
     protected CharSequence getOSDText()
     {
         osdStringBuffer.setLength(0);
-        osdStringBuffer.append("(d:drop 20, g:GC, p:pause, r:reset) ");
+        osdStringBuffer.append("(d:drop 20, g:GC, p:pause, r:reset, t:physics thread, i:interpolate, f:30/60hz, u:catch-up, h:reset stats, e:export trace, c:clear, b:batch, v:cull) ");
         osdStringBuffer.append(super.getOSDText());
+        osdStringBuffer.append(" shapes: ");
+        osdStringBuffer.append(shapeCache.getShapeCount());
+        osdStringBuffer.append(" for ");
+        osdStringBuffer.append(shapeCache.getReferenceCount());
+        osdStringBuffer.append(" bodies (~");
+        osdStringBuffer.append(shapeCache.getEstimatedBytesSaved() / 1024);
+        osdStringBuffer.append(" KB saved) pooled: ");
+        osdStringBuffer.append(cubePool.getFree() + spherePool.getFree());
+        osdStringBuffer.append(" created: ");
+        osdStringBuffer.append(cubePool.getCreated() + spherePool.getCreated());
+        osdStringBuffer.append(" assets: ");
+        osdStringBuffer.append(assetRegistry.getAssetCount());
+        osdStringBuffer.append(" (~");
+        osdStringBuffer.append(assetRegistry.getEstimatedBytes() / 1024);
+        osdStringBuffer.append(" KB)");
         return osdStringBuffer;
     }
 
@@ -188,26 +600,114 @@ public class DemoScreen extends SimulationScreen
     @Override
     protected void hookAddSimulationObjects()
     {
+        awaitAssets();
+
+        if (recorder != null)
+        {
+            recorder.recordScreen(seed, ground);
+        }
+
         final btTransform transform = Pools.btTRANSFORM.obtain();
         final Vector3 vector = Pools.VECTOR3.obtain();
 
-        // Terrain
-        transform.setIdentity();
-        vector.set(0, 0, 0);
-        transform.setOrigin(vector);
-        terrain = new MeshSimulationObject(terrainMesh, GL10.GL_TRIANGLES, false, terrainTexture, false);
-        terrain.initialize(MeshSimulationObject.createTriangleMeshShape(terrainMesh, terrainTriangleMesh), 0, -1,
-                transform);
-        terrain.getRigidbody().setCollisionFlags(CollisionFlags.CF_STATIC_OBJECT);
+        if (ground == Ground.TERRAIN)
+        {
+            transform.setIdentity();
+            vector.set(0, 0, 0);
+            transform.setOrigin(vector);
+            terrain = new MeshSimulationObject(terrainMesh, GL10.GL_TRIANGLES, false, terrainTexture, false);
+            terrain.initialize(terrainShape.getShape(), 0, -1, transform, false);
+            terrain.getRigidbody().setCollisionFlags(CollisionFlags.CF_STATIC_OBJECT);
+        }
+        else
+        {
+            terrain = new StaticPlaneSimulationObject(vector.set(0, 0, 1), 1, -1, 50, 50, terrainTexture, false);
+        }
+
         addCollisionSimulationObject(terrain);
 
-        // terrain = new StaticPlaneSimulationObject(vector.set(0, 0, 1), 1, -1, 50, 50, terrainTexture, false);
-        // addCollisionSimulationObject(terrain);
+        // So the first drops don't create any bodies
+        cubePool.prewarm(THING_POOL_PREWARM);
+        spherePool.prewarm(THING_POOL_PREWARM);
 
         Pools.btTRANSFORM.free(transform);
         Pools.VECTOR3.free(vector);
     }
 
+    @Override
+    protected void hookPostStep()
+    {
+        if (recorder != null)
+        {
+            recorder.recordStep(computeTransformChecksum());
+        }
+    }
+
+    @Override
+    protected int hookGetCheckpointKind(CollisionSimulationObject object)
+    {
+        if (object == terrain)
+        {
+            // The plane is left out; it isn't drawn from a mesh
+            return ground == Ground.TERRAIN ? KIND_TERRAIN : super.hookGetCheckpointKind(object);
+        }
+        if (cubePool.owns((RigidSimulationObject) object))
+        {
+            return KIND_CUBE;
+        }
+        if (spherePool.owns((RigidSimulationObject) object))
+        {
+            return KIND_SPHERE;
+        }
+        return super.hookGetCheckpointKind(object);
+    }
+
+    @Override
+    protected CollisionSimulationObject hookCreateFromCheckpoint(int kind)
+    {
+        if (kind != KIND_CUBE && kind != KIND_SPHERE)
+        {
+            return super.hookCreateFromCheckpoint(kind);
+        }
+
+        // Anywhere; the checkpoint's state is written over it
+        final btTransform transform = Pools.btTRANSFORM.obtain();
+        transform.setIdentity();
+
+        final MeshSimulationObject object = kind == KIND_CUBE ? cubePool.obtain(transform) : spherePool
+                .obtain(transform);
+
+        Pools.btTRANSFORM.free(transform);
+        return object;
+    }
+
+    @Override
+    protected void hookDespawn(CollisionSimulationObject object)
+    {
+        // Dropped things go back to their pools
+        if (cubePool.owns((RigidSimulationObject) object))
+        {
+            cubePool.free((MeshSimulationObject) object);
+        }
+        else if (spherePool.owns((RigidSimulationObject) object))
+        {
+            spherePool.free((MeshSimulationObject) object);
+        }
+        else
+        {
+            super.hookDespawn(object);
+        }
+    }
+
+    @Override
+    protected void hookDispose()
+    {
+        // After the objects, which release their shapes
+        cubePool.dispose();
+        spherePool.dispose();
+        shapeCache.dispose();
+    }
+
     @Override
     protected void hookRenderPostClear(float graphicsDelta, float physicsDelta)
     {
@@ -241,18 +741,25 @@ public class DemoScreen extends SimulationScreen
 
     protected void enableFog()
     {
-        // A very thin sky colored haze
-        Gdx.gl10.glEnable(GL10.GL_FOG);
-        Gdx.gl10.glFogf(GL10.GL_FOG_MODE, GL10.GL_LINEAR);
-        Gdx.gl10.glFogfv(GL10.GL_FOG_COLOR, SKY_COLOR, 0);
-        Gdx.gl10.glFogf(GL10.GL_FOG_DENSITY, .75f);
-        Gdx.gl10.glHint(GL10.GL_FOG_HINT, GL10.GL_DONT_CARE);
-        Gdx.gl10.glFogf(GL10.GL_FOG_START, 30);
-        Gdx.gl10.glFogf(GL10.GL_FOG_END, 100);
+        enableFog(getGLState());
+    }
+
+    /**
+     * A very thin sky colored haze, opaque at {@link #FOG_END}.
+     */
+    static void enableFog(GLStateCache glState)
+    {
+        glState.glEnable(GL10.GL_FOG);
+        glState.glFogf(GL10.GL_FOG_MODE, GL10.GL_LINEAR);
+        glState.glFogfv(GL10.GL_FOG_COLOR, SKY_COLOR, 0);
+        glState.glFogf(GL10.GL_FOG_DENSITY, .75f);
+        glState.glHint(GL10.GL_FOG_HINT, GL10.GL_DONT_CARE);
+        glState.glFogf(GL10.GL_FOG_START, 30);
+        glState.glFogf(GL10.GL_FOG_END, FOG_END);
     }
 
     protected void disableFog()
     {
-        Gdx.gl10.glDisable(GL10.GL_FOG);
+        getGLState().glDisable(GL10.GL_FOG);
     }
 }
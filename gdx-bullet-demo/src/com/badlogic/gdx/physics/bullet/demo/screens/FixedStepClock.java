@@ -0,0 +1,128 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+/**
+ * Turns real time into a number of fixed physics steps, applying a {@link CatchUpPolicy}.
+ * <p>
+ * http://gafferongames.com/game-physics/fix-your-timestep/ (specifically "Free the physics")
+ */
+class FixedStepClock
+{
+    // Time dilation limits and rates for CatchUpPolicy.DILATE
+    private static final float MIN_TIME_SCALE = .25f;
+    private static final float TIME_SCALE_SLOWDOWN = .8f;
+    private static final float TIME_SCALE_RECOVERY = 1.05f;
+
+    // A DILATE backlog over this many frames' worth of steps is dropped
+    private static final int MAX_DILATE_BACKLOG_FRAMES = 4;
+
+    private long currentTime;
+    private long accumulator;
+    private float timeScale = 1;
+
+    // Written by the thread that advances the clock, read by anyone for reporting
+    private volatile long droppedSteps;
+    private volatile long deferredSteps;
+
+    FixedStepClock()
+    {
+        reset();
+    }
+
+    /**
+     * Forgets all accumulated time and starts counting from now.
+     */
+    void reset()
+    {
+        currentTime = System.nanoTime();
+        accumulator = 0;
+        timeScale = 1;
+    }
+
+    /**
+     * Adds the real time elapsed since the last call to the accumulator and takes the steps that should run now out of
+     * it.
+     * 
+     * @param paused
+     *            if true, the elapsed time is consumed but no steps are run (or counted as dropped or deferred)
+     * @return the number of steps to run now
+     */
+    int advance(long stepNanos, CatchUpPolicy policy, int maxStepsPerFrame, boolean paused)
+    {
+        final long newTime = System.nanoTime();
+        long frameTime = newTime - currentTime;
+        currentTime = newTime;
+
+        if (policy == CatchUpPolicy.DILATE)
+        {
+            frameTime = (long) (frameTime * timeScale);
+        }
+
+        accumulator += frameTime;
+
+        long due = accumulator / stepNanos;
+        accumulator -= due * stepNanos;
+
+        if (paused)
+        {
+            return 0;
+        }
+
+        if (policy == CatchUpPolicy.UNBOUNDED || due <= maxStepsPerFrame)
+        {
+            if (policy == CatchUpPolicy.DILATE)
+            {
+                timeScale = Math.min(1, timeScale * TIME_SCALE_RECOVERY);
+            }
+
+            return (int) due;
+        }
+
+        final long excess = due - maxStepsPerFrame;
+
+        switch (policy)
+        {
+        case DROP:
+            droppedSteps += excess;
+            break;
+        case DEFER:
+            deferredSteps += excess;
+            accumulator += excess * stepNanos;
+            break;
+        case DILATE:
+            timeScale = Math.max(MIN_TIME_SCALE, timeScale * TIME_SCALE_SLOWDOWN);
+
+            final long keep = Math.min(excess, (long) maxStepsPerFrame * MAX_DILATE_BACKLOG_FRAMES);
+            deferredSteps += keep;
+            droppedSteps += excess - keep;
+            accumulator += keep * stepNanos;
+            break;
+        default:
+            break;
+        }
+
+        return maxStepsPerFrame;
+    }
+
+    /**
+     * @return time that's accumulated but not yet enough for a step (or deferred steps)
+     */
+    long getAccumulator()
+    {
+        return accumulator;
+    }
+
+    float getTimeScale()
+    {
+        return timeScale;
+    }
+
+    long getDroppedSteps()
+    {
+        return droppedSteps;
+    }
+
+    long getDeferredSteps()
+    {
+        return deferredSteps;
+    }
+}
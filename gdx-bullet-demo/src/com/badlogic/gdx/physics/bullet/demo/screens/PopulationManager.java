@@ -0,0 +1,349 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+import java.util.List;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btTransform;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+
+/**
+ * Keeps a {@link SimulationScreen}'s population of dynamic bodies bounded: bodies that leave the world bounds (fell off
+ * the ground, flew away) are despawned, and when there are more than the maximum number of bodies the extra ones are
+ * evicted.
+ * <p>
+ * The screen calls {@link #mark(List, btTransform)} once per frame, then removes the marked objects in a single
+ * compacting pass. Neither allocates once the scratch arrays have grown to the population size. Static and kinematic
+ * objects are never despawned.
+ */
+public class PopulationManager
+{
+    /**
+     * Which bodies go first when there are too many.
+     */
+    public enum EvictionPolicy
+    {
+        /**
+         * The bodies added longest ago.
+         */
+        OLDEST_FIRST,
+
+        /**
+         * The bodies farthest from the eviction center.
+         */
+        FARTHEST_FIRST
+    }
+
+    private boolean enabled = true;
+
+    private final Vector3 boundsMin = new Vector3(-1000, -1000, -1000);
+    private final Vector3 boundsMax = new Vector3(1000, 1000, 1000);
+    private int maxBodies;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.OLDEST_FIRST;
+    private final Vector3 evictionCenter = new Vector3();
+
+    // Scratch, grown to the population size. distances is -1 for objects that aren't eviction candidates.
+    private boolean[] marked = new boolean[256];
+    private float[] distances = new float[256];
+    private float[] selection = new float[256];
+    private final Vector3 position = new Vector3();
+
+    private long despawnedOutOfBounds;
+    private long evicted;
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Sets the axis aligned box dynamic bodies must stay inside.
+     */
+    public void setBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        boundsMin.set(minX, minY, minZ);
+        boundsMax.set(maxX, maxY, maxZ);
+    }
+
+    public Vector3 getBoundsMin()
+    {
+        return boundsMin;
+    }
+
+    public Vector3 getBoundsMax()
+    {
+        return boundsMax;
+    }
+
+    /**
+     * @param maxBodies
+     *            the maximum number of live dynamic bodies, or 0 for no limit
+     * @param evictionPolicy
+     *            which bodies to evict when there are more
+     */
+    public void setMaxBodies(int maxBodies, EvictionPolicy evictionPolicy)
+    {
+        this.maxBodies = maxBodies;
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    public int getMaxBodies()
+    {
+        return maxBodies;
+    }
+
+    public EvictionPolicy getEvictionPolicy()
+    {
+        return evictionPolicy;
+    }
+
+    /**
+     * @return the point {@link EvictionPolicy#FARTHEST_FIRST} measures from (the origin by default)
+     */
+    public Vector3 getEvictionCenter()
+    {
+        return evictionCenter;
+    }
+
+    /**
+     * @return the number of bodies despawned for leaving the bounds
+     */
+    public long getDespawnedOutOfBounds()
+    {
+        return despawnedOutOfBounds;
+    }
+
+    /**
+     * @return the number of bodies evicted because there were too many
+     */
+    public long getEvicted()
+    {
+        return evicted;
+    }
+
+    public void resetStats()
+    {
+        despawnedOutOfBounds = 0;
+        evicted = 0;
+    }
+
+    /**
+     * Marks the objects to despawn this frame.
+     * 
+     * @param objects
+     *            the screen's objects, oldest first
+     * @param transform
+     *            scratch transform
+     * @return the number of objects marked (see {@link #isMarked(int)})
+     */
+    int mark(List<CollisionSimulationObject> objects, btTransform transform)
+    {
+        final int count = objects.size();
+        ensureCapacity(count);
+
+        if (!enabled)
+        {
+            clearMarks(count);
+            return 0;
+        }
+
+        int markedCount = 0;
+        int live = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            marked[i] = false;
+            distances[i] = -1;
+
+            final CollisionSimulationObject object = objects.get(i);
+            if (!object.isDynamic())
+            {
+                continue;
+            }
+
+            object.getPosition(transform, position);
+
+            if (position.x < boundsMin.x || position.y < boundsMin.y || position.z < boundsMin.z
+                    || position.x > boundsMax.x || position.y > boundsMax.y || position.z > boundsMax.z)
+            {
+                marked[i] = true;
+                markedCount++;
+                despawnedOutOfBounds++;
+                continue;
+            }
+
+            distances[i] = position.dst2(evictionCenter);
+            live++;
+        }
+
+        final int excess = maxBodies > 0 ? live - maxBodies : 0;
+        if (excess > 0)
+        {
+            if (evictionPolicy == EvictionPolicy.OLDEST_FIRST)
+            {
+                markOldest(count, excess);
+            }
+            else
+            {
+                markFarthest(count, live, excess);
+            }
+
+            markedCount += excess;
+            evicted += excess;
+        }
+
+        return markedCount;
+    }
+
+    /**
+     * Marks every dynamic object, for clearing the world.
+     * 
+     * @return the number of objects marked
+     */
+    int markAllDynamic(List<CollisionSimulationObject> objects)
+    {
+        final int count = objects.size();
+        ensureCapacity(count);
+
+        int markedCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            marked[i] = objects.get(i).isDynamic();
+            if (marked[i])
+            {
+                markedCount++;
+            }
+        }
+
+        return markedCount;
+    }
+
+    /**
+     * @return true if the object at index was marked by the last {@link #mark(List, btTransform)} or
+     *         {@link #markAllDynamic(List)}
+     */
+    boolean isMarked(int index)
+    {
+        return marked[index];
+    }
+
+    private void markOldest(int count, int excess)
+    {
+        for (int i = 0; i < count && excess > 0; i++)
+        {
+            if (distances[i] >= 0)
+            {
+                marked[i] = true;
+                excess--;
+            }
+        }
+    }
+
+    private void markFarthest(int count, int live, int excess)
+    {
+        // Find the distance of the excess-th farthest candidate
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (distances[i] >= 0)
+            {
+                selection[n++] = distances[i];
+            }
+        }
+
+        final float threshold = select(selection, live, live - excess);
+
+        // Everything farther than the threshold goes, then enough at the threshold
+        for (int i = 0; i < count && excess > 0; i++)
+        {
+            if (distances[i] > threshold)
+            {
+                marked[i] = true;
+                excess--;
+            }
+        }
+
+        for (int i = 0; i < count && excess > 0; i++)
+        {
+            if (distances[i] == threshold && !marked[i])
+            {
+                marked[i] = true;
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Quickselect: partially sorts values[0..n) and returns the value that would be at index k if they were sorted.
+     */
+    private static float select(float[] values, int n, int k)
+    {
+        int left = 0;
+        int right = n - 1;
+
+        while (left < right)
+        {
+            final float pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+
+            while (i <= j)
+            {
+                while (values[i] < pivot)
+                {
+                    i++;
+                }
+                while (values[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    final float swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+            {
+                right = j;
+            }
+            else if (k >= i)
+            {
+                left = i;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        return values[k];
+    }
+
+    private void clearMarks(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            marked[i] = false;
+        }
+    }
+
+    private void ensureCapacity(int count)
+    {
+        if (count > marked.length)
+        {
+            final int capacity = Math.max(count, marked.length * 2);
+            marked = new boolean[capacity];
+            distances = new float[capacity];
+            selection = new float[capacity];
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.MeshSimulationObject;
+
+/**
+ * Collects the objects to draw in a frame, with their matrices, and draws them grouped by mesh and texture: the state
+ * is set and the mesh bound once per group, and each object in it is just a matrix and a draw call.
+ * <p>
+ * Objects that can't be batched (anything but a {@link MeshSimulationObject#isBatchable() batchable}
+ * {@link MeshSimulationObject}) are drawn first, one at a time, as before. Within a group, objects are drawn in the
+ * order they were added. Adding and drawing doesn't allocate once the queue has grown to the number of objects.
+ */
+public class RenderQueue
+{
+    private static final int MAX_IDS = 0xffff;
+
+    // Small ids for the meshes and textures seen this frame (0 is "none"), so sort keys can be longs
+    private final IdentityHashMap<Object, Integer> ids = new IdentityHashMap<Object, Integer>();
+
+    private CollisionSimulationObject[] objects = new CollisionSimulationObject[0];
+    private float[] matrices = new float[0];
+
+    // Mesh id (16 bits), texture id (16 bits), index into objects (32 bits)
+    private long[] keys = new long[0];
+    private int count;
+
+    // Stats for the last flush
+    private int lastObjectCount;
+    private int lastBatchCount;
+
+    /**
+     * Queues an object to draw with an OpenGL matrix.
+     */
+    public void add(CollisionSimulationObject object, float[] glMatrix)
+    {
+        ensureCapacity(count + 1);
+        System.arraycopy(glMatrix, 0, matrices, count * 16, 16);
+        queue(object);
+    }
+
+    /**
+     * Queues an object to draw with the OpenGL matrix at the buffer's position.
+     */
+    public void add(CollisionSimulationObject object, FloatBuffer glMatrix)
+    {
+        ensureCapacity(count + 1);
+        glMatrix.get(matrices, count * 16, 16);
+        queue(object);
+    }
+
+    private void queue(CollisionSimulationObject object)
+    {
+        long key = 0;
+        final MeshSimulationObject batchable = asBatchable(object);
+        if (batchable != null)
+        {
+            key = (long) getId(batchable.getMesh()) << 48 | (long) getId(batchable.getTexture()) << 32;
+        }
+
+        objects[count] = object;
+        keys[count] = key | count;
+        count++;
+    }
+
+    /**
+     * Draws everything queued since the last flush and empties the queue.
+     */
+    public void flush(SimulationScreen screen)
+    {
+        Arrays.sort(keys, 0, count);
+
+        int batches = 0;
+        int i = 0;
+        while (i < count)
+        {
+            final long group = keys[i] >>> 32;
+            final CollisionSimulationObject first = objects[(int) keys[i]];
+
+            if (group == 0)
+            {
+                // On its own
+                Gdx.gl10.glPushMatrix();
+                Gdx.gl10.glMultMatrixf(matrices, (int) keys[i] * 16);
+                first.render(screen);
+                Gdx.gl10.glPopMatrix();
+                i++;
+                continue;
+            }
+
+            final MeshSimulationObject batchable = (MeshSimulationObject) first;
+            batchable.beginBatch(screen);
+            batches++;
+
+            do
+            {
+                final int index = (int) keys[i];
+                Gdx.gl10.glPushMatrix();
+                Gdx.gl10.glMultMatrixf(matrices, index * 16);
+                ((MeshSimulationObject) objects[index]).renderBatched();
+                Gdx.gl10.glPopMatrix();
+                i++;
+            }
+            while (i < count && keys[i] >>> 32 == group);
+
+            batchable.endBatch();
+        }
+
+        lastObjectCount = count;
+        lastBatchCount = batches;
+
+        // Don't keep disposed objects (or meshes) reachable
+        Arrays.fill(objects, 0, count, null);
+        ids.clear();
+        count = 0;
+    }
+
+    /**
+     * @return the number of objects the last flush drew
+     */
+    public int getLastObjectCount()
+    {
+        return lastObjectCount;
+    }
+
+    /**
+     * @return the number of mesh and texture groups the last flush drew (objects drawn on their own not included)
+     */
+    public int getLastBatchCount()
+    {
+        return lastBatchCount;
+    }
+
+    private static MeshSimulationObject asBatchable(CollisionSimulationObject object)
+    {
+        if (object instanceof MeshSimulationObject && ((MeshSimulationObject) object).isBatchable())
+        {
+            return (MeshSimulationObject) object;
+        }
+        return null;
+    }
+
+    private int getId(Object meshOrTexture)
+    {
+        if (meshOrTexture == null)
+        {
+            return 0;
+        }
+
+        Integer id = ids.get(meshOrTexture);
+        if (id == null)
+        {
+            if (ids.size() == MAX_IDS)
+            {
+                throw new IllegalStateException("More than " + MAX_IDS + " meshes and textures in one frame");
+            }
+
+            // Small Integers are cached, so this doesn't allocate for a typical scene
+            id = ids.size() + 1;
+            ids.put(meshOrTexture, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= objects.length)
+        {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, Math.max(64, objects.length * 2));
+        objects = Arrays.copyOf(objects, newCapacity);
+        matrices = Arrays.copyOf(matrices, newCapacity * 16);
+        keys = Arrays.copyOf(keys, newCapacity);
+    }
+}
@@ -1,30 +1,38 @@
 package com.badlogic.gdx.physics.bullet.demo.screens;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.Bullet;
-import com.badlogic.gdx.physics.bullet.btBroadphaseInterface;
-import com.badlogic.gdx.physics.bullet.btCollisionDispatcher;
 import com.badlogic.gdx.physics.bullet.btCollisionObject;
-import com.badlogic.gdx.physics.bullet.btConstraintSolver;
-import com.badlogic.gdx.physics.bullet.btDbvtBroadphase;
-import com.badlogic.gdx.physics.bullet.btDefaultCollisionConfiguration;
 import com.badlogic.gdx.physics.bullet.btDefaultMotionState;
 import com.badlogic.gdx.physics.bullet.btDiscreteDynamicsWorld;
+import com.badlogic.gdx.physics.bullet.btOverlappingPairCache;
 import com.badlogic.gdx.physics.bullet.btRigidBody;
-import com.badlogic.gdx.physics.bullet.btSequentialImpulseConstraintSolver;
 import com.badlogic.gdx.physics.bullet.btTransform;
-import com.badlogic.gdx.physics.bullet.demo.WindowedStats;
+import com.badlogic.gdx.physics.bullet.demo.FrameProfiler;
+import com.badlogic.gdx.physics.bullet.demo.FrustumCuller;
+import com.badlogic.gdx.physics.bullet.demo.GLStateCache;
+import com.badlogic.gdx.physics.bullet.demo.LatencyHistogram;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.demo.Pools;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryRecorder;
 import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.RigidSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.world.PhysicsWorld;
 
 /**
  * An abstract screen that does physics simulation with gdx-bullet.
@@ -41,20 +49,42 @@ public abstract class SimulationScreen implements Screen
     // Set to true after show() completes for the first time
     private boolean shownOnce;
 
-    // Tracks whether this screen is paused
-    private boolean paused;
+    // True when running without a GL context (no rendering, physics only)
+    private final boolean headless;
+
+    // Tracks whether this screen is paused (read by the physics thread)
+    private volatile boolean paused;
 
     // Bullet physics
-    private final btBroadphaseInterface broadphase;
-    private final btCollisionDispatcher dispatcher;
+    private final PhysicsWorld physicsWorld;
     private final btDiscreteDynamicsWorld dynamicsWorld;
-    private final btConstraintSolver solver;
-    private final btDefaultCollisionConfiguration collisionConfiguration;
 
-    // Bullet profiling
-    private final WindowedStats stepSimulationTimes = new WindowedStats(30);
-    private long stepSimulationLastAverage = 0;
-    private long stepSimulationLastAverageMillis = System.currentTimeMillis();
+    /*
+     * Profiling. Step and frame times in nanoseconds, both over the last STATS_WINDOW samples and since the last
+     * resetStats(). The step histograms are written by whichever thread steps, so they're only touched while holding
+     * worldLock.
+     */
+    private static final int STATS_WINDOW = 300;
+    private final LatencyHistogram stepTimesWindowed = new LatencyHistogram(STATS_WINDOW);
+    private final LatencyHistogram stepTimesCumulative = new LatencyHistogram();
+    private final LatencyHistogram frameTimesWindowed = new LatencyHistogram(STATS_WINDOW);
+    private final LatencyHistogram frameTimesCumulative = new LatencyHistogram();
+    private long lastFrameStartTime;
+
+    // Span profiler for each phase of render() and each stepSimulation
+    private final FrameProfiler profiler = new FrameProfiler(32768, 16);
+    private final int phaseFrame = profiler.registerPhase("frame");
+    private final int phasePhysics = profiler.registerPhase("physics");
+    private final int phaseStepSimulation = profiler.registerPhase("stepSimulation");
+    private final int phaseClear = profiler.registerPhase("glClear");
+    private final int phaseRenderDynamicsWorld = profiler.registerPhase("renderDynamicsWorld");
+    private final int phaseRenderScene = profiler.registerPhase("hookRenderScene");
+    private final int phaseOSD = profiler.registerPhase("osd");
+
+    // The OSD shows percentiles (in microseconds) refreshed once a second
+    private long osdStatsMillis = System.currentTimeMillis();
+    private long osdStepP50, osdStepP99, osdStepMax;
+    private long osdFrameP50, osdFrameP99, osdFrameMax;
 
     /*
      * Physics time (mostly computed in nanoseconds)
@@ -62,17 +92,67 @@ public abstract class SimulationScreen implements Screen
      * We have to pass a float to Bullet, so calculate the fixed Bullet step with float-level precision, then work out
      * the equivalent integer nanosecond step using floats (using doubles might give a different result).
      */
-    protected static final float PHYSICS_TIME_STEP_SECONDS = 1f / 60f;
-    protected static final long PHYSICS_TIME_STEP_NANOS = (long) (PHYSICS_TIME_STEP_SECONDS * 1000000000f);
-    private long physicsCurrentTime;
-    private long physicsAccumulator;
+    public static final float PHYSICS_TIME_STEP_SECONDS = 1f / 60f;
+    public static final long PHYSICS_TIME_STEP_NANOS = (long) (PHYSICS_TIME_STEP_SECONDS * 1000000000f);
+    private float physicsTimeStepSeconds = PHYSICS_TIME_STEP_SECONDS;
+    private long physicsTimeStepNanos = PHYSICS_TIME_STEP_NANOS;
+    private final FixedStepClock physicsClock = new FixedStepClock();
+
+    // Steps since the screen was created (written by whichever thread steps)
+    private volatile long stepCount;
+
+    // False for screens that only draw (see TrajectoryPlaybackScreen); the world is never stepped
+    private boolean physicsEnabled = true;
+
+    // Records every step's transforms, if set (used by whichever thread steps, under worldLock)
+    private TrajectoryRecorder trajectoryRecorder;
+
+    // What to do when the fixed step loop falls behind
+    private CatchUpPolicy catchUpPolicy = CatchUpPolicy.DROP;
+    private int maxStepsPerFrame = 5;
+
+    // Render between the last two physics steps instead of at the last one
+    private boolean interpolationEnabled = true;
 
-    // A list of all our scene objects
+    // Skips state changes that wouldn't change anything
+    private final GLStateCache glState = new GLStateCache();
+
+    // Draws objects grouped by mesh and texture (when enabled), setting state once per group
+    private final RenderQueue renderQueue = new RenderQueue();
+    private boolean renderBatching = true;
+
+    // Skips objects whose collision shape's box is outside the camera frustum (or past the cull distance)
+    private final FrustumCuller frustumCuller = new FrustumCuller();
+    private boolean cullingEnabled = true;
+    private int drawnCount, culledCount;
+    private int lastDrawnCount, lastCulledCount;
+
+    /*
+     * Optional physics thread. While it runs, it owns the fixed step loop and the dynamics world; the render thread
+     * only reads transform snapshots it publishes. Changes to the world or the object list from any thread must hold
+     * worldLock.
+     */
+    private final Object worldLock = new Object();
+    private final TransformSnapshotBuffer transformSnapshots = new TransformSnapshotBuffer(256);
+    private final FixedStepClock physicsThreadClock = new FixedStepClock();
+    private Thread physicsThread;
+    private volatile boolean physicsThreadRunning;
+    private volatile long physicsThreadSteps;
+    private long physicsThreadStepsRendered;
+
+    // Despawned by the physics thread, waiting for hookDespawn() on the render thread (guarded by worldLock)
+    private final List<CollisionSimulationObject> deferredDespawns = new ArrayList<CollisionSimulationObject>();
+    private volatile boolean despawnsDeferred;
+
+    // A list of all our scene objects, oldest first
     private final List<CollisionSimulationObject> collisionSimulationObjects = new ArrayList<CollisionSimulationObject>();
 
-    // OSD
-    private final SpriteBatch osdSpriteBatch = new SpriteBatch();
-    private final BitmapFont osdFont = new BitmapFont();
+    // Despawns lost bodies and limits how many there are
+    private final PopulationManager populationManager = new PopulationManager();
+
+    // OSD (null when headless)
+    private final SpriteBatch osdSpriteBatch;
+    private final BitmapFont osdFont;
     private final StringBuilder osdStringBuilder = new StringBuilder(1024);
 
     // Perspective camera
@@ -82,11 +162,45 @@ public abstract class SimulationScreen implements Screen
     private final OrthographicCamera osdCamera = new OrthographicCamera();
 
     // Preallocated for use when rendering the physics objects
-    private final btTransform transform = new btTransform();
+    private final btTransform transform;
     private final float[] glMatrix = new float[16];
 
+    // Only used by computeTransformChecksum(), on the thread that steps
+    private final float[] checksumMatrix = new float[16];
+
     public SimulationScreen()
     {
+        this(false);
+    }
+
+    /**
+     * @param headless
+     *            if true, no OpenGL resources are allocated and the screen must be driven with
+     *            {@link #showHeadless()} and {@link #stepPhysicsFixed()} instead of {@link #show()} and
+     *            {@link #render(float)}
+     */
+    public SimulationScreen(boolean headless)
+    {
+        // Everything tracked from here until dispose() is counted against this screen
+        NativeRegistry.beginScope();
+
+        this.headless = headless;
+        transform = NativeRegistry.track(new btTransform());
+
+        // Whichever thread renders (or steps headless) uses the pools from here on
+        Pools.prewarm();
+
+        if (headless)
+        {
+            osdSpriteBatch = null;
+            osdFont = null;
+        }
+        else
+        {
+            osdSpriteBatch = new SpriteBatch();
+            osdFont = new BitmapFont();
+        }
+
         /*
          * Allocate and initialize Bullet.
          * 
@@ -121,16 +235,8 @@ public abstract class SimulationScreen implements Screen
          * apply.
          */
 
-        collisionConfiguration = new btDefaultCollisionConfiguration();
-        dispatcher = new btCollisionDispatcher(collisionConfiguration);
-        broadphase = new btDbvtBroadphase();
-        solver = new btSequentialImpulseConstraintSolver();
-
-        dynamicsWorld = new btDiscreteDynamicsWorld(dispatcher, broadphase, solver, collisionConfiguration);
-        dynamicsWorld.setGravity(new Vector3(0f, 0f, -9.8f));
-
-        physicsCurrentTime = System.nanoTime();
-        physicsAccumulator = 0;
+        physicsWorld = new PhysicsWorld();
+        dynamicsWorld = physicsWorld.getDynamicsWorld();
     }
 
     public btDiscreteDynamicsWorld getDynamicsWorld()
@@ -138,277 +244,1312 @@ public abstract class SimulationScreen implements Screen
         return dynamicsWorld;
     }
 
-    public PerspectiveCamera getPerspectiveCamera()
+    /**
+     * @return the world with its Bullet setup, for stepping it outside of the screen (see
+     *         {@link com.badlogic.gdx.physics.bullet.demo.world.ParallelWorldStepper})
+     */
+    public PhysicsWorld getPhysicsWorld()
     {
-        return perspectiveCamera;
+        return physicsWorld;
     }
 
-    public OrthographicCamera getOSDCamera()
+    public boolean isHeadless()
     {
-        return osdCamera;
+        return headless;
     }
 
-    @Override
-    public void show()
+    /**
+     * @param cumulative
+     *            true for every step since the last {@link #resetStats()}, false for the last few hundred steps
+     * @return stepSimulation times in nanoseconds (hold {@link #getWorldLock()} to read while the physics thread runs)
+     */
+    public LatencyHistogram getStepTimes(boolean cumulative)
     {
-        if (!shownOnce)
-        {
-            shownOnce = true;
-
-            // Resize does some more work on cameras, including update()
-            resize(Gdx.app.getGraphics().getWidth(), Gdx.app.getGraphics().getHeight());
-
-            // Add scene objects including player
-            hookAddSimulationObjects();
-        }
+        return cumulative ? stepTimesCumulative : stepTimesWindowed;
     }
 
-    @Override
-    public void hide()
+    /**
+     * @param cumulative
+     *            true for every frame since the last {@link #resetStats()}, false for the last few hundred frames
+     * @return times between the starts of consecutive frames in nanoseconds
+     */
+    public LatencyHistogram getFrameTimes(boolean cumulative)
     {
+        return cumulative ? frameTimesCumulative : frameTimesWindowed;
     }
 
-    @Override
-    public void pause()
+    /**
+     * Clears the step and frame time histograms and the population counters.
+     */
+    public void resetStats()
     {
-        paused = true;
-    }
+        synchronized (worldLock)
+        {
+            stepTimesWindowed.reset();
+            stepTimesCumulative.reset();
+        }
 
-    public boolean isPaused()
-    {
-        return paused;
+        frameTimesWindowed.reset();
+        frameTimesCumulative.reset();
+        lastFrameStartTime = 0;
+
+        populationManager.resetStats();
     }
 
-    @Override
-    public void resume()
+    public FrameProfiler getProfiler()
     {
-        paused = false;
+        return profiler;
     }
 
-    // Required virtuals
-
     /**
-     * Called each frame after the camera is positioned (projection and modelview matrixes set), but before any scene
-     * objects have been rendered, to position any positionable lights. Directional lights may be set once in some other
-     * hook and not updated by this method.
+     * Writes the profiler spans of the last few seconds to a Chrome trace_event JSON file (open it in
+     * chrome://tracing).
+     * 
+     * @return the file written, or null if it couldn't be written
      */
-    protected abstract void positionLights(float graphicsDelta, float physicsDelta);
+    public FileHandle dumpTrace(float seconds)
+    {
+        final FileHandle file = Gdx.files.local("trace-" + System.currentTimeMillis() + ".json");
 
-    /**
-     * Called at various times during {@link #render(float)} (but always after {@link #positionLights(float, float)} has
-     * been called for that frame) to enable lighting.
-     */
-    public abstract void enableLights();
+        Writer writer = null;
+        try
+        {
+            writer = new BufferedWriter(new OutputStreamWriter(file.write(false), "UTF-8"));
+            profiler.writeChromeTrace(writer, (long) (seconds * 1000000000L));
+        }
+        catch (IOException e)
+        {
+            System.err.println("Couldn't write trace " + file.path() + ": " + e);
+            return null;
+        }
+        finally
+        {
+            if (writer != null)
+            {
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException e)
+                {
+                    // Already reported or nothing to do
+                }
+            }
+        }
+
+        System.out.println("Wrote trace " + file.path());
+        return file;
+    }
 
     /**
-     * Called at various times during {@link #render(float)} (but always after {@link #positionLights(float, float)} has
-     * been called for that frame) to disable lighting.
+     * @return the lock that protects the dynamics world and the object list while the physics thread runs
      */
-    public abstract void disableLights();
+    public Object getWorldLock()
+    {
+        return worldLock;
+    }
 
     /**
-     * Called by {@link #show()} the first time it executes so the derived class can add scene objects.
+     * Starts or stops stepping the physics on a dedicated thread. While the thread runs, {@link #render(float)} draws
+     * the most recent completed step without stepping or querying Bullet itself.
      */
-    protected abstract void hookAddSimulationObjects();
+    public void setPhysicsThreaded(boolean threaded)
+    {
+        if (threaded == isPhysicsThreaded() || headless || !physicsEnabled)
+        {
+            return;
+        }
 
-    // Optional hooks
+        if (threaded)
+        {
+            // The thread doesn't capture transforms, so the ones captured so far will go stale
+            clearCapturedTransforms();
 
-    /**
-     * Called by {@link #render(float)} before the physics has been stepped for this frame.
-     * 
-     * @param graphicsDelta
-     *            GDX's delta since last frame (may be smoothed, probably never 0)
-     */
-    protected void hookRenderPrePhysics(float graphicsDelta)
+            physicsThreadRunning = true;
+            physicsThreadStepsRendered = physicsThreadSteps;
+            physicsThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    runPhysicsThread();
+                }
+            }, "physics");
+            physicsThread.setDaemon(true);
+            physicsThread.start();
+        }
+        else
+        {
+            physicsThreadRunning = false;
+            try
+            {
+                physicsThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            physicsThread = null;
+            despawnDeferred();
+
+            // Don't try to catch up on the time the thread was running
+            physicsClock.reset();
+        }
+    }
+
+    public boolean isPhysicsThreaded()
     {
+        return physicsThread != null;
     }
 
     /**
-     * Called by {@link #render(float)} after the physics has been calculated. physicsDelta is the time the physics
-     * engine was stepped this frame, which is useful for synchronizing things exactly with the physics engine.
-     * 
-     * @param graphicsDelta
-     *            GDX's delta since last frame (may be smoothed, probably never 0)
-     * @param physicsDelta
-     *            the exact amount of time the physics world was just stepped (may be 0 when frame rate is much higher
-     *            than fixed physics rate)
+     * Sets the fixed physics step (the default is {@link #PHYSICS_TIME_STEP_SECONDS}). Longer steps cost less solver
+     * time per simulated second; interpolation keeps the motion smooth.
      */
-    protected void hookRenderPostPhysics(float graphicsDelta, float physicsDelta)
+    public void setPhysicsTimeStep(float seconds)
     {
+        final boolean threaded = isPhysicsThreaded();
+        setPhysicsThreaded(false);
+
+        physicsTimeStepSeconds = seconds;
+        physicsTimeStepNanos = (long) (seconds * 1000000000f);
+        physicsClock.reset();
+
+        setPhysicsThreaded(threaded);
     }
 
     /**
-     * Called by {@link #render(float)} after the screen has been cleared. This is a good time to turn on fixed function
-     * pipeline options like fog.
-     * <p>
-     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
-     * frame.
+     * Sets what the fixed step loop does when more than maxStepsPerFrame steps are due at once (the default is
+     * {@link CatchUpPolicy#DROP} with 5 steps).
      */
-    protected void hookRenderPostClear(float graphicsDelta, float physicsDelta)
+    public void setCatchUpPolicy(CatchUpPolicy catchUpPolicy, int maxStepsPerFrame)
+    {
+        this.catchUpPolicy = catchUpPolicy;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    public CatchUpPolicy getCatchUpPolicy()
     {
+        return catchUpPolicy;
+    }
+
+    public int getMaxStepsPerFrame()
+    {
+        return maxStepsPerFrame;
     }
 
     /**
-     * Called by {@link #render(float)} with OpenGL in a perspective projection, after simulation objects have been
-     * rendered.
-     * <p>
-     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
-     * frame.
+     * @return the number of due steps that were thrown away by the catch-up policy
      */
-    protected void hookRenderScene(float graphicsDelta, float physicsDelta)
+    public long getDroppedSteps()
     {
+        return physicsClock.getDroppedSteps() + physicsThreadClock.getDroppedSteps();
     }
 
     /**
-     * Called by {@link #render(float)} with OpenGL in an orthographic projection, after the on screen display text has
-     * been rendered, which is always done after {@link #hookRenderScene(float, float)} has completed.
-     * <p>
-     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
-     * frame.
+     * @return the number of due steps that were postponed to a later frame by the catch-up policy (a step postponed
+     *         more than once is counted each time)
      */
-    protected void hookRenderOSD(float graphicsDelta, float physicsDelta)
+    public long getDeferredSteps()
     {
+        return physicsClock.getDeferredSteps() + physicsThreadClock.getDeferredSteps();
     }
 
-    // Misc
+    public float getPhysicsTimeStepSeconds()
+    {
+        return physicsTimeStepSeconds;
+    }
 
-    protected CharSequence getOSDText()
+    public long getPhysicsTimeStepNanos()
     {
-        osdStringBuilder.setLength(0);
+        return physicsTimeStepNanos;
+    }
 
-        if (paused)
+    /**
+     * Enables or disables rendering objects between their last two physics step transforms, weighted by the time left
+     * in the accumulator. Has no effect while the physics thread runs (it renders the latest step).
+     */
+    public void setInterpolationEnabled(boolean interpolationEnabled)
+    {
+        if (interpolationEnabled != this.interpolationEnabled)
         {
-            osdStringBuilder.append("[PAUSED] ");
+            // Whatever was captured before is (or will go) stale
+            clearCapturedTransforms();
         }
 
-        osdStringBuilder.append("fps: ");
-        osdStringBuilder.append(Gdx.graphics.getFramesPerSecond());
-        osdStringBuilder.append(" objects: ");
-        osdStringBuilder.append(collisionSimulationObjects.size());
+        this.interpolationEnabled = interpolationEnabled;
+    }
 
-        long now = System.currentTimeMillis();
-        if (now > stepSimulationLastAverageMillis + 1000)
+    private void clearCapturedTransforms()
+    {
+        synchronized (worldLock)
         {
-            stepSimulationLastAverage = stepSimulationTimes.average();
-            stepSimulationLastAverageMillis = now;
+            for (int i = 0; i < collisionSimulationObjects.size(); i++)
+            {
+                collisionSimulationObjects.get(i).clearCapturedTransforms();
+            }
         }
+    }
 
-        osdStringBuilder.append(" stepSimulation: ");
-        osdStringBuilder.append(stepSimulationLastAverage);
-        osdStringBuilder.append(" ");
-
-        return osdStringBuilder;
+    public boolean isInterpolationEnabled()
+    {
+        return interpolationEnabled;
     }
 
     /**
-     * Adds a {@link CollisionSimulationObject} to the dynamics world. All objects added to the dynamics world that are
-     * still there when {@link #dispose()} is called will be disposed.
-     * 
-     * @param object
-     *            the object to add
+     * @return the cache to set GL state through while rendering. Hooks that set the same state directly on
+     *         {@link Gdx#gl10} should invalidate it afterwards.
      */
-    protected void addCollisionSimulationObject(CollisionSimulationObject object)
+    public GLStateCache getGLState()
     {
-        object.addToDynamicsWorld(dynamicsWorld);
-        collisionSimulationObjects.add(object);
+        return glState;
     }
 
     /**
-     * Removes a {@link CollisionSimulationObject} from the dynamics world.
-     * 
-     * @param object
-     *            the object to remove
+     * Enables or disables drawing objects grouped by mesh and texture (see {@link RenderQueue}) instead of one at a
+     * time in world order.
      */
-    protected void removeCollisionSimulationObject(CollisionSimulationObject object)
+    public void setRenderBatching(boolean renderBatching)
     {
-        object.removeFromDynamicsWorld(dynamicsWorld);
-        collisionSimulationObjects.remove(object);
+        this.renderBatching = renderBatching;
     }
 
-    @Override
-    public final void render(float graphicsDelta)
+    public boolean isRenderBatching()
     {
-        // Physics
-        hookRenderPrePhysics(graphicsDelta);
-        final float physicsDelta = stepPhysics();
-        hookRenderPostPhysics(graphicsDelta, physicsDelta);
+        return renderBatching;
+    }
 
-        // Clear frame and enable model styles
-        Gdx.gl10.glClear(GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT);
-        hookRenderPostClear(graphicsDelta, physicsDelta);
+    /**
+     * @return the number of mesh and texture groups drawn in the last frame (0 without batching)
+     */
+    public int getRenderBatchCount()
+    {
+        return renderBatching ? renderQueue.getLastBatchCount() : 0;
+    }
 
-        // Apply perspective player camera
-        perspectiveCamera.apply(Gdx.gl10);
+    /**
+     * Enables or disables skipping objects that are outside the camera's view (see {@link FrustumCuller}).
+     */
+    public void setCullingEnabled(boolean cullingEnabled)
+    {
+        this.cullingEnabled = cullingEnabled;
+    }
 
-        Gdx.gl10.glEnable(GL10.GL_DITHER);
-        Gdx.gl10.glEnable(GL10.GL_DEPTH_TEST);
-        Gdx.gl10.glEnable(GL10.GL_CULL_FACE);
-        Gdx.gl10.glEnable(GL10.GL_BLEND);
-        Gdx.gl10.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
+    public boolean isCullingEnabled()
+    {
+        return cullingEnabled;
+    }
 
-        // Position lights so lighting calculations for objects are correct
-        positionLights(graphicsDelta, physicsDelta);
+    /**
+     * Sets how far from the camera, along its view direction, objects are still drawn (where fog hides them, say); 0
+     * uses the camera's far plane.
+     */
+    public void setCullDistance(float distance)
+    {
+        frustumCuller.setMaxDistance(distance);
+    }
 
-        renderDynamicsWorld();
+    public FrustumCuller getFrustumCuller()
+    {
+        return frustumCuller;
+    }
 
-        hookRenderScene(graphicsDelta, physicsDelta);
+    /**
+     * @return the number of objects drawn in the last frame
+     */
+    public int getDrawnCount()
+    {
+        return lastDrawnCount;
+    }
 
-        // Apply orthographic OSD camera
-        osdCamera.apply(Gdx.gl10);
+    /**
+     * @return the number of objects skipped by culling in the last frame
+     */
+    public int getCulledCount()
+    {
+        return lastCulledCount;
+    }
 
-        // Disable face culling so we draw everything
-        Gdx.gl10.glDisable(GL10.GL_CULL_FACE);
+    public int getCollisionSimulationObjectCount()
+    {
+        return collisionSimulationObjects.size();
+    }
 
-        // Render OSD
-        disableLights();
-        osdSpriteBatch.begin();
-        osdFont.setColor(1, 1, 1, 1f);
-        osdFont.draw(osdSpriteBatch, getOSDText(), 10, 10 + osdFont.getCapHeight());
-        osdSpriteBatch.end();
-        hookRenderOSD(graphicsDelta, physicsDelta);
+    /**
+     * @return the population manager, for configuring world bounds and the maximum number of bodies
+     */
+    public PopulationManager getPopulationManager()
+    {
+        return populationManager;
     }
 
     /**
-     * Steps the physics world (or possibly doesn't if the frame rate is super awesomely fast and it's not needed yet).
+     * Despawns the dynamic bodies that left the population manager's bounds, and evicts bodies while there are more
+     * than its maximum. {@link #render(float)} calls this every frame, or the physics thread after every step while it
+     * runs; headless drivers call it directly.
      * 
-     * @return the amount of time the physics world was stepped (may be 0)
+     * @return true if anything was despawned
      */
-    private float stepPhysics()
+    public boolean updatePopulation()
     {
+        synchronized (worldLock)
+        {
+            final btTransform scratch = Pools.btTRANSFORM.obtain();
+            final int marked = populationManager.mark(collisionSimulationObjects, scratch);
+            Pools.btTRANSFORM.free(scratch);
+
+            if (marked > 0)
+            {
+                despawnMarked();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Despawns every dynamic body.
+     */
+    public void despawnDynamicObjects()
+    {
+        synchronized (worldLock)
+        {
+            if (populationManager.markAllDynamic(collisionSimulationObjects) > 0)
+            {
+                despawnMarked();
+            }
+        }
+    }
+
+    /**
+     * Removes the objects the population manager marked in one pass over the list (instead of an O(n) remove for each)
+     * and hands them to {@link #hookDespawn(CollisionSimulationObject)}, which the physics thread leaves to the render
+     * thread (see {@link #despawnDeferred()}). Caller must hold worldLock.
+     */
+    private void despawnMarked()
+    {
+        final int count = collisionSimulationObjects.size();
+        int kept = 0;
+
+        for (int i = 0; i < count; i++)
+        {
+            final CollisionSimulationObject object = collisionSimulationObjects.get(i);
+            if (populationManager.isMarked(i))
+            {
+                object.removeFromDynamicsWorld(dynamicsWorld);
+                object.nextGeneration();
+
+                if (Thread.currentThread() == physicsThread)
+                {
+                    // The object may still be drawn from a snapshot this frame
+                    deferredDespawns.add(object);
+                    despawnsDeferred = true;
+                }
+                else
+                {
+                    hookDespawn(object);
+                }
+            }
+            else
+            {
+                collisionSimulationObjects.set(kept++, object);
+            }
+        }
+
+        // Removing from the end doesn't shift anything
+        for (int i = count - 1; i >= kept; i--)
+        {
+            collisionSimulationObjects.remove(i);
+        }
+    }
+
+    /**
+     * Hands the objects the physics thread despawned to {@link #hookDespawn(CollisionSimulationObject)}. Only takes
+     * worldLock when there are any, so most frames don't wait for a step.
+     */
+    private void despawnDeferred()
+    {
+        if (!despawnsDeferred)
+        {
+            return;
+        }
+
+        synchronized (worldLock)
+        {
+            for (int i = 0; i < deferredDespawns.size(); i++)
+            {
+                hookDespawn(deferredDespawns.get(i));
+            }
+            deferredDespawns.clear();
+            despawnsDeferred = false;
+        }
+    }
+
+    public PerspectiveCamera getPerspectiveCamera()
+    {
+        return perspectiveCamera;
+    }
+
+    public OrthographicCamera getOSDCamera()
+    {
+        return osdCamera;
+    }
+
+    @Override
+    public void show()
+    {
+        if (!shownOnce)
+        {
+            shownOnce = true;
+
+            // Resize does some more work on cameras, including update()
+            resize(Gdx.app.getGraphics().getWidth(), Gdx.app.getGraphics().getHeight());
+
+            // Add scene objects including player
+            hookAddSimulationObjects();
+        }
+    }
+
+    /**
+     * Headless equivalent of {@link #show()}: adds the scene objects without touching the graphics subsystem.
+     */
+    public void showHeadless()
+    {
+        if (!shownOnce)
+        {
+            shownOnce = true;
+
+            hookAddSimulationObjects();
+        }
+    }
+
+    @Override
+    public void hide()
+    {
+    }
+
+    @Override
+    public void pause()
+    {
+        paused = true;
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    @Override
+    public void resume()
+    {
+        paused = false;
+    }
+
+    // Required virtuals
+
+    /**
+     * Called each frame after the camera is positioned (projection and modelview matrixes set), but before any scene
+     * objects have been rendered, to position any positionable lights. Directional lights may be set once in some other
+     * hook and not updated by this method.
+     */
+    protected abstract void positionLights(float graphicsDelta, float physicsDelta);
+
+    /**
+     * Called at various times during {@link #render(float)} (but always after {@link #positionLights(float, float)} has
+     * been called for that frame) to enable lighting.
+     */
+    public abstract void enableLights();
+
+    /**
+     * Called at various times during {@link #render(float)} (but always after {@link #positionLights(float, float)} has
+     * been called for that frame) to disable lighting.
+     */
+    public abstract void disableLights();
+
+    /**
+     * Called by {@link #show()} the first time it executes so the derived class can add scene objects.
+     */
+    protected abstract void hookAddSimulationObjects();
+
+    // Optional hooks
+
+    /**
+     * Called by {@link #render(float)} before the physics has been stepped for this frame.
+     * 
+     * @param graphicsDelta
+     *            GDX's delta since last frame (may be smoothed, probably never 0)
+     */
+    protected void hookRenderPrePhysics(float graphicsDelta)
+    {
+    }
+
+    /**
+     * Called by {@link #render(float)} after the physics has been calculated. physicsDelta is the time the physics
+     * engine was stepped this frame, which is useful for synchronizing things exactly with the physics engine.
+     * 
+     * @param graphicsDelta
+     *            GDX's delta since last frame (may be smoothed, probably never 0)
+     * @param physicsDelta
+     *            the exact amount of time the physics world was just stepped (may be 0 when frame rate is much higher
+     *            than fixed physics rate)
+     */
+    protected void hookRenderPostPhysics(float graphicsDelta, float physicsDelta)
+    {
+    }
+
+    /**
+     * Called by {@link #render(float)} after the screen has been cleared. This is a good time to turn on fixed function
+     * pipeline options like fog.
+     * <p>
+     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
+     * frame.
+     */
+    protected void hookRenderPostClear(float graphicsDelta, float physicsDelta)
+    {
+    }
+
+    /**
+     * Called by {@link #render(float)} with OpenGL in a perspective projection, after simulation objects have been
+     * rendered.
+     * <p>
+     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
+     * frame.
+     */
+    protected void hookRenderScene(float graphicsDelta, float physicsDelta)
+    {
+    }
+
+    /**
+     * Called by {@link #render(float)} with OpenGL in an orthographic projection, after the on screen display text has
+     * been rendered, which is always done after {@link #hookRenderScene(float, float)} has completed.
+     * <p>
+     * Time delta values are exactly the same as passed to {@link #hookRenderPostPhysics(float, float)} for the same
+     * frame.
+     */
+    protected void hookRenderOSD(float graphicsDelta, float physicsDelta)
+    {
+    }
+
+    /**
+     * Called by {@link #stepPhysicsFixed()} after each step, on the thread that stepped (holding the world lock when
+     * that's the physics thread).
+     */
+    protected void hookPostStep()
+    {
+    }
+
+    /**
+     * Called by {@link #dispose()} after the objects and the world are deleted, to delete any other native objects the
+     * screen made (pools, shape caches) before it checks for leaks.
+     */
+    protected void hookDispose()
+    {
+    }
+
+    /**
+     * Called by {@link #checkpoint(WorldCheckpoint)} for each dynamic body, to number the kinds of object the screen
+     * can recreate with {@link #hookCreateFromCheckpoint(int)}, and by a {@link TrajectoryRecorder} for each new body
+     * (of any kind), to tell playback what to draw. The default is -1 (can't be recreated, so only restored while it's
+     * still around; not drawn in playback).
+     */
+    protected int hookGetCheckpointKind(CollisionSimulationObject object)
+    {
+        return -1;
+    }
+
+    /**
+     * Called by {@link #restore(WorldCheckpoint)} for a body the checkpoint has but the world doesn't (any more), to
+     * create (or recycle) an object of that kind, not in the world. Its state is set afterwards. The default returns
+     * null, which leaves the body out.
+     */
+    protected CollisionSimulationObject hookCreateFromCheckpoint(int kind)
+    {
+        return null;
+    }
+
+    /**
+     * Called when the population manager despawns an object, after it was removed from the dynamics world (on the
+     * render thread, and while holding the world lock). The default disposes it; override to recycle it instead.
+     */
+    protected void hookDespawn(CollisionSimulationObject object)
+    {
+        object.dispose();
+    }
+
+    // Misc
+
+    protected CharSequence getOSDText()
+    {
+        osdStringBuilder.setLength(0);
+
+        if (paused)
+        {
+            osdStringBuilder.append("[PAUSED] ");
+        }
+
+        if (isPhysicsThreaded())
+        {
+            osdStringBuilder.append("[THREADED] ");
+        }
+        else if (interpolationEnabled)
+        {
+            osdStringBuilder.append("[INTERPOLATED] ");
+        }
+
+        if (renderBatching)
+        {
+            osdStringBuilder.append("[BATCHED ");
+            osdStringBuilder.append(renderQueue.getLastBatchCount());
+            osdStringBuilder.append("] ");
+        }
+
+        osdStringBuilder.append("drawn: ");
+        osdStringBuilder.append(lastDrawnCount);
+        osdStringBuilder.append(" culled: ");
+        osdStringBuilder.append(lastCulledCount);
+        osdStringBuilder.append(" ");
+
+        osdStringBuilder.append("gl: ");
+        osdStringBuilder.append(glState.getLastIssuedCalls());
+        osdStringBuilder.append("/");
+        osdStringBuilder.append(glState.getLastIssuedCalls() + glState.getLastFilteredCalls());
+        osdStringBuilder.append(" ");
+
+        osdStringBuilder.append("hz: ");
+        osdStringBuilder.append(Math.round(1f / physicsTimeStepSeconds));
+        osdStringBuilder.append(" ");
+
+        osdStringBuilder.append("fps: ");
+        osdStringBuilder.append(Gdx.graphics.getFramesPerSecond());
+        osdStringBuilder.append(" objects: ");
+        osdStringBuilder.append(collisionSimulationObjects.size());
+        osdStringBuilder.append(" native: ");
+        osdStringBuilder.append(NativeRegistry.getLiveCount());
+        osdStringBuilder.append(" (~");
+        osdStringBuilder.append(NativeRegistry.getLiveBytes() / 1024);
+        osdStringBuilder.append(" KB)");
+
+        long now = System.currentTimeMillis();
+        if (now > osdStatsMillis + 1000)
+        {
+            synchronized (worldLock)
+            {
+                osdStepP50 = stepTimesWindowed.percentile(50) / 1000;
+                osdStepP99 = stepTimesWindowed.percentile(99) / 1000;
+                osdStepMax = stepTimesWindowed.max() / 1000;
+            }
+
+            osdFrameP50 = frameTimesWindowed.percentile(50) / 1000;
+            osdFrameP99 = frameTimesWindowed.percentile(99) / 1000;
+            osdFrameMax = frameTimesWindowed.max() / 1000;
+            osdStatsMillis = now;
+        }
+
+        osdStringBuilder.append(" step p50/p99/max us: ");
+        osdStringBuilder.append(osdStepP50);
+        osdStringBuilder.append('/');
+        osdStringBuilder.append(osdStepP99);
+        osdStringBuilder.append('/');
+        osdStringBuilder.append(osdStepMax);
+        osdStringBuilder.append(" frame: ");
+        osdStringBuilder.append(osdFrameP50);
+        osdStringBuilder.append('/');
+        osdStringBuilder.append(osdFrameP99);
+        osdStringBuilder.append('/');
+        osdStringBuilder.append(osdFrameMax);
+        osdStringBuilder.append(" catch-up: ");
+        osdStringBuilder.append(catchUpPolicy.name());
+        osdStringBuilder.append(" dropped: ");
+        osdStringBuilder.append(getDroppedSteps());
+        osdStringBuilder.append(" deferred: ");
+        osdStringBuilder.append(getDeferredSteps());
+        osdStringBuilder.append(" despawned: ");
+        osdStringBuilder.append(populationManager.getDespawnedOutOfBounds());
+        osdStringBuilder.append(" evicted: ");
+        osdStringBuilder.append(populationManager.getEvicted());
+        osdStringBuilder.append(" ");
+
+        return osdStringBuilder;
+    }
+
+    /**
+     * Adds a {@link CollisionSimulationObject} to the dynamics world. All objects added to the dynamics world that are
+     * still there when {@link #dispose()} is called will be disposed.
+     * 
+     * @param object
+     *            the object to add
+     */
+    protected void addCollisionSimulationObject(CollisionSimulationObject object)
+    {
+        synchronized (worldLock)
+        {
+            object.addToDynamicsWorld(dynamicsWorld);
+            collisionSimulationObjects.add(object);
+
+            // Asked once here, so culling never has to call Bullet while rendering
+            final btTransform scratch = Pools.btTRANSFORM.obtain();
+            object.computeLocalBounds(scratch);
+            Pools.btTRANSFORM.free(scratch);
+        }
+    }
+
+    /**
+     * Removes a {@link CollisionSimulationObject} from the dynamics world.
+     * 
+     * @param object
+     *            the object to remove
+     */
+    protected void removeCollisionSimulationObject(CollisionSimulationObject object)
+    {
+        synchronized (worldLock)
+        {
+            object.removeFromDynamicsWorld(dynamicsWorld);
+            object.nextGeneration();
+            collisionSimulationObjects.remove(object);
+        }
+    }
+
+    @Override
+    public final void render(float graphicsDelta)
+    {
+        Pools.beginFrame();
+        boolean rendered = false;
+        try
+        {
+            renderFrame(graphicsDelta);
+            rendered = true;
+        }
+        finally
+        {
+            // Checking a frame that threw would hide what it threw
+            if (rendered)
+            {
+                Pools.endFrame("render");
+            }
+            else
+            {
+                Pools.abortFrame();
+            }
+        }
+    }
+
+    private void renderFrame(float graphicsDelta)
+    {
+        final long frameStartTime = System.nanoTime();
+        if (lastFrameStartTime != 0)
+        {
+            frameTimesWindowed.add(frameStartTime - lastFrameStartTime);
+            frameTimesCumulative.add(frameStartTime - lastFrameStartTime);
+        }
+        lastFrameStartTime = frameStartTime;
+
+        // Physics
+        long phaseStart = profiler.begin();
+        hookRenderPrePhysics(graphicsDelta);
+        final float physicsDelta = stepPhysics();
+        if (isPhysicsThreaded())
+        {
+            // The physics thread marked and removed them
+            despawnDeferred();
+        }
+        else
+        {
+            updatePopulation();
+        }
+        hookRenderPostPhysics(graphicsDelta, physicsDelta);
+        profiler.end(phasePhysics, phaseStart);
+
+        // Clear frame and enable model styles
+        phaseStart = profiler.begin();
+        Gdx.gl10.glClear(GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT);
+        hookRenderPostClear(graphicsDelta, physicsDelta);
+        profiler.end(phaseClear, phaseStart);
+
+        // Apply perspective player camera
+        perspectiveCamera.apply(Gdx.gl10);
+        frustumCuller.update(perspectiveCamera.combined.val, perspectiveCamera.position, perspectiveCamera.direction);
+
+        glState.glEnable(GL10.GL_DITHER);
+        glState.glEnable(GL10.GL_DEPTH_TEST);
+        glState.glEnable(GL10.GL_CULL_FACE);
+        glState.glEnable(GL10.GL_BLEND);
+        glState.glBlendFunc(GL10.GL_SRC_ALPHA, GL10.GL_ONE_MINUS_SRC_ALPHA);
+
+        // Position lights so lighting calculations for objects are correct
+        positionLights(graphicsDelta, physicsDelta);
+
+        phaseStart = profiler.begin();
+        renderSimulationObjects();
+        profiler.end(phaseRenderDynamicsWorld, phaseStart);
+
+        phaseStart = profiler.begin();
+        hookRenderScene(graphicsDelta, physicsDelta);
+        profiler.end(phaseRenderScene, phaseStart);
+
+        // Apply orthographic OSD camera
+        osdCamera.apply(Gdx.gl10);
+
+        // Disable face culling so we draw everything
+        glState.glDisable(GL10.GL_CULL_FACE);
+
+        // Render OSD
+        phaseStart = profiler.begin();
+        disableLights();
+        osdSpriteBatch.begin();
+        osdFont.setColor(1, 1, 1, 1f);
+        osdFont.draw(osdSpriteBatch, getOSDText(), 10, 10 + osdFont.getCapHeight());
+        osdSpriteBatch.end();
+
+        // The sprite batch set these without the cache
+        glState.invalidateCapability(GL10.GL_TEXTURE_2D);
+        glState.invalidateCapability(GL10.GL_BLEND);
+        glState.invalidateBlendFunc();
+        glState.invalidateTexture();
+        glState.invalidateColor();
+
+        hookRenderOSD(graphicsDelta, physicsDelta);
+        profiler.end(phaseOSD, phaseStart);
+
+        glState.endFrame();
+        profiler.end(phaseFrame, frameStartTime);
+    }
+
+    /**
+     * Steps the physics world (or possibly doesn't if the frame rate is super awesomely fast and it's not needed yet).
+     * 
+     * @return the amount of time the physics world was stepped (may be 0)
+     */
+    private float stepPhysics()
+    {
+        if (!physicsEnabled)
+        {
+            return 0;
+        }
+
+        if (isPhysicsThreaded())
+        {
+            // Report how much the physics thread stepped since the last frame
+            final long steps = physicsThreadSteps;
+            final float physicsDelta = (steps - physicsThreadStepsRendered) * physicsTimeStepSeconds;
+            physicsThreadStepsRendered = steps;
+            return physicsDelta;
+        }
+
         /*
-         * Fixed step physics. Basic premise is we always step by exactly PHYSICS_TIME_STEP, sometimes stepping more
-         * than once to catch up if we were behind, and if there's not enough time yet for another simulation, leave the
-         * remainder in the accumulator for next time.
+         * Fixed step physics. Basic premise is we always step by exactly the fixed time step, sometimes stepping more
+         * than once to catch up if we were behind (up to the limit of the catch-up policy), and if there's not enough
+         * time yet for another simulation, leave the remainder in the accumulator for next time.
          * 
          * Keeps our physics updating regularly even through terribly slow and blazingly fast framerates.
-         * 
-         * http://gafferongames.com/game-physics/fix-your-timestep/ (specifically "Free the physics")
          */
-        long newTime = System.nanoTime();
-        long frameTime = newTime - physicsCurrentTime;
-        physicsCurrentTime = newTime;
-        physicsAccumulator += frameTime;
+        final int steps = physicsClock.advance(physicsTimeStepNanos, catchUpPolicy, maxStepsPerFrame, paused);
+
+        float physicsDelta = 0;
+        for (int step = 0; step < steps; step++)
+        {
+            // Only the transforms around the last step matter for interpolation
+            final boolean capture = interpolationEnabled && step == steps - 1;
+
+            if (capture)
+            {
+                captureTransforms(true);
+            }
+
+            stepPhysicsFixed();
+            physicsDelta += physicsTimeStepSeconds;
+
+            if (capture)
+            {
+                captureTransforms(false);
+            }
+        }
+
+        return physicsDelta;
+    }
+
+    /**
+     * Captures every object's world transform for interpolation.
+     * 
+     * @param previous
+     *            true to capture the state before a step, false for the state after it
+     */
+    private void captureTransforms(boolean previous)
+    {
+        for (int i = 0; i < collisionSimulationObjects.size(); i++)
+        {
+            final CollisionSimulationObject simulationObject = collisionSimulationObjects.get(i);
+            if (previous)
+            {
+                simulationObject.capturePreviousTransform(transform);
+            }
+            else
+            {
+                simulationObject.captureCurrentTransform(transform);
+            }
+        }
+    }
 
-        float physicsDelta = 0;
-        while (physicsAccumulator >= PHYSICS_TIME_STEP_NANOS)
+    /**
+     * Steps the physics world exactly once by the fixed physics time step, ignoring the pause state and the
+     * real time accumulator. {@link #render(float)} calls this as many times as needed to catch up; headless drivers
+     * call it directly.
+     */
+    public void stepPhysicsFixed()
+    {
+        Pools.beginFrame();
+        boolean stepped = false;
+        try
+        {
+            // Exactly one integration; Bullet documentation warns against this, but we're doing our own make-up logic
+            long start = profiler.begin();
+            long elapsed = physicsWorld.step(physicsTimeStepSeconds);
+            profiler.end(phaseStepSimulation, start);
+            stepTimesWindowed.add(elapsed);
+            stepTimesCumulative.add(elapsed);
+
+            stepCount++;
+            hookPostStep();
+
+            if (trajectoryRecorder != null)
+            {
+                trajectoryRecorder.recordStep(this, collisionSimulationObjects);
+            }
+            stepped = true;
+        }
+        finally
         {
-            if (!paused)
+            if (stepped)
+            {
+                Pools.endFrame("step");
+            }
+            else
             {
-                /*
-                 * Pass maxSubSteps = 0 for exactly one integration over the time specified by the third parameter.
-                 * Bullet documentation warns against this, but we're doing our own make-up logic.
-                 */
-                long start = System.nanoTime();
-                dynamicsWorld.stepSimulation(PHYSICS_TIME_STEP_SECONDS, 0, PHYSICS_TIME_STEP_SECONDS);
-                long elapsed = System.nanoTime() - start;
-                stepSimulationTimes.add(elapsed);
-                physicsDelta += PHYSICS_TIME_STEP_SECONDS;
+                Pools.abortFrame();
             }
+        }
+    }
+
+    /**
+     * Turns stepping off (or back on) for screens that don't simulate anything themselves, like
+     * {@link TrajectoryPlaybackScreen}: {@link #render(float)} then never touches the world, and the physics thread
+     * can't be started.
+     */
+    protected void setPhysicsEnabled(boolean enabled)
+    {
+        setPhysicsThreaded(false);
+        physicsEnabled = enabled;
+    }
+
+    public boolean isPhysicsEnabled()
+    {
+        return physicsEnabled;
+    }
 
-            physicsAccumulator -= PHYSICS_TIME_STEP_NANOS;
+    /**
+     * Starts (or with null, stops) recording every body's transform after each step. The recorder isn't disposed by
+     * the screen.
+     */
+    public void setTrajectoryRecorder(TrajectoryRecorder trajectoryRecorder)
+    {
+        synchronized (worldLock)
+        {
+            this.trajectoryRecorder = trajectoryRecorder;
         }
+    }
 
-        return physicsDelta;
+    public TrajectoryRecorder getTrajectoryRecorder()
+    {
+        return trajectoryRecorder;
+    }
+
+    /**
+     * @return the number the screen gives the object's kind (see
+     *         {@link #hookGetCheckpointKind(CollisionSimulationObject)}), or -1
+     */
+    public int getObjectKind(CollisionSimulationObject object)
+    {
+        return hookGetCheckpointKind(object);
+    }
+
+    /**
+     * @return the number of physics steps since the screen was created
+     */
+    public long getStepCount()
+    {
+        return stepCount;
+    }
+
+    /**
+     * @return a new checkpoint of every dynamic body (see {@link #checkpoint(WorldCheckpoint)})
+     */
+    public WorldCheckpoint checkpoint()
+    {
+        final WorldCheckpoint checkpoint = new WorldCheckpoint();
+        checkpoint(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Captures every dynamic body's state into a checkpoint, replacing what it held. Reusing a checkpoint doesn't
+     * allocate once its arrays have grown to the number of bodies.
+     */
+    public void checkpoint(WorldCheckpoint checkpoint)
+    {
+        synchronized (worldLock)
+        {
+            checkpoint.clear();
+            checkpoint.stepCount = stepCount;
+
+            final btTransform scratch = Pools.btTRANSFORM.obtain();
+            for (int i = 0; i < collisionSimulationObjects.size(); i++)
+            {
+                final CollisionSimulationObject object = collisionSimulationObjects.get(i);
+                if (isCheckpointed(object))
+                {
+                    checkpoint.add((RigidSimulationObject) object, hookGetCheckpointKind(object), scratch);
+                }
+            }
+            Pools.btTRANSFORM.free(scratch);
+        }
+    }
+
+    /**
+     * Puts every dynamic body back the way it was in the checkpoint, and the step count with it.
+     * <p>
+     * When the world still has the same dynamic bodies in the same order (rewinding a what-if run that didn't spawn or
+     * despawn anything), their state is written in place. Otherwise the dynamic bodies are taken out; the ones the
+     * checkpoint has are put back in its order, missing ones are recreated with
+     * {@link #hookCreateFromCheckpoint(int)}, and the rest are despawned (see
+     * {@link #hookDespawn(CollisionSimulationObject)}). A checkpoint read from a file always takes the second way.
+     * Either way, each body gets the checkpoint's mass back, and the bodies' cached contacts are dropped, so contacts
+     * from before the restore don't push them around.
+     */
+    public void restore(WorldCheckpoint checkpoint)
+    {
+        synchronized (worldLock)
+        {
+            if (!hasCheckpointedObjects(checkpoint))
+            {
+                replaceDynamicObjects(checkpoint);
+            }
+
+            final btTransform scratch = Pools.btTRANSFORM.obtain();
+            final btOverlappingPairCache pairCache = physicsWorld.getBroadphase().getOverlappingPairCache();
+
+            for (int i = 0; i < checkpoint.count; i++)
+            {
+                final RigidSimulationObject object = (RigidSimulationObject) checkpoint.objects[i];
+                if (object != null)
+                {
+                    // A recreated (or reused) object has its kind's mass, which may not be what was saved
+                    if (object.getMass() != checkpoint.masses[i])
+                    {
+                        object.setMass(checkpoint.masses[i]);
+                    }
+                    object.restoreState(scratch, checkpoint.states, i * RigidSimulationObject.STATE_SIZE,
+                            checkpoint.activationStates[i]);
+                    pairCache.cleanProxyFromPairs(object.getRigidbody().getBroadphaseHandle(),
+                            physicsWorld.getDispatcher());
+                }
+            }
+
+            Pools.btTRANSFORM.free(scratch);
+            stepCount = checkpoint.stepCount;
+        }
+    }
+
+    private static boolean isCheckpointed(CollisionSimulationObject object)
+    {
+        return object instanceof RigidSimulationObject && object.isDynamic();
+    }
+
+    /**
+     * @return true if the world's dynamic bodies are exactly the checkpoint's, in the same order. An entry without an
+     *         object (read from a file, or not recreated last time) still needs recreating, so it's never a match.
+     */
+    private boolean hasCheckpointedObjects(WorldCheckpoint checkpoint)
+    {
+        int entry = 0;
+        for (int i = 0; i < collisionSimulationObjects.size(); i++)
+        {
+            final CollisionSimulationObject object = collisionSimulationObjects.get(i);
+            if (!isCheckpointed(object))
+            {
+                continue;
+            }
+
+            if (entry == checkpoint.count || checkpoint.objects[entry] != object)
+            {
+                return false;
+            }
+            entry++;
+        }
+
+        return entry == checkpoint.count;
+    }
+
+    /**
+     * Takes the dynamic bodies out and puts back (or recreates) the checkpoint's, in its order, pointing its entries at
+     * them. Caller must hold worldLock.
+     */
+    private void replaceDynamicObjects(WorldCheckpoint checkpoint)
+    {
+        final IdentityHashMap<CollisionSimulationObject, Boolean> removed = new IdentityHashMap<CollisionSimulationObject, Boolean>();
+
+        // Out of the world and the list in one pass, like despawnMarked()
+        final int count = collisionSimulationObjects.size();
+        int kept = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final CollisionSimulationObject object = collisionSimulationObjects.get(i);
+            if (isCheckpointed(object))
+            {
+                object.removeFromDynamicsWorld(dynamicsWorld);
+                object.nextGeneration();
+                removed.put(object, Boolean.TRUE);
+            }
+            else
+            {
+                collisionSimulationObjects.set(kept++, object);
+            }
+        }
+        for (int i = count - 1; i >= kept; i--)
+        {
+            collisionSimulationObjects.remove(i);
+        }
+
+        for (int i = 0; i < checkpoint.count; i++)
+        {
+            CollisionSimulationObject object = checkpoint.objects[i];
+            if (object == null || removed.remove(object) == null)
+            {
+                // Gone since (or never known, for a checkpoint from a file)
+                object = hookCreateFromCheckpoint(checkpoint.kinds[i]);
+            }
+
+            checkpoint.objects[i] = object;
+            if (object != null)
+            {
+                addCollisionSimulationObject(object);
+            }
+        }
+
+        // Whatever the checkpoint didn't have
+        for (CollisionSimulationObject object : removed.keySet())
+        {
+            hookDespawn(object);
+        }
+    }
+
+    /**
+     * Hashes every object's world transform, in world order, bit for bit. Two runs that did the same things at the
+     * same steps have the same checksum after every step; the first step where they don't is where they diverged.
+     * <p>
+     * Asks Bullet for each transform, so call it from the thread that steps (holding the world lock while the physics
+     * thread runs).
+     */
+    public int computeTransformChecksum()
+    {
+        final btTransform scratch = Pools.btTRANSFORM.obtain();
+
+        // FNV-1a over the raw bits of each OpenGL matrix
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < collisionSimulationObjects.size(); i++)
+        {
+            collisionSimulationObjects.get(i).getCollisionObject().getWorldTransform(scratch);
+            scratch.getOpenGLMatrix(checksumMatrix);
+
+            for (int j = 0; j < checksumMatrix.length; j++)
+            {
+                hash = (hash ^ Float.floatToRawIntBits(checksumMatrix[j])) * 0x01000193;
+            }
+        }
+
+        Pools.btTRANSFORM.free(scratch);
+        return hash;
+    }
+
+    /**
+     * The physics thread's fixed step loop. Same catch-up policy as {@link #stepPhysics()}, but sleeps when it's ahead
+     * instead of waiting for the next frame, and publishes every body's transform after each step.
+     */
+    private void runPhysicsThread()
+    {
+        // Only used on this thread
+        final btTransform threadTransform = NativeRegistry.track(new btTransform());
+        final float[] threadGLMatrix = new float[16];
+        Pools.prewarm();
+
+        physicsThreadClock.reset();
+
+        // Something to draw right away
+        synchronized (worldLock)
+        {
+            publishTransformSnapshot(threadTransform, threadGLMatrix);
+        }
+
+        while (physicsThreadRunning)
+        {
+            final int steps = physicsThreadClock.advance(physicsTimeStepNanos, catchUpPolicy, maxStepsPerFrame,
+                    paused);
+
+            for (int step = 0; step < steps && physicsThreadRunning; step++)
+            {
+                synchronized (worldLock)
+                {
+                    stepPhysicsFixed();
+
+                    // Here rather than on the render thread, which would have to wait for the lock (and ask Bullet
+                    // for every body's position) every frame; despawned bodies also stay out of the snapshot
+                    updatePopulation();
+                    publishTransformSnapshot(threadTransform, threadGLMatrix);
+                }
+                physicsThreadSteps++;
+            }
+
+            // Sleep until the next step is due
+            final long wait = physicsTimeStepNanos - physicsThreadClock.getAccumulator();
+            if (wait > 0)
+            {
+                try
+                {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+                catch (InterruptedException e)
+                {
+                    break;
+                }
+            }
+        }
+
+        if (NativeRegistry.release(threadTransform))
+        {
+            threadTransform.delete();
+        }
+
+        Pools.checkLeaks("physics thread");
+        Pools.releaseThread();
+    }
+
+    /**
+     * Copies every object's current OpenGL matrix into the write snapshot and publishes it. Caller must hold
+     * worldLock.
+     */
+    private void publishTransformSnapshot(btTransform transform, float[] glMatrix)
+    {
+        final TransformSnapshotBuffer.Snapshot snapshot = transformSnapshots.getWriteSnapshot();
+        snapshot.clear();
+        snapshot.ensureCapacity(collisionSimulationObjects.size());
+
+        for (int i = 0; i < collisionSimulationObjects.size(); i++)
+        {
+            final CollisionSimulationObject simulationObject = collisionSimulationObjects.get(i);
+            getRenderTransform(simulationObject.getCollisionObject(), transform);
+            transform.getOpenGLMatrix(glMatrix);
+            snapshot.add(simulationObject, glMatrix);
+        }
+
+        transformSnapshots.publish();
     }
 
     @Override
@@ -434,62 +1575,182 @@ public abstract class SimulationScreen implements Screen
     @Override
     public void dispose()
     {
+        setPhysicsThreaded(false);
+
         // Remove all the objects from the world, then delete them.
         for (CollisionSimulationObject object : collisionSimulationObjects)
         {
             object.removeFromDynamicsWorld(dynamicsWorld);
+            object.nextGeneration();
             object.dispose();
         }
 
         collisionSimulationObjects.clear();
 
         // Delete the native bullet objects
-        dynamicsWorld.delete();
-        broadphase.delete();
-        dispatcher.delete();
-        solver.delete();
-        collisionConfiguration.delete();
+        physicsWorld.dispose();
+
+        hookDispose();
+
+        if (NativeRegistry.release(transform))
+        {
+            transform.delete();
+        }
+
+        if (osdSpriteBatch != null)
+        {
+            osdSpriteBatch.dispose();
+        }
+
+        if (osdFont != null)
+        {
+            osdFont.dispose();
+        }
+
+        // Anything of ours still live now has leaked
+        NativeRegistry.endScope(getClass().getSimpleName());
+        Pools.checkLeaks(getClass().getSimpleName());
+    }
+
+    /**
+     * Draws every simulation object with its current transform: the part of {@link #render(float)} that draws the
+     * world. Headless drivers can call it with a stand-in GL (see
+     * {@link com.badlogic.gdx.physics.bullet.demo.CountingGL10}) to check the calls it makes.
+     */
+    public void renderSimulationObjects()
+    {
+        drawnCount = 0;
+        culledCount = 0;
+
+        hookDrawSimulationObjects();
+
+        if (renderBatching)
+        {
+            renderQueue.flush(this);
+        }
+
+        lastDrawnCount = drawnCount;
+        lastCulledCount = culledCount;
+    }
+
+    /**
+     * Called by {@link #renderSimulationObjects()} to draw every object with
+     * {@link #drawSimulationObject(CollisionSimulationObject, float[])}. The default draws the world's objects, from
+     * the physics thread's snapshot while it runs. Screens that get their transforms from somewhere else (see
+     * {@link TrajectoryPlaybackScreen}) override it.
+     */
+    protected void hookDrawSimulationObjects()
+    {
+        if (isPhysicsThreaded())
+        {
+            renderTransformSnapshot();
+        }
+        else
+        {
+            renderDynamicsWorld();
+        }
+    }
+
+    /**
+     * Draws (or with render batching, queues) an object at the transform in glMatrix, unless it's culled. Only call it
+     * from {@link #hookDrawSimulationObjects()}; the same object may be drawn more than once.
+     */
+    protected void drawSimulationObject(CollisionSimulationObject simulationObject, float[] glMatrix)
+    {
+        final float[] bounds = simulationObject.getLocalBounds();
+        if (cullingEnabled && bounds != null && !frustumCuller.isVisible(bounds, glMatrix))
+        {
+            culledCount++;
+            return;
+        }
+
+        drawnCount++;
+
+        if (renderBatching)
+        {
+            renderQueue.add(simulationObject, glMatrix);
+            return;
+        }
+
+        Gdx.gl10.glPushMatrix();
+
+        // Apply the object's transform to the OpenGL world
+        Gdx.gl10.glMultMatrixf(glMatrix, 0);
+
+        simulationObject.render(this);
+
+        Gdx.gl10.glPopMatrix();
     }
 
     private void renderDynamicsWorld()
     {
+        // How far we are between the last step and the next one (hold still at the last step while paused)
+        final float alpha = paused ? 1 : Math.min(1, (float) physicsClock.getAccumulator() / physicsTimeStepNanos);
+
         for (int i = 0; i < collisionSimulationObjects.size(); i++)
         {
             final CollisionSimulationObject simulationObject = collisionSimulationObjects.get(i);
-            final btCollisionObject collisionObject = simulationObject.getCollisionObject();
-
-            /*
-             * Prefer the (interpolated) transform of the motion state.
-             * 
-             * Bullet offers native upcast methods, but the wrappers allocate new Java objects to hold the upcasted
-             * object result, so simply cast to the types we know we use in our scene to avoid the allocation.
-             */
-            boolean handled = false;
-            if (collisionObject instanceof btRigidBody)
-            {
-                final btDefaultMotionState ms = (btDefaultMotionState) ((btRigidBody) collisionObject).getMotionState();
-                if (ms != null)
-                {
-                    ms.getGraphicsWorldTrans(transform);
-                    handled = true;
-                }
-            }
 
-            // Fall back to the world transform
-            if (!handled)
+            if (interpolationEnabled && simulationObject.hasCapturedTransforms())
+            {
+                simulationObject.getInterpolatedOpenGLMatrix(alpha, glMatrix);
+            }
+            else
             {
-                collisionObject.getWorldTransform(transform);
+                getRenderTransform(simulationObject.getCollisionObject(), transform);
+                transform.getOpenGLMatrix(glMatrix);
             }
 
-            Gdx.gl10.glPushMatrix();
+            drawSimulationObject(simulationObject, glMatrix);
+        }
+    }
 
-            // Apply the object's transform to the OpenGL world
-            transform.getOpenGLMatrix(glMatrix);
-            Gdx.gl10.glMultMatrixf(glMatrix, 0);
+    /**
+     * Like {@link #renderDynamicsWorld()}, but draws the physics thread's most recently published snapshot, so no
+     * Bullet calls are made on the render thread. Objects taken out of the world since the snapshot are skipped; they
+     * may already be disposed or recycled. The physics thread may take one out after the check, but it's only disposed
+     * or recycled on the render thread, so it's still whole while it's drawn.
+     */
+    private void renderTransformSnapshot()
+    {
+        final TransformSnapshotBuffer.Snapshot snapshot = transformSnapshots.acquireReadSnapshot();
+
+        for (int i = 0; i < snapshot.getCount(); i++)
+        {
+            if (!snapshot.isCurrent(i))
+            {
+                continue;
+            }
+
+            final CollisionSimulationObject simulationObject = snapshot.getObject(i);
+            snapshot.getMatrix(i).get(glMatrix);
 
-            simulationObject.render(this);
+            drawSimulationObject(simulationObject, glMatrix);
+        }
+    }
 
-            Gdx.gl10.glPopMatrix();
+    /**
+     * Gets the transform to render a collision object with.
+     */
+    private static void getRenderTransform(btCollisionObject collisionObject, btTransform transform)
+    {
+        /*
+         * Prefer the (interpolated) transform of the motion state.
+         * 
+         * Bullet offers native upcast methods, but the wrappers allocate new Java objects to hold the upcasted object
+         * result, so simply cast to the types we know we use in our scene to avoid the allocation.
+         */
+        if (collisionObject instanceof btRigidBody)
+        {
+            final btDefaultMotionState ms = (btDefaultMotionState) ((btRigidBody) collisionObject).getMotionState();
+            if (ms != null)
+            {
+                ms.getGraphicsWorldTrans(transform);
+                return;
+            }
         }
+
+        // Fall back to the world transform
+        collisionObject.getWorldTransform(transform);
     }
 }
@@ -0,0 +1,256 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL10;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetLoader;
+import com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry;
+import com.badlogic.gdx.physics.bullet.demo.assets.PendingAsset;
+import com.badlogic.gdx.physics.bullet.demo.input.TrajectoryPlaybackInput;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryReader;
+import com.badlogic.gdx.physics.bullet.demo.replay.TrajectoryRecorder;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.MeshSimulationObject;
+
+/**
+ * Plays back a {@link TrajectoryRecorder} recording of a {@link DemoScreen} without simulating anything: the world is
+ * never stepped and nothing is added to it. Each frame, every recorded body is drawn with a stand-in for its kind (a
+ * {@link MeshSimulationObject} with the demo's mesh and texture but no Bullet objects) through the same culling and
+ * batching as a live screen, so a big recording can be scrubbed as fast as it can be drawn.
+ * <p>
+ * Bodies the recording screen couldn't number (the flat plane ground, for one) aren't drawn.
+ */
+public class TrajectoryPlaybackScreen extends SimulationScreen
+{
+    private final Game game;
+    private final AssetRegistry assetRegistry;
+    private final TrajectoryReader reader;
+    private final TrajectoryPlaybackInput input;
+
+    private final PendingAsset<Mesh> pendingCubeMesh;
+    private final PendingAsset<Mesh> pendingIcosphereMesh;
+    private final PendingAsset<Mesh> pendingTerrainMesh;
+    private final PendingAsset<Texture> pendingCubeTexture;
+    private final PendingAsset<Texture> pendingIcosphereTexture;
+    private final PendingAsset<Texture> pendingTerrainTexture;
+
+    // Drawn for every body of a kind (indexed by DemoScreen's kinds)
+    private final MeshSimulationObject[] standIns = new MeshSimulationObject[3];
+
+    // Where we are in frames (between two while playing slower than recorded), and how fast we go
+    private float position;
+    private float speed = 1;
+
+    private final float[] glMatrix = new float[16];
+
+    private final StringBuffer osdStringBuffer = new StringBuffer();
+
+    /**
+     * @param assetRegistry
+     *            the registry to get the demo's meshes and textures from (not disposed with the screen)
+     */
+    public TrajectoryPlaybackScreen(Game game, AssetRegistry assetRegistry, TrajectoryReader reader)
+    {
+        super(false);
+        setPhysicsEnabled(false);
+
+        this.game = game;
+        this.assetRegistry = assetRegistry;
+        this.reader = reader;
+
+        pendingCubeMesh = assetRegistry.acquireMesh(DemoScreen.findMesh("cube"));
+        pendingIcosphereMesh = assetRegistry.acquireMesh(DemoScreen.findMesh("icosphere"));
+        pendingTerrainMesh = assetRegistry.acquireMesh(DemoScreen.findMesh("terrain"));
+        pendingCubeTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/weird.png"), true);
+        pendingIcosphereTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/blue.png"), true);
+        pendingTerrainTexture = assetRegistry.acquireTexture(Gdx.files.classpath("textures/grass.png"), true);
+
+        // Nothing to draw without them, so wait here
+        final AssetLoader loader = assetRegistry.getLoader();
+        final Texture cubeTexture = loader.await(pendingCubeTexture);
+        cubeTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+        final Texture icosphereTexture = loader.await(pendingIcosphereTexture);
+        icosphereTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+        final Texture terrainTexture = loader.await(pendingTerrainTexture);
+        terrainTexture.setFilter(TextureFilter.MipMapLinearNearest, TextureFilter.Nearest);
+        terrainTexture.setWrap(TextureWrap.Repeat, TextureWrap.Repeat);
+
+        standIns[DemoScreen.KIND_CUBE] = createStandIn(loader.await(pendingCubeMesh), cubeTexture);
+        standIns[DemoScreen.KIND_SPHERE] = createStandIn(loader.await(pendingIcosphereMesh), icosphereTexture);
+        standIns[DemoScreen.KIND_TERRAIN] = createStandIn(loader.await(pendingTerrainMesh), terrainTexture);
+
+        setCullDistance(DemoScreen.FOG_END);
+
+        this.input = new TrajectoryPlaybackInput(this);
+        Gdx.app.getInput().setInputProcessor(input);
+
+        DemoScreen.setUpLights(getGLState());
+        DemoScreen.setUpCamera(getPerspectiveCamera());
+    }
+
+    /**
+     * @return an object that only draws the mesh, culled by the mesh's box (it has no collision shape to get one from)
+     */
+    private static MeshSimulationObject createStandIn(Mesh mesh, Texture texture)
+    {
+        final MeshSimulationObject standIn = new MeshSimulationObject(mesh, GL10.GL_TRIANGLES, false, texture, false);
+
+        final BoundingBox box = mesh.calculateBoundingBox();
+        standIn.setLocalBounds(box.min.x, box.min.y, box.min.z, box.max.x, box.max.y, box.max.z);
+        return standIn;
+    }
+
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+
+        // The stand-ins own nothing; the registry keeps the assets for the next screen
+        assetRegistry.release(pendingCubeMesh);
+        assetRegistry.release(pendingIcosphereMesh);
+        assetRegistry.release(pendingTerrainMesh);
+        assetRegistry.release(pendingCubeTexture);
+        assetRegistry.release(pendingIcosphereTexture);
+        assetRegistry.release(pendingTerrainTexture);
+
+        // Only remove if we're still it
+        if (Gdx.app.getInput().getInputProcessor() == input)
+        {
+            Gdx.app.getInput().setInputProcessor(null);
+        }
+    }
+
+    public Game getGame()
+    {
+        return game;
+    }
+
+    public TrajectoryReader getReader()
+    {
+        return reader;
+    }
+
+    /**
+     * @return the frame being shown (fractional while playing slower than recorded)
+     */
+    public float getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Moves to a frame (clamped to the recording). Decoding happens when it's next drawn.
+     */
+    public void setPosition(float position)
+    {
+        this.position = Math.max(0, Math.min(reader.getFrameCount() - 1, position));
+    }
+
+    /**
+     * @return frames played per recorded frame (negative plays backwards)
+     */
+    public float getSpeed()
+    {
+        return speed;
+    }
+
+    public void setSpeed(float speed)
+    {
+        this.speed = speed;
+    }
+
+    // Hooks
+
+    @Override
+    protected void hookAddSimulationObjects()
+    {
+        // Nothing's simulated
+    }
+
+    @Override
+    protected void hookRenderPrePhysics(float graphicsDelta)
+    {
+        if (isPaused() || reader.getFrameCount() == 0)
+        {
+            return;
+        }
+
+        setPosition(position + graphicsDelta * speed / reader.getStepSeconds());
+
+        // Hold the last (or first) frame rather than wrapping around
+        if ((speed > 0 && position >= reader.getFrameCount() - 1) || (speed < 0 && position <= 0))
+        {
+            pause();
+        }
+    }
+
+    @Override
+    protected void hookDrawSimulationObjects()
+    {
+        reader.seek((int) position);
+
+        for (int id = 0; id < reader.getIdLimit(); id++)
+        {
+            if (!reader.isActive(id))
+            {
+                continue;
+            }
+
+            final int kind = reader.getKind(id);
+            if (kind < 0 || kind >= standIns.length)
+            {
+                continue;
+            }
+
+            reader.getOpenGLMatrix(id, glMatrix);
+            drawSimulationObject(standIns[kind], glMatrix);
+        }
+    }
+
+    @Override
+    protected void hookRenderPostClear(float graphicsDelta, float physicsDelta)
+    {
+        Gdx.gl10.glClearColor(DemoScreen.SKY_COLOR[0], DemoScreen.SKY_COLOR[1], DemoScreen.SKY_COLOR[2],
+                DemoScreen.SKY_COLOR[3]);
+
+        DemoScreen.enableFog(getGLState());
+    }
+
+    @Override
+    public void positionLights(float graphicsDelta, float physicsDelta)
+    {
+        // Our light doesn't move
+    }
+
+    @Override
+    public void enableLights()
+    {
+        getGLState().glEnable(GL10.GL_LIGHTING);
+    }
+
+    @Override
+    public void disableLights()
+    {
+        getGLState().glDisable(GL10.GL_LIGHTING);
+    }
+
+    @Override
+    protected CharSequence getOSDText()
+    {
+        osdStringBuffer.setLength(0);
+        osdStringBuffer.append("(p:play/pause, ,/.:step, [/]:slower/faster, -:reverse, 0:start, drag:scrub, b:batch, v:cull) ");
+        osdStringBuffer.append("frame: ");
+        osdStringBuffer.append(reader.getFrame() + 1);
+        osdStringBuffer.append('/');
+        osdStringBuffer.append(reader.getFrameCount());
+        osdStringBuffer.append(" speed: ");
+        osdStringBuffer.append(speed);
+        osdStringBuffer.append("x ");
+        osdStringBuffer.append(super.getOSDText());
+        return osdStringBuffer;
+    }
+}
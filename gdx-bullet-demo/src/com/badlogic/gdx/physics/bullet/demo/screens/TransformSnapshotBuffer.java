@@ -0,0 +1,163 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+
+/**
+ * A lock-free triple buffer of body transforms, used to hand completed physics steps from the physics thread to the
+ * render thread.
+ * <p>
+ * The writer (physics thread) fills {@link #getWriteSnapshot()} and calls {@link #publish()}. The reader (render
+ * thread) calls {@link #acquireReadSnapshot()} once per frame to get the most recently published snapshot. Neither side
+ * ever waits for the other: the three snapshots are swapped between the writer, the reader and a "middle" slot with a
+ * single atomic exchange.
+ */
+public class TransformSnapshotBuffer
+{
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    /**
+     * One set of body transforms as OpenGL matrices (16 floats per body, in a direct buffer), along with the objects
+     * they belong to and the objects' generations (see {@link CollisionSimulationObject#getGeneration()}) when they
+     * were taken.
+     */
+    public static class Snapshot
+    {
+        private FloatBuffer matrices;
+        private CollisionSimulationObject[] objects;
+        private int[] generations;
+        private int count;
+
+        private Snapshot(int capacity)
+        {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity)
+        {
+            matrices = ByteBuffer.allocateDirect(capacity * 16 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            objects = new CollisionSimulationObject[capacity];
+            generations = new int[capacity];
+        }
+
+        /**
+         * Grows the snapshot so it can hold at least count bodies. Only the side that currently owns the snapshot may
+         * call this.
+         */
+        void ensureCapacity(int count)
+        {
+            if (count > objects.length)
+            {
+                allocate(Math.max(count, objects.length * 2));
+            }
+        }
+
+        void clear()
+        {
+            // Don't keep disposed objects reachable
+            for (int i = 0; i < count; i++)
+            {
+                objects[i] = null;
+            }
+            count = 0;
+        }
+
+        /**
+         * Stores the object and its OpenGL matrix in the next slot.
+         */
+        void add(CollisionSimulationObject object, float[] glMatrix)
+        {
+            objects[count] = object;
+            generations[count] = object.getGeneration();
+            matrices.position(count * 16);
+            matrices.put(glMatrix, 0, 16);
+            count++;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+
+        public CollisionSimulationObject getObject(int index)
+        {
+            return objects[index];
+        }
+
+        /**
+         * @return false if the object was taken out of the world since the snapshot was taken (it may be disposed, or
+         *         recycled as another body)
+         */
+        public boolean isCurrent(int index)
+        {
+            return objects[index].getGeneration() == generations[index];
+        }
+
+        /**
+         * @return the matrix buffer positioned at the start of the given body's OpenGL matrix
+         */
+        public FloatBuffer getMatrix(int index)
+        {
+            matrices.position(index * 16);
+            return matrices;
+        }
+    }
+
+    private final Snapshot[] snapshots = new Snapshot[3];
+
+    // Index of the snapshot in the middle slot, plus the FRESH bit when it was published since the last read
+    private final AtomicInteger middle = new AtomicInteger(2);
+
+    // Owned by the writer
+    private int writeIndex = 0;
+
+    // Owned by the reader
+    private int readIndex = 1;
+
+    public TransformSnapshotBuffer(int initialCapacity)
+    {
+        for (int i = 0; i < snapshots.length; i++)
+        {
+            snapshots[i] = new Snapshot(initialCapacity);
+        }
+    }
+
+    /**
+     * Writer only.
+     *
+     * @return the snapshot the writer may fill
+     */
+    Snapshot getWriteSnapshot()
+    {
+        return snapshots[writeIndex];
+    }
+
+    /**
+     * Writer only. Makes the write snapshot available to the reader and takes ownership of the old middle snapshot.
+     */
+    void publish()
+    {
+        writeIndex = middle.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Reader only.
+     *
+     * @return the most recently published snapshot (the same one as last time if nothing new was published); empty
+     *         until the first publish
+     */
+    public Snapshot acquireReadSnapshot()
+    {
+        if ((middle.get() & FRESH) != 0)
+        {
+            readIndex = middle.getAndSet(readIndex) & INDEX_MASK;
+        }
+
+        return snapshots[readIndex];
+    }
+}
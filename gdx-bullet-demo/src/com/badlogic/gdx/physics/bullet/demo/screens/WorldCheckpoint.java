@@ -0,0 +1,216 @@
+package com.badlogic.gdx.physics.bullet.demo.screens;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.bullet.btTransform;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.CollisionSimulationObject;
+import com.badlogic.gdx.physics.bullet.demo.simulationobjects.RigidSimulationObject;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * The state of every dynamic body in a {@link SimulationScreen}, in world order, in flat primitive arrays: transforms,
+ * velocities and deactivation times ({@link RigidSimulationObject#STATE_SIZE} floats each), activation states, masses,
+ * and what kind of object each one is (as the screen numbers them, for recreating it).
+ * <p>
+ * Taken with {@link SimulationScreen#checkpoint(WorldCheckpoint)} and put back with
+ * {@link SimulationScreen#restore(WorldCheckpoint)}. A checkpoint also remembers which objects it was taken from, so
+ * restoring it to the same screen reuses them (and their native bodies); one read from a file only has the kinds.
+ * <p>
+ * Files are memory mapped and in native byte order, so they're for warm starts on the same machine, not for sharing.
+ */
+public class WorldCheckpoint
+{
+    private static final int MAGIC = 0x42444350; // "BDCP"
+    private static final int VERSION = 1;
+
+    // Magic, version, count, state size, step count
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+
+    private static final int STATE_SIZE = RigidSimulationObject.STATE_SIZE;
+
+    int count;
+    long stepCount;
+
+    // The objects captured (null for entries read from a file, or that couldn't be restored)
+    CollisionSimulationObject[] objects = new CollisionSimulationObject[0];
+
+    int[] kinds = new int[0];
+    int[] activationStates = new int[0];
+    float[] masses = new float[0];
+    float[] states = new float[0];
+
+    /**
+     * @return the number of bodies
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return the screen's step count when the checkpoint was taken
+     */
+    public long getStepCount()
+    {
+        return stepCount;
+    }
+
+    /**
+     * @return the size of the checkpoint as a file, in bytes
+     */
+    public long getBytes()
+    {
+        return HEADER_SIZE + (long) count * (4 + 4 + 4 + STATE_SIZE * 4);
+    }
+
+    void clear()
+    {
+        // Don't keep objects reachable that may be disposed before the arrays are reused
+        Arrays.fill(objects, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Captures an object's state as the next entry.
+     */
+    void add(RigidSimulationObject object, int kind, btTransform transform)
+    {
+        ensureCapacity(count + 1);
+
+        objects[count] = object;
+        kinds[count] = kind;
+        masses[count] = object.getMass();
+        activationStates[count] = object.captureState(transform, states, count * STATE_SIZE);
+        count++;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= objects.length)
+        {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, Math.max(64, objects.length * 2));
+        objects = Arrays.copyOf(objects, newCapacity);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        activationStates = Arrays.copyOf(activationStates, newCapacity);
+        masses = Arrays.copyOf(masses, newCapacity);
+        states = Arrays.copyOf(states, newCapacity * STATE_SIZE);
+    }
+
+    /**
+     * Writes the checkpoint to a file through a memory mapping, replacing what was there.
+     */
+    public void write(FileHandle file)
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file.file(), "rw");
+            raf.setLength(getBytes());
+
+            final MappedByteBuffer mapped = raf.getChannel().map(MapMode.READ_WRITE, 0, getBytes());
+            mapped.order(ByteOrder.nativeOrder());
+            mapped.putInt(MAGIC);
+            mapped.putInt(VERSION);
+            mapped.putInt(count);
+            mapped.putInt(STATE_SIZE);
+            mapped.putLong(stepCount);
+
+            // Bulk copies through views, each after the last
+            mapped.asIntBuffer().put(kinds, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asIntBuffer().put(activationStates, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asFloatBuffer().put(masses, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asFloatBuffer().put(states, 0, count * STATE_SIZE);
+
+            mapped.force();
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't write checkpoint " + file, e);
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #write(FileHandle)}.
+     */
+    public static WorldCheckpoint read(FileHandle file)
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file.file(), "r");
+            final long size = raf.length();
+
+            final MappedByteBuffer mapped = raf.getChannel().map(MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.nativeOrder());
+
+            if (size < HEADER_SIZE || mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+            {
+                throw new GdxRuntimeException("Not a checkpoint: " + file);
+            }
+
+            final WorldCheckpoint checkpoint = new WorldCheckpoint();
+            final int count = mapped.getInt();
+            if (mapped.getInt() != STATE_SIZE)
+            {
+                throw new GdxRuntimeException("Checkpoint has a different state size: " + file);
+            }
+            checkpoint.stepCount = mapped.getLong();
+
+            checkpoint.ensureCapacity(count);
+            checkpoint.count = count;
+            if (checkpoint.getBytes() != size)
+            {
+                throw new GdxRuntimeException("Checkpoint is truncated: " + file);
+            }
+
+            mapped.asIntBuffer().get(checkpoint.kinds, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asIntBuffer().get(checkpoint.activationStates, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asFloatBuffer().get(checkpoint.masses, 0, count);
+            mapped.position(mapped.position() + count * 4);
+            mapped.asFloatBuffer().get(checkpoint.states, 0, count * STATE_SIZE);
+
+            return checkpoint;
+        }
+        catch (IOException e)
+        {
+            throw new GdxRuntimeException("Couldn't read checkpoint " + file, e);
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    private static void close(RandomAccessFile raf)
+    {
+        if (raf != null)
+        {
+            try
+            {
+                raf.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing to do
+            }
+        }
+    }
+}
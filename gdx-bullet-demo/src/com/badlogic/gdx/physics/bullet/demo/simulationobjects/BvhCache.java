@@ -0,0 +1,381 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape;
+import com.badlogic.gdx.physics.bullet.btOptimizedBvh;
+import com.badlogic.gdx.physics.bullet.btStridingMeshInterface;
+import com.badlogic.gdx.physics.bullet.demo.NativePointers;
+import com.badlogic.gdx.physics.bullet.demo.mesh.MeshData;
+
+/**
+ * Creates {@link btBvhTriangleMeshShape}s whose quantized BVH is cached on disk, so it only has to be built the first
+ * time a mesh is seen.
+ * <p>
+ * Cache files are named after a hash of the mesh's vertex positions and indices. Each is a small header followed by
+ * the BVH as written by {@link btOptimizedBvh#serializeInPlace}. Loading maps the file (copy on write, because
+ * {@link btOptimizedBvh#deSerializeInPlace} fixes up pointers in place) and hands the mapped memory straight to
+ * Bullet (as a raw pointer, see {@link NativePointers}), so the BVH is neither rebuilt nor copied.
+ * <p>
+ * The serialized BVH contains native pointers and is only valid on the same kind of platform (pointer size and byte
+ * order), which is part of the hash. The mapped buffers must outlive the shapes using them, so keep the cache around
+ * until those shapes are deleted, or take a shape's buffer with {@link #takeBvhMemory(btBvhTriangleMeshShape)} and
+ * keep that instead.
+ */
+public class BvhCache
+{
+    private static final int MAGIC = 0x47425648; // "GBVH"
+    private static final int VERSION = 2;
+
+    // The header is padded so the BVH data starts 16 byte aligned in the (page aligned) mapping
+    private static final int HEADER_SIZE = 64;
+    private static final int KEY_SIZE = 20;
+
+    private final FileHandle directory;
+
+    // Keeps the BVHs' memory alive, by the shape using it (loads run on loader threads, so synchronized on itself)
+    private final Map<btBvhTriangleMeshShape, ByteBuffer> mappedBuffers = new IdentityHashMap<btBvhTriangleMeshShape, ByteBuffer>();
+
+    // Stats about the last createTriangleMeshShape call
+    private boolean lastHit;
+    private long lastBvhNanos;
+
+    /**
+     * @param directory
+     *            where to keep the cache files (created if missing)
+     */
+    public BvhCache(FileHandle directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a shape for the mesh's triangles, loading the BVH from the cache if it's there, and adding it to the
+     * cache if it isn't. Problems with the cache are reported and fall back to building the BVH, as does a VM that
+     * can't hand buffers to Bullet (see {@link NativePointers#isAvailable()}).
+     * 
+     * @param mesh
+     *            the mesh the triangles came from (the cache key is computed from it)
+     * @param triangles
+     *            the mesh's triangles, in the order {@link MeshTriangleData} gives them
+     */
+    public btBvhTriangleMeshShape createTriangleMeshShape(Mesh mesh, btStridingMeshInterface triangles)
+    {
+        return createTriangleMeshShape(MeshData.fromMesh(mesh), triangles);
+    }
+
+    /**
+     * Like {@link #createTriangleMeshShape(Mesh, btStridingMeshInterface)}, but keyed by loaded data, so it can run on
+     * a loader thread before there's a mesh.
+     */
+    public btBvhTriangleMeshShape createTriangleMeshShape(MeshData data, btStridingMeshInterface triangles)
+    {
+        final long start = System.nanoTime();
+
+        if (!NativePointers.isAvailable())
+        {
+            lastHit = false;
+            final btBvhTriangleMeshShape shape = new btBvhTriangleMeshShape(triangles, true);
+            lastBvhNanos = System.nanoTime() - start;
+
+            System.out.println("BVH built without the cache (buffer addresses aren't available): " + lastBvhNanos
+                    / 1000000 + " ms");
+            return shape;
+        }
+
+        final byte[] key = computeKey(data);
+        final File file = directory.child(toHex(key) + ".bvh").file();
+
+        btBvhTriangleMeshShape shape = null;
+        if (file.exists())
+        {
+            shape = load(file, key, triangles);
+        }
+
+        lastHit = shape != null;
+
+        if (shape == null)
+        {
+            shape = new btBvhTriangleMeshShape(triangles, true);
+            save(file, key, shape.getOptimizedBvh());
+        }
+
+        lastBvhNanos = System.nanoTime() - start;
+
+        System.out.println("BVH " + (lastHit ? "loaded from " : "built and cached in ") + file.getName() + ": "
+                + lastBvhNanos / 1000000 + " ms");
+
+        return shape;
+    }
+
+    /**
+     * @return true if the last {@link #createTriangleMeshShape(Mesh, btStridingMeshInterface)} loaded the BVH from the
+     *         cache
+     */
+    public boolean wasLastHit()
+    {
+        return lastHit;
+    }
+
+    /**
+     * @return how long the last {@link #createTriangleMeshShape(Mesh, btStridingMeshInterface)} took to hash the mesh
+     *         and load or build (and save) the BVH
+     */
+    public long getLastBvhNanos()
+    {
+        return lastBvhNanos;
+    }
+
+    /**
+     * Hands the memory a shape's loaded BVH lives in over to the caller, who must keep it reachable until the shape is
+     * deleted. The cache stops holding it, so the shape can outlive the cache.
+     * 
+     * @return the mapped buffer, or null if the shape's BVH wasn't loaded from the cache (the shape owns it)
+     */
+    public ByteBuffer takeBvhMemory(btBvhTriangleMeshShape shape)
+    {
+        synchronized (mappedBuffers)
+        {
+            return mappedBuffers.remove(shape);
+        }
+    }
+
+    /**
+     * Deletes all the cache files (the next shape for each mesh will be built from scratch).
+     */
+    public void clear()
+    {
+        if (directory.exists())
+        {
+            for (FileHandle file : directory.list())
+            {
+                if (file.name().endsWith(".bvh"))
+                {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private btBvhTriangleMeshShape load(File file, byte[] key, btStridingMeshInterface triangles)
+    {
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "r");
+            final FileChannel channel = raf.getChannel();
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+            while (header.hasRemaining() && channel.read(header) != -1)
+            {
+            }
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                System.err.println("Ignoring BVH cache file with a bad header: " + file);
+                return null;
+            }
+
+            final int size = header.getInt();
+            final byte[] fileKey = new byte[KEY_SIZE];
+            header.get(fileKey);
+
+            if (!Arrays.equals(key, fileKey) || size != channel.size() - HEADER_SIZE)
+            {
+                System.err.println("Ignoring mismatched BVH cache file: " + file);
+                return null;
+            }
+
+            // Private: deSerializeInPlace writes to the buffer, and those changes must not reach the file
+            final MappedByteBuffer data = channel.map(MapMode.PRIVATE, HEADER_SIZE, size);
+            final btOptimizedBvh bvh = btOptimizedBvh.deSerializeInPlace(NativePointers.toVoid(data), size, false);
+            if (bvh == null)
+            {
+                System.err.println("Bullet couldn't read BVH cache file: " + file);
+                return null;
+            }
+
+            // Don't build a BVH; the shape uses (but doesn't own) the mapped one
+            final btBvhTriangleMeshShape shape = new btBvhTriangleMeshShape(triangles, true, false);
+            shape.setOptimizedBvh(bvh, new Vector3(1, 1, 1));
+
+            synchronized (mappedBuffers)
+            {
+                mappedBuffers.put(shape, data);
+            }
+            return shape;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Couldn't read BVH cache file " + file + ": " + e);
+            return null;
+        }
+        finally
+        {
+            close(raf);
+        }
+    }
+
+    private void save(File file, byte[] key, btOptimizedBvh bvh)
+    {
+        final int size = (int) bvh.calculateSerializeBufferSize();
+        final File temp = new File(file.getPath() + ".tmp");
+
+        directory.mkdirs();
+
+        RandomAccessFile raf = null;
+        boolean written = false;
+        try
+        {
+            raf = new RandomAccessFile(temp, "rw");
+            raf.setLength(HEADER_SIZE + size);
+
+            final MappedByteBuffer mapped = raf.getChannel().map(MapMode.READ_WRITE, 0, HEADER_SIZE + size);
+            mapped.order(ByteOrder.nativeOrder());
+            mapped.putInt(MAGIC);
+            mapped.putInt(VERSION);
+            mapped.putInt(size);
+            mapped.put(key);
+
+            // Bullet writes straight into the mapping, past the header
+            mapped.position(HEADER_SIZE);
+            final ByteBuffer data = mapped.slice();
+            if (!bvh.serializeInPlace(NativePointers.toVoid(data), size, false))
+            {
+                System.err.println("Bullet couldn't serialize the BVH for " + file);
+                return;
+            }
+
+            mapped.force();
+            written = true;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Couldn't write BVH cache file " + file + ": " + e);
+        }
+        finally
+        {
+            close(raf);
+
+            if (written)
+            {
+                // Readers only ever see complete files
+                file.delete();
+                written = temp.renameTo(file);
+            }
+
+            if (!written)
+            {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Hashes the mesh's positions and indices, the cache format version and the platform.
+     */
+    private static byte[] computeKey(MeshData data)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform has SHA-1
+            throw new RuntimeException(e);
+        }
+
+        final ByteBuffer chunk = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+        chunk.putInt(VERSION);
+        chunk.put((ByteOrder.nativeOrder() + "/" + System.getProperty("os.arch") + "/"
+                + System.getProperty("sun.arch.data.model")).getBytes());
+
+        final FloatBuffer vertices = data.getVertices();
+        final int vertexStride = data.getVertexSize() / 4;
+        final int position = data.getPositionOffset() / 4;
+        final int vertexCount = data.getVertexCount();
+        chunk.putInt(vertexCount);
+        for (int i = 0; i < vertexCount; i++)
+        {
+            if (chunk.remaining() < 12)
+            {
+                update(digest, chunk);
+            }
+            chunk.putFloat(vertices.get(i * vertexStride + position));
+            chunk.putFloat(vertices.get(i * vertexStride + position + 1));
+            chunk.putFloat(vertices.get(i * vertexStride + position + 2));
+        }
+
+        final ShortBuffer indices = data.getIndices();
+        final int indexCount = data.getIndexCount();
+        if (chunk.remaining() < 4)
+        {
+            update(digest, chunk);
+        }
+        chunk.putInt(indexCount);
+        for (int i = 0; i < indexCount; i++)
+        {
+            if (chunk.remaining() < 2)
+            {
+                update(digest, chunk);
+            }
+            chunk.putShort(indices.get(i));
+        }
+
+        update(digest, chunk);
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, ByteBuffer chunk)
+    {
+        digest.update(chunk.array(), 0, chunk.position());
+        chunk.clear();
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void close(RandomAccessFile raf)
+    {
+        if (raf != null)
+        {
+            try
+            {
+                raf.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btBoxShape;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.btCollisionShape;
+import com.badlogic.gdx.physics.bullet.btSphereShape;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Hands out reference counted {@link SharedCollisionShape}s so that bodies with identical shapes share one native
+ * shape. Shapes are keyed by type and dimensions.
+ * <p>
+ * Not thread safe; use one cache per thread (or world).
+ */
+public class CollisionShapeCache implements Disposable
+{
+    /**
+     * Shape types with a rough estimate of their native size in bytes (the object plus allocator overhead), used to
+     * report how much memory sharing saves.
+     */
+    enum ShapeType
+    {
+        BOX(128),
+        SPHERE(96);
+
+        final int estimatedBytes;
+
+        ShapeType(int estimatedBytes)
+        {
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    static final class ShapeKey
+    {
+        ShapeType type;
+        float a, b, c;
+
+        ShapeKey set(ShapeType type, float a, float b, float c)
+        {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            return this;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = type.hashCode();
+            hash = hash * 31 + Float.floatToIntBits(a);
+            hash = hash * 31 + Float.floatToIntBits(b);
+            hash = hash * 31 + Float.floatToIntBits(c);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ShapeKey))
+            {
+                return false;
+            }
+
+            final ShapeKey other = (ShapeKey) obj;
+            return type == other.type && a == other.a && b == other.b && c == other.c;
+        }
+
+        @Override
+        public String toString()
+        {
+            return type + "(" + a + ", " + b + ", " + c + ")";
+        }
+    }
+
+    private final Map<ShapeKey, SharedCollisionShape> shapes = new HashMap<ShapeKey, SharedCollisionShape>();
+
+    // Reused for lookups so a cache hit doesn't allocate
+    private final ShapeKey lookupKey = new ShapeKey();
+    private final Vector3 vector = new Vector3();
+
+    private long references;
+
+    /**
+     * @return a box shape with the given half extents, retained for the caller (call
+     *         {@link SharedCollisionShape#release()} when done)
+     */
+    public SharedCollisionShape box(float halfExtentX, float halfExtentY, float halfExtentZ)
+    {
+        SharedCollisionShape shape = shapes.get(lookupKey.set(ShapeType.BOX, halfExtentX, halfExtentY, halfExtentZ));
+        if (shape == null)
+        {
+            shape = add(new ShapeKey().set(ShapeType.BOX, halfExtentX, halfExtentY, halfExtentZ), NativeRegistry.track(
+                    new btBoxShape(vector.set(halfExtentX, halfExtentY, halfExtentZ))));
+        }
+
+        return retain(shape);
+    }
+
+    /**
+     * @return a sphere shape with the given radius, retained for the caller (call
+     *         {@link SharedCollisionShape#release()} when done)
+     */
+    public SharedCollisionShape sphere(float radius)
+    {
+        SharedCollisionShape shape = shapes.get(lookupKey.set(ShapeType.SPHERE, radius, 0, 0));
+        if (shape == null)
+        {
+            shape = add(new ShapeKey().set(ShapeType.SPHERE, radius, 0, 0), NativeRegistry.track(new btSphereShape(
+                    radius)));
+        }
+
+        return retain(shape);
+    }
+
+    /**
+     * @return the number of distinct native shapes alive
+     */
+    public int getShapeCount()
+    {
+        return shapes.size();
+    }
+
+    /**
+     * @return the number of references to all shapes (the number of shapes there would be without sharing)
+     */
+    public long getReferenceCount()
+    {
+        return references;
+    }
+
+    /**
+     * @return roughly how many bytes of native memory sharing saves compared to one shape per reference
+     */
+    public long getEstimatedBytesSaved()
+    {
+        long saved = 0;
+        for (SharedCollisionShape shape : shapes.values())
+        {
+            saved += (long) (shape.getReferences() - 1) * shape.getKey().type.estimatedBytes;
+        }
+        return saved;
+    }
+
+    /**
+     * Deletes any shapes that are still referenced. Only call this after all the bodies using them are deleted.
+     */
+    @Override
+    public void dispose()
+    {
+        final List<SharedCollisionShape> remaining = new ArrayList<SharedCollisionShape>(shapes.values());
+        shapes.clear();
+        references = 0;
+
+        for (SharedCollisionShape shape : remaining)
+        {
+            if (NativeRegistry.release(shape.getShape()))
+            {
+                shape.getShape().delete();
+            }
+        }
+    }
+
+    private SharedCollisionShape add(ShapeKey key, btCollisionShape nativeShape)
+    {
+        final SharedCollisionShape shape = new SharedCollisionShape(this, key, nativeShape);
+        shapes.put(key, shape);
+        return shape;
+    }
+
+    private SharedCollisionShape retain(SharedCollisionShape shape)
+    {
+        shape.retain();
+        references++;
+        return shape;
+    }
+
+    /**
+     * Called by {@link SharedCollisionShape#release()} when a shape's last reference is gone.
+     */
+    void remove(SharedCollisionShape shape)
+    {
+        shapes.remove(shape.getKey());
+    }
+
+    /**
+     * Called by {@link SharedCollisionShape#release()} for every release.
+     */
+    void released()
+    {
+        references--;
+    }
+}
@@ -1,10 +1,15 @@
 package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
 
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.btActionInterface;
 import com.badlogic.gdx.physics.bullet.btBroadphaseProxy.CollisionFilterGroups;
+import com.badlogic.gdx.physics.bullet.demo.BulletDemoMath;
+import com.badlogic.gdx.physics.bullet.demo.Pools;
 import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
 import com.badlogic.gdx.physics.bullet.btCollisionObject;
 import com.badlogic.gdx.physics.bullet.btDiscreteDynamicsWorld;
+import com.badlogic.gdx.physics.bullet.btTransform;
 import com.badlogic.gdx.utils.Disposable;
 
 /**
@@ -25,6 +30,24 @@ public abstract class CollisionSimulationObject implements Disposable
 
     protected btActionInterface actionInterface;
 
+    /*
+     * World transform at the previous and the latest physics step, as position (x, y, z) followed by rotation (x, y,
+     * z, w), for render interpolation.
+     */
+    private final float[] previousState = new float[7];
+    private final float[] currentState = new float[7];
+    private boolean previousCaptured;
+    private boolean currentCaptured;
+
+    // Bullet's AABB of the collision shape in the object's own space (min x, y, z, max x, y, z), for culling
+    private static final float UNBOUNDED = 1e10f;
+    private final float[] localBounds = new float[6];
+    private boolean localBoundsComputed;
+    private boolean bounded;
+
+    // Bumped by the screen every time it takes the object out of the world
+    private volatile int generation;
+
     public CollisionSimulationObject()
     {
     }
@@ -105,6 +128,202 @@ public abstract class CollisionSimulationObject implements Disposable
 
     public abstract void render(SimulationScreen screen);
 
+    /**
+     * Called by the screen when it takes the object out of the world (to remove, despawn, dispose or recycle it), so
+     * anything that kept the object from before (like the physics thread's transform snapshots) can tell it's stale.
+     */
+    public void nextGeneration()
+    {
+        generation++;
+    }
+
+    /**
+     * @return how many times the object was taken out of the world
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Captures the collision object's world transform as the state before the latest physics step.
+     * 
+     * @param transform
+     *            scratch transform
+     */
+    public void capturePreviousTransform(btTransform transform)
+    {
+        captureTransform(transform, previousState);
+        previousCaptured = true;
+    }
+
+    /**
+     * Captures the collision object's world transform as the state after the latest physics step.
+     * 
+     * @param transform
+     *            scratch transform
+     */
+    public void captureCurrentTransform(btTransform transform)
+    {
+        captureTransform(transform, currentState);
+        currentCaptured = true;
+    }
+
+    /**
+     * Forgets captured transforms (for example after the object was teleported), so
+     * {@link #hasCapturedTransforms()} is false until both are captured again.
+     */
+    public void clearCapturedTransforms()
+    {
+        previousCaptured = false;
+        currentCaptured = false;
+    }
+
+    public boolean hasCapturedTransforms()
+    {
+        return previousCaptured && currentCaptured;
+    }
+
+    /**
+     * Copies the object's position after the latest physics step into position. Uses the transform captured by
+     * {@link #captureCurrentTransform(btTransform)} when there is one, so it doesn't have to ask Bullet.
+     * 
+     * @param transform
+     *            scratch transform
+     */
+    public void getPosition(btTransform transform, Vector3 position)
+    {
+        if (currentCaptured)
+        {
+            position.set(currentState[0], currentState[1], currentState[2]);
+        }
+        else
+        {
+            collisionObject.getWorldTransform(transform);
+            position.set(transform.getOrigin());
+        }
+    }
+
+    /**
+     * Computes the OpenGL matrix for a point between the previous and current captured transforms.
+     * 
+     * @param alpha
+     *            0 for the previous transform, 1 for the current transform
+     */
+    public void getInterpolatedOpenGLMatrix(float alpha, float[] glMatrix)
+    {
+        final float[] p = previousState;
+        final float[] c = currentState;
+
+        // Normalized lerp of the rotations, through the shorter arc
+        final float dot = p[3] * c[3] + p[4] * c[4] + p[5] * c[5] + p[6] * c[6];
+        final float sign = dot < 0 ? -1 : 1;
+        final float inverse = 1 - alpha;
+
+        float qx = inverse * p[3] + alpha * sign * c[3];
+        float qy = inverse * p[4] + alpha * sign * c[4];
+        float qz = inverse * p[5] + alpha * sign * c[5];
+        float qw = inverse * p[6] + alpha * sign * c[6];
+
+        final float length = (float) Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw);
+        if (length > 0)
+        {
+            qx /= length;
+            qy /= length;
+            qz /= length;
+            qw /= length;
+        }
+
+        BulletDemoMath.toOpenGLMatrix(inverse * p[0] + alpha * c[0], inverse * p[1] + alpha * c[1], inverse * p[2]
+                + alpha * c[2], qx, qy, qz, qw, glMatrix, 0);
+    }
+
+    /**
+     * Asks Bullet for the collision shape's AABB in the object's own space, the first time it's called. Shapes don't
+     * change after they're built, so the box holds for every frame after that. Call it where Bullet may be used (not
+     * from the render thread while the physics thread runs).
+     * 
+     * @param transform
+     *            scratch transform
+     */
+    public void computeLocalBounds(btTransform transform)
+    {
+        if (localBoundsComputed || collisionObject == null || collisionObject.getCollisionShape() == null)
+        {
+            return;
+        }
+
+        final Vector3 min = Pools.VECTOR3.obtain();
+        final Vector3 max = Pools.VECTOR3.obtain();
+
+        transform.setIdentity();
+        collisionObject.getCollisionShape().getAabb(transform, min, max);
+
+        localBounds[0] = min.x;
+        localBounds[1] = min.y;
+        localBounds[2] = min.z;
+        localBounds[3] = max.x;
+        localBounds[4] = max.y;
+        localBounds[5] = max.z;
+
+        Pools.VECTOR3.free(min);
+        Pools.VECTOR3.free(max);
+
+        // Planes report (nearly) infinite boxes, which are never worth testing
+        bounded = true;
+        for (int i = 0; i < localBounds.length; i++)
+        {
+            if (!(Math.abs(localBounds[i]) < UNBOUNDED))
+            {
+                bounded = false;
+            }
+        }
+        localBoundsComputed = true;
+    }
+
+    /**
+     * Sets the box {@link #getLocalBounds()} returns instead of computing it, for objects that are drawn without a
+     * collision shape (like the stand-ins in
+     * {@link com.badlogic.gdx.physics.bullet.demo.screens.TrajectoryPlaybackScreen}).
+     */
+    public void setLocalBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+    {
+        localBounds[0] = minX;
+        localBounds[1] = minY;
+        localBounds[2] = minZ;
+        localBounds[3] = maxX;
+        localBounds[4] = maxY;
+        localBounds[5] = maxZ;
+        bounded = true;
+        localBoundsComputed = true;
+    }
+
+    /**
+     * @return the box computed by {@link #computeLocalBounds(btTransform)} (min x, y, z, max x, y, z), or null if it
+     *         wasn't computed or the shape is unbounded
+     */
+    public float[] getLocalBounds()
+    {
+        return localBoundsComputed && bounded ? localBounds : null;
+    }
+
+    private void captureTransform(btTransform transform, float[] state)
+    {
+        collisionObject.getWorldTransform(transform);
+
+        // Copy out right away: Bullet reuses the returned objects
+        final Vector3 origin = transform.getOrigin();
+        state[0] = origin.x;
+        state[1] = origin.y;
+        state[2] = origin.z;
+
+        final Quaternion rotation = transform.getRotation();
+        state[3] = rotation.x;
+        state[4] = rotation.y;
+        state[5] = rotation.z;
+        state[6] = rotation.w;
+    }
+
     /**
      * Sets an action interface that will be hooked by {@link #addToDynamicsWorld(DiscreteDynamicsWorld)} and unhooked
      * by {@link #removeFromDynamicsWorld(DiscreteDynamicsWorld)}. Most {@link btCollisionObject}s don't need to hook up
@@ -120,7 +339,10 @@ public abstract class CollisionSimulationObject implements Disposable
         return actionInterface;
     }
 
-    private boolean isDynamic()
+    /**
+     * @return true if the object has a collision object that is neither static nor kinematic
+     */
+    public boolean isDynamic()
     {
         if (collisionObject == null)
         {
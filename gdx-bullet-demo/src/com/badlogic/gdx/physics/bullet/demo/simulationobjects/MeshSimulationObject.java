@@ -4,13 +4,14 @@ import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 import java.util.concurrent.atomic.AtomicReference;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL10;
 import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape;
 import com.badlogic.gdx.physics.bullet.btTriangleMesh;
+import com.badlogic.gdx.physics.bullet.demo.GLStateCache;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
 import com.badlogic.gdx.physics.bullet.demo.Pools;
 import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
 
@@ -58,27 +59,110 @@ public class MeshSimulationObject extends RigidSimulationObject
     @Override
     public void render(SimulationScreen screen)
     {
-        Gdx.gl10.glEnable(GL10.GL_COLOR_MATERIAL);
-        Gdx.gl10.glColor4f(1, 1, 1, 1);
+        applyRenderState(screen);
+
+        mesh.render(meshPrimitiveType);
+    }
+
+    /**
+     * Sets up the state {@link #render(SimulationScreen)} draws with.
+     */
+    protected void applyRenderState(SimulationScreen screen)
+    {
+        final GLStateCache glState = screen.getGLState();
+        glState.glEnable(GL10.GL_COLOR_MATERIAL);
+        glState.glColor4f(1, 1, 1, 1);
 
         if (texture != null)
         {
-            Gdx.gl10.glEnable(GL10.GL_TEXTURE_2D);
-            texture.bind();
+            glState.glEnable(GL10.GL_TEXTURE_2D);
+            glState.bindTexture(texture);
         }
         else
         {
-            Gdx.gl10.glDisable(GL10.GL_TEXTURE_2D);
+            glState.glDisable(GL10.GL_TEXTURE_2D);
         }
 
         screen.enableLights();
+    }
+
+    public Mesh getMesh()
+    {
+        return mesh;
+    }
+
+    public Texture getTexture()
+    {
+        return texture;
+    }
+
+    /**
+     * @return true if this object can be drawn in a batch with others that share its mesh and texture (see
+     *         {@link com.badlogic.gdx.physics.bullet.demo.screens.RenderQueue}). Subclasses that change
+     *         {@link #render(SimulationScreen)} should return false unless they change the batch methods to match.
+     */
+    public boolean isBatchable()
+    {
+        return true;
+    }
+
+    /**
+     * Sets up the state and binds the mesh once for drawing a batch of objects with {@link #renderBatched()}.
+     */
+    public void beginBatch(SimulationScreen screen)
+    {
+        applyRenderState(screen);
+
+        mesh.setAutoBind(false);
+        mesh.bind();
+    }
 
+    /**
+     * Draws the mesh with the state and binding from {@link #beginBatch(SimulationScreen)} (called on any object in
+     * the batch).
+     */
+    public void renderBatched()
+    {
         mesh.render(meshPrimitiveType);
     }
 
+    public void endBatch()
+    {
+        mesh.unbind();
+        mesh.setAutoBind(true);
+    }
+
     public static btBvhTriangleMeshShape createTriangleMeshShape(Mesh mesh, AtomicReference<btTriangleMesh> triangleMesh)
     {
-        final btTriangleMesh m = new btTriangleMesh();
+        final btTriangleMesh m = createTriangleMesh(mesh);
+        triangleMesh.set(m);
+        return NativeRegistry.track(new btBvhTriangleMeshShape(m, true));
+    }
+
+    /**
+     * Creates a shape that uses the mesh's vertex and index buffers in place (see {@link MeshTriangleData}), which is
+     * much faster than {@link #createTriangleMeshShape(Mesh, AtomicReference)} for large meshes.
+     * 
+     * @param triangleData
+     *            set to the triangle data, which must be disposed after the shape is deleted
+     */
+    public static btBvhTriangleMeshShape createSharedTriangleMeshShape(Mesh mesh,
+            AtomicReference<MeshTriangleData> triangleData)
+    {
+        final MeshTriangleData data = new MeshTriangleData(mesh);
+        triangleData.set(data);
+        return NativeRegistry.track(new btBvhTriangleMeshShape(data.getTriangleIndexVertexArray(), true));
+    }
+
+    /**
+     * Copies the mesh's triangles into a new {@link btTriangleMesh}, merging duplicate vertices (which takes time
+     * proportional to the square of the vertex count).
+     * 
+     * @return the triangle mesh (delete it after any shapes using it)
+     */
+    public static btTriangleMesh createTriangleMesh(Mesh mesh)
+    {
+        final btTriangleMesh m = NativeRegistry.track(new btTriangleMesh());
 
         final ShortBuffer indices = mesh.getIndicesBuffer();
         indices.rewind();
@@ -97,13 +181,17 @@ public class MeshSimulationObject extends RigidSimulationObject
         final Vector3[] vectors = new Vector3[] { v0, v1, v2 };
         short vectorIndex = 0;
 
+        // One index per triangle corner, or one vertex per corner without indices
+        final int corners = hasIndices ? mesh.getNumIndices() : mesh.getNumVertices();
+
         int i = -1;
         int verticesRead = 0;
-        while (verticesRead < mesh.getNumVertices())
+        while (verticesRead < corners)
         {
             if (hasIndices)
             {
-                i = indices.get();
+                // Unsigned, so meshes can use all 65536 vertices
+                i = indices.get() & 0xffff;
             }
             else
             {
@@ -126,7 +214,6 @@ public class MeshSimulationObject extends RigidSimulationObject
         Pools.VECTOR3.free(v1);
         Pools.VECTOR3.free(v2);
 
-        triangleMesh.set(m);
-        return new btBvhTriangleMeshShape(m, true);
+        return m;
     }
 }
@@ -0,0 +1,213 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.demo.NativePointers;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.demo.Pools;
+import com.badlogic.gdx.physics.bullet.demo.mesh.MeshData;
+import com.badlogic.gdx.physics.bullet.PHY_ScalarType;
+import com.badlogic.gdx.physics.bullet.btIndexedMesh;
+import com.badlogic.gdx.physics.bullet.btTriangleIndexVertexArray;
+import com.badlogic.gdx.physics.bullet.btTriangleMesh;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Points Bullet straight at a {@link Mesh}'s (or {@link MeshData}'s) vertex and index buffers with a
+ * {@link btTriangleIndexVertexArray}, so importing a triangle mesh doesn't copy (or search) any vertices.
+ * <p>
+ * Bullet reads the mesh's memory for as long as shapes use the array, so the mesh must not be disposed (or its
+ * vertices changed) until those shapes and this object are. Meshes without indices get a generated sequential index
+ * buffer, held by this object.
+ * <p>
+ * On VMs that don't give out buffer addresses (see {@link NativePointers#isAvailable()}), the triangles are copied into
+ * a {@link btTriangleMesh} instead, which is slower to build but works the same from then on.
+ */
+public class MeshTriangleData implements Disposable
+{
+    private final btTriangleIndexVertexArray triangleIndexVertexArray;
+
+    // Bullet holds pointers into these, so keep them reachable
+    private final FloatBuffer vertices;
+    private final ShortBuffer shortIndices;
+    private final IntBuffer intIndices;
+
+    private final int triangleCount;
+
+    /**
+     * @param mesh
+     *            a mesh of {@link com.badlogic.gdx.graphics.GL10#GL_TRIANGLES}, indexed or not
+     */
+    public MeshTriangleData(Mesh mesh)
+    {
+        this(MeshData.fromMesh(mesh));
+    }
+
+    /**
+     * Like {@link #MeshTriangleData(Mesh)}, but straight from loaded data (on any thread, before there's a mesh).
+     */
+    public MeshTriangleData(MeshData data)
+    {
+        this(data, false);
+    }
+
+    /**
+     * @param shared
+     *            true to track the native objects as shared (see {@link NativeRegistry#trackShared(Object)}) from the
+     *            start, for data that outlives the screen (or is made on a loader thread while a screen's scope is
+     *            open)
+     */
+    public MeshTriangleData(MeshData data, boolean shared)
+    {
+        final int vertexSize = data.getVertexSize();
+        final int positionOffset = data.getPositionOffset();
+        final int vertexCount = data.getVertexCount();
+
+        if (!NativePointers.isAvailable())
+        {
+            // Bullet can't be pointed at the buffers, so it gets its own copy
+            vertices = null;
+            shortIndices = null;
+            intIndices = null;
+            triangleCount = (data.getIndexCount() > 0 ? data.getIndexCount() : vertexCount) / 3;
+            triangleIndexVertexArray = track(copyTriangles(data, triangleCount), shared);
+            return;
+        }
+
+        // Start the view at the first position; Bullet steps through with the vertex stride
+        final FloatBuffer dataVertices = data.getVertices().duplicate();
+        dataVertices.position(positionOffset / 4);
+        vertices = dataVertices.slice();
+
+        final btIndexedMesh indexedMesh = track(new btIndexedMesh(), shared);
+        indexedMesh.setM_numVertices(vertexCount);
+        indexedMesh.setM_vertexStride(vertexSize);
+        indexedMesh.setM_vertexType(PHY_ScalarType.PHY_FLOAT);
+        indexedMesh.setM_vertexBase(NativePointers.toUnsignedChar(vertices));
+
+        if (data.getIndexCount() > 0)
+        {
+            shortIndices = data.getIndices().duplicate();
+            intIndices = null;
+            triangleCount = data.getIndexCount() / 3;
+        }
+        else if (vertexCount <= 0xffff)
+        {
+            shortIndices = ByteBuffer.allocateDirect(vertexCount * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+            for (int i = 0; i < vertexCount; i++)
+            {
+                shortIndices.put(i, (short) i);
+            }
+            intIndices = null;
+            triangleCount = vertexCount / 3;
+        }
+        else
+        {
+            intIndices = ByteBuffer.allocateDirect(vertexCount * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            for (int i = 0; i < vertexCount; i++)
+            {
+                intIndices.put(i, i);
+            }
+            shortIndices = null;
+            triangleCount = vertexCount / 3;
+        }
+
+        indexedMesh.setM_numTriangles(triangleCount);
+        if (shortIndices != null)
+        {
+            // Indices are unsigned shorts to Bullet, so meshes can use all 65536 vertices
+            indexedMesh.setM_triangleIndexStride(3 * 2);
+            indexedMesh.setM_indexType(PHY_ScalarType.PHY_SHORT);
+            indexedMesh.setM_triangleIndexBase(NativePointers.toUnsignedChar(shortIndices));
+        }
+        else
+        {
+            indexedMesh.setM_triangleIndexStride(3 * 4);
+            indexedMesh.setM_indexType(PHY_ScalarType.PHY_INTEGER);
+            indexedMesh.setM_triangleIndexBase(NativePointers.toUnsignedChar(intIndices));
+        }
+
+        triangleIndexVertexArray = track(new btTriangleIndexVertexArray(), shared);
+
+        // The indexed mesh is copied into the array
+        triangleIndexVertexArray.addIndexedMesh(indexedMesh, indexedMesh.getM_indexType());
+        if (NativeRegistry.release(indexedMesh))
+        {
+            indexedMesh.delete();
+        }
+    }
+
+    /**
+     * Copies the triangles into a new {@link btTriangleMesh}, as they are (without merging vertices, which takes time
+     * proportional to the square of the vertex count).
+     */
+    private static btTriangleMesh copyTriangles(MeshData data, int triangleCount)
+    {
+        final btTriangleMesh triangleMesh = new btTriangleMesh();
+
+        final FloatBuffer vertices = data.getVertices();
+        final int vertexStride = data.getVertexSize() / 4;
+        final int position = data.getPositionOffset() / 4;
+        final ShortBuffer indices = data.getIndexCount() > 0 ? data.getIndices() : null;
+
+        final Vector3 v0 = Pools.VECTOR3.obtain();
+        final Vector3 v1 = Pools.VECTOR3.obtain();
+        final Vector3 v2 = Pools.VECTOR3.obtain();
+        final Vector3[] corners = new Vector3[] { v0, v1, v2 };
+
+        for (int triangle = 0; triangle < triangleCount; triangle++)
+        {
+            for (int corner = 0; corner < 3; corner++)
+            {
+                final int c = triangle * 3 + corner;
+
+                // Unsigned, like the indices Bullet reads in place
+                final int vertex = (indices != null ? indices.get(c) & 0xffff : c) * vertexStride + position;
+                corners[corner].set(vertices.get(vertex), vertices.get(vertex + 1), vertices.get(vertex + 2));
+            }
+            triangleMesh.addTriangle(v0, v1, v2, false);
+        }
+
+        Pools.VECTOR3.free(v0);
+        Pools.VECTOR3.free(v1);
+        Pools.VECTOR3.free(v2);
+
+        return triangleMesh;
+    }
+
+    private static <T> T track(T object, boolean shared)
+    {
+        return shared ? NativeRegistry.trackShared(object) : NativeRegistry.track(object);
+    }
+
+    /**
+     * @return the array to create shapes from (for example a {@link com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape})
+     */
+    public btTriangleIndexVertexArray getTriangleIndexVertexArray()
+    {
+        return triangleIndexVertexArray;
+    }
+
+    public int getTriangleCount()
+    {
+        return triangleCount;
+    }
+
+    /**
+     * Deletes the native array. Only call this after the shapes using it are deleted.
+     */
+    @Override
+    public void dispose()
+    {
+        if (NativeRegistry.release(triangleIndexVertexArray))
+        {
+            triangleIndexVertexArray.delete();
+        }
+    }
+}
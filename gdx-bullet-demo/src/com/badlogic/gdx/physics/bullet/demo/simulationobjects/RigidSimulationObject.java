@@ -1,5 +1,6 @@
 package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
 
+import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.btCollisionShape;
 import com.badlogic.gdx.physics.bullet.btDefaultMotionState;
@@ -8,6 +9,7 @@ import com.badlogic.gdx.physics.bullet.btMotionState;
 import com.badlogic.gdx.physics.bullet.btRigidBody;
 import com.badlogic.gdx.physics.bullet.btRigidBodyConstructionInfo;
 import com.badlogic.gdx.physics.bullet.btTransform;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
 import com.badlogic.gdx.physics.bullet.demo.Pools;
 import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
 
@@ -21,7 +23,15 @@ import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
  */
 public abstract class RigidSimulationObject extends CollisionSimulationObject
 {
+    /**
+     * The number of floats {@link #captureState(btTransform, float[], int)} writes: position (x, y, z), rotation (x, y,
+     * z, w), linear velocity (x, y, z), angular velocity (x, y, z) and deactivation time.
+     */
+    public static final int STATE_SIZE = 14;
+
     private btCollisionShape collisionShape;
+    private boolean disposeCollisionShape;
+    private SharedCollisionShape sharedCollisionShape;
     private btRigidBody rigidBody;
 
     /**
@@ -29,6 +39,9 @@ public abstract class RigidSimulationObject extends CollisionSimulationObject
      */
     private btMotionState motionState;
 
+    // The RigidSimulationObjectPool that created this object, if any
+    private RigidSimulationObjectPool<?> pool;
+
     public RigidSimulationObject()
     {
         super();
@@ -39,17 +52,21 @@ public abstract class RigidSimulationObject extends CollisionSimulationObject
     {
         super.dispose();
 
-        if (rigidBody != null)
+        if (rigidBody != null && NativeRegistry.release(rigidBody))
         {
             rigidBody.delete();
         }
 
-        if (collisionShape != null)
+        if (sharedCollisionShape != null)
+        {
+            sharedCollisionShape.release();
+        }
+        else if (collisionShape != null && disposeCollisionShape && NativeRegistry.release(collisionShape))
         {
             collisionShape.delete();
         }
 
-        if (motionState != null)
+        if (motionState != null && NativeRegistry.release(motionState))
         {
             motionState.delete();
         }
@@ -71,9 +88,22 @@ public abstract class RigidSimulationObject extends CollisionSimulationObject
      */
     public void initialize(btCollisionShape collisionShape, float mass, float friction, btTransform startTransform)
     {
-        this.collisionShape = collisionShape;
+        initialize(collisionShape, mass, friction, startTransform, true);
+    }
 
-        motionState = new btDefaultMotionState(startTransform);
+    /**
+     * Like {@link #initialize(btCollisionShape, float, float, btTransform)}, for shapes owned by something else (an
+     * {@link com.badlogic.gdx.physics.bullet.demo.assets.AssetRegistry}, for example).
+     * 
+     * @param disposeCollisionShape
+     *            if false, the shape isn't deleted with this object
+     */
+    public void initialize(btCollisionShape collisionShape, float mass, float friction, btTransform startTransform,
+            boolean disposeCollisionShape)
+    {
+        NativeRegistry.checkLive(collisionShape);
+        this.collisionShape = collisionShape;
+        this.disposeCollisionShape = disposeCollisionShape;
 
         final Vector3 localInertia = Pools.VECTOR3.obtain();
         localInertia.set(0, 0, 0);
@@ -83,24 +113,213 @@ public abstract class RigidSimulationObject extends CollisionSimulationObject
             collisionShape.calculateLocalInertia(mass, localInertia);
         }
 
-        final btRigidBodyConstructionInfo bodyCI = new btRigidBodyConstructionInfo(mass, motionState, collisionShape,
-                localInertia);
+        createRigidBody(mass, localInertia, friction, startTransform);
+
+        Pools.VECTOR3.free(localInertia);
+    }
+
+    /**
+     * Initializes the {@link RigidSimulationObject} from a shape shared with other objects. Call this once before
+     * adding to the dynamics world.
+     * 
+     * @param sharedCollisionShape
+     *            the shape, already retained for this object (it will be released automatically)
+     * @param mass
+     *            the mass
+     * @param friction
+     *            the friction or -1 for default
+     * @param startTransform
+     *            the start transform (reference is not captured)
+     */
+    public void initialize(SharedCollisionShape sharedCollisionShape, float mass, float friction,
+            btTransform startTransform)
+    {
+        NativeRegistry.checkLive(sharedCollisionShape.getShape());
+        this.sharedCollisionShape = sharedCollisionShape;
+        this.collisionShape = sharedCollisionShape.getShape();
+
+        final Vector3 localInertia = Pools.VECTOR3.obtain();
+        sharedCollisionShape.calculateLocalInertia(mass, localInertia);
+
+        createRigidBody(mass, localInertia, friction, startTransform);
+
+        Pools.VECTOR3.free(localInertia);
+    }
+
+    private void createRigidBody(float mass, Vector3 localInertia, float friction, btTransform startTransform)
+    {
+        motionState = NativeRegistry.track(new btDefaultMotionState(startTransform));
+
+        final btRigidBodyConstructionInfo bodyCI = NativeRegistry.track(new btRigidBodyConstructionInfo(mass,
+                motionState, collisionShape, localInertia));
 
         if (friction != -1)
         {
             bodyCI.setM_friction(friction);
         }
 
-        rigidBody = new btRigidBody(bodyCI);
+        rigidBody = NativeRegistry.track(new btRigidBody(bodyCI));
 
         // All fields copied during construction
-        bodyCI.delete();
+        if (NativeRegistry.release(bodyCI))
+        {
+            bodyCI.delete();
+        }
 
         setCollisionObject(rigidBody);
+    }
+
+    /**
+     * Moves the body to the given transform and brings it to rest, clearing any accumulated forces, so it can be
+     * (re)added to the dynamics world as if it were new. Only call this while the body is not in the world.
+     * 
+     * @param transform
+     *            the new transform (reference is not captured)
+     */
+    public void reset(btTransform transform)
+    {
+        final Vector3 zero = Pools.VECTOR3.obtain();
+        zero.set(0, 0, 0);
+
+        rigidBody.setWorldTransform(transform);
+        rigidBody.setInterpolationWorldTransform(transform);
+        motionState.setWorldTransform(transform);
+
+        rigidBody.setLinearVelocity(zero);
+        rigidBody.setAngularVelocity(zero);
+        rigidBody.setInterpolationLinearVelocity(zero);
+        rigidBody.setInterpolationAngularVelocity(zero);
+        rigidBody.clearForces();
+
+        // It may have been put to sleep before it was removed
+        rigidBody.activate(true);
+
+        clearCapturedTransforms();
+
+        Pools.VECTOR3.free(zero);
+    }
+
+    /**
+     * Copies the body's world transform, velocities and deactivation time into state (see {@link #STATE_SIZE}).
+     * 
+     * @param transform
+     *            scratch transform
+     * @return the body's activation state
+     */
+    public int captureState(btTransform transform, float[] state, int offset)
+    {
+        rigidBody.getWorldTransform(transform);
+
+        // Copy out right away: Bullet reuses the returned objects
+        final Vector3 origin = transform.getOrigin();
+        state[offset] = origin.x;
+        state[offset + 1] = origin.y;
+        state[offset + 2] = origin.z;
+
+        final Quaternion rotation = transform.getRotation();
+        state[offset + 3] = rotation.x;
+        state[offset + 4] = rotation.y;
+        state[offset + 5] = rotation.z;
+        state[offset + 6] = rotation.w;
+
+        final Vector3 linear = rigidBody.getLinearVelocity();
+        state[offset + 7] = linear.x;
+        state[offset + 8] = linear.y;
+        state[offset + 9] = linear.z;
+
+        final Vector3 angular = rigidBody.getAngularVelocity();
+        state[offset + 10] = angular.x;
+        state[offset + 11] = angular.y;
+        state[offset + 12] = angular.z;
+
+        state[offset + 13] = rigidBody.getDeactivationTime();
+
+        return rigidBody.getActivationState();
+    }
+
+    /**
+     * Puts the body back in a state from {@link #captureState(btTransform, float[], int)}, clearing accumulated forces.
+     * The body may be in the world; its cached contacts are the caller's to clean.
+     * 
+     * @param transform
+     *            scratch transform
+     */
+    public void restoreState(btTransform transform, float[] state, int offset, int activationState)
+    {
+        final Vector3 vector = Pools.VECTOR3.obtain();
+        final Quaternion rotation = Pools.QUATERNION.obtain();
+
+        transform.setIdentity();
+        transform.setOrigin(vector.set(state[offset], state[offset + 1], state[offset + 2]));
+        transform.setRotation(rotation.set(state[offset + 3], state[offset + 4], state[offset + 5], state[offset + 6]));
+
+        rigidBody.setWorldTransform(transform);
+        rigidBody.setInterpolationWorldTransform(transform);
+        motionState.setWorldTransform(transform);
+
+        vector.set(state[offset + 7], state[offset + 8], state[offset + 9]);
+        rigidBody.setLinearVelocity(vector);
+        rigidBody.setInterpolationLinearVelocity(vector);
+
+        vector.set(state[offset + 10], state[offset + 11], state[offset + 12]);
+        rigidBody.setAngularVelocity(vector);
+        rigidBody.setInterpolationAngularVelocity(vector);
+
+        rigidBody.clearForces();
+
+        // Forced, so sleeping bodies go back to sleep and awake ones wake up
+        rigidBody.forceActivationState(activationState);
+        rigidBody.setDeactivationTime(state[offset + 13]);
+
+        clearCapturedTransforms();
+
+        Pools.VECTOR3.free(vector);
+        Pools.QUATERNION.free(rotation);
+    }
+
+    /**
+     * @return the body's mass (0 for static bodies)
+     */
+    public float getMass()
+    {
+        final float inverseMass = rigidBody.getInvMass();
+        return inverseMass == 0 ? 0 : 1 / inverseMass;
+    }
+
+    /**
+     * Changes a dynamic body's mass, and its inertia with it. The body may be in the world.
+     * 
+     * @param mass
+     *            the new mass (not 0; a body can't be made static this way)
+     */
+    public void setMass(float mass)
+    {
+        final Vector3 localInertia = Pools.VECTOR3.obtain();
+        if (sharedCollisionShape != null)
+        {
+            sharedCollisionShape.calculateLocalInertia(mass, localInertia);
+        }
+        else
+        {
+            collisionShape.calculateLocalInertia(mass, localInertia);
+        }
+
+        rigidBody.setMassProps(mass, localInertia);
+        rigidBody.updateInertiaTensor();
 
         Pools.VECTOR3.free(localInertia);
     }
 
+    RigidSimulationObjectPool<?> getPool()
+    {
+        return pool;
+    }
+
+    void setPool(RigidSimulationObjectPool<?> pool)
+    {
+        this.pool = pool;
+    }
+
     @Override
     public void render(SimulationScreen screen)
     {
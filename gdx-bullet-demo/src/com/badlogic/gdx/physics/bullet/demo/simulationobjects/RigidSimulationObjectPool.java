@@ -0,0 +1,173 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import java.util.ArrayList;
+
+import com.badlogic.gdx.physics.bullet.btTransform;
+import com.badlogic.gdx.physics.bullet.demo.Pools;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Recycles {@link RigidSimulationObject}s (and their native bodies and motion states) so spawning and removing bodies
+ * in steady state doesn't allocate anything, in Java or in Bullet.
+ * <p>
+ * Unlike a {@link com.badlogic.gdx.utils.Pool}, objects that don't fit in the pool when freed are disposed, as are
+ * the pooled objects when the pool is disposed. Objects must be removed from the dynamics world before they are
+ * freed.
+ * 
+ * @param <T>
+ *            the type of object pooled
+ */
+public abstract class RigidSimulationObjectPool<T extends RigidSimulationObject> implements Disposable
+{
+    private final ArrayList<T> freeObjects;
+    private final int max;
+
+    private long created;
+    private long reused;
+    private long discarded;
+
+    /**
+     * @param max
+     *            the maximum number of free objects kept for reuse
+     */
+    public RigidSimulationObjectPool(int max)
+    {
+        this.max = max;
+        this.freeObjects = new ArrayList<T>(Math.min(max, 256));
+    }
+
+    /**
+     * Creates a new, initialized object. The transform and velocities don't matter; they are reset on
+     * {@link #obtain(btTransform)}.
+     */
+    protected abstract T newObject();
+
+    /**
+     * Creates objects until count are free (or the pool is full), so spawning doesn't create any later.
+     */
+    public void prewarm(int count)
+    {
+        count = Math.min(count, max);
+        while (freeObjects.size() < count)
+        {
+            freeObjects.add(create());
+        }
+    }
+
+    /**
+     * @return a free object (or a new one if none are free) at the given transform, at rest, ready to be added to the
+     *         dynamics world
+     */
+    public T obtain(btTransform transform)
+    {
+        final T object;
+        if (freeObjects.isEmpty())
+        {
+            object = create();
+        }
+        else
+        {
+            object = freeObjects.remove(freeObjects.size() - 1);
+            reused++;
+        }
+
+        object.reset(transform);
+        return object;
+    }
+
+    /**
+     * Takes back an object from {@link #obtain(btTransform)} that has been removed from the dynamics world. Disposes
+     * it if the pool is full.
+     */
+    public void free(T object)
+    {
+        if (object.getPool() != this)
+        {
+            throw new IllegalArgumentException("Object was not obtained from this pool");
+        }
+
+        if (freeObjects.size() < max)
+        {
+            freeObjects.add(object);
+        }
+        else
+        {
+            object.dispose();
+            discarded++;
+        }
+    }
+
+    /**
+     * @return true if the object was created by this pool
+     */
+    public boolean owns(RigidSimulationObject object)
+    {
+        return object.getPool() == this;
+    }
+
+    public int getFree()
+    {
+        return freeObjects.size();
+    }
+
+    public int getMax()
+    {
+        return max;
+    }
+
+    /**
+     * @return the number of objects ever created by this pool
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * @return the number of times {@link #obtain(btTransform)} returned a recycled object
+     */
+    public long getReused()
+    {
+        return reused;
+    }
+
+    /**
+     * @return the number of freed objects disposed because the pool was full
+     */
+    public long getDiscarded()
+    {
+        return discarded;
+    }
+
+    /**
+     * Disposes the free objects. Objects still in use are the caller's to dispose.
+     */
+    @Override
+    public void dispose()
+    {
+        for (int i = 0; i < freeObjects.size(); i++)
+        {
+            freeObjects.get(i).dispose();
+        }
+        freeObjects.clear();
+    }
+
+    private T create()
+    {
+        final T object = newObject();
+        object.setPool(this);
+        created++;
+        return object;
+    }
+
+    /**
+     * Convenience for {@link #newObject()} implementations: the identity transform, from {@link Pools#btTRANSFORM}.
+     * Free it when done.
+     */
+    protected static btTransform obtainIdentityTransform()
+    {
+        final btTransform transform = Pools.btTRANSFORM.obtain();
+        transform.setIdentity();
+        return transform;
+    }
+}
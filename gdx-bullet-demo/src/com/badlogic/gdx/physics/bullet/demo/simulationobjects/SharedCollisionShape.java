@@ -0,0 +1,113 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btCollisionShape;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+
+/**
+ * A {@link btCollisionShape} shared by many bodies through a {@link CollisionShapeCache}. The native shape is deleted
+ * when the last reference is released.
+ * <p>
+ * Also caches the shape's local inertia for each mass it's been used with, so identical bodies don't ask Bullet to
+ * compute it again.
+ */
+public class SharedCollisionShape
+{
+    private final CollisionShapeCache cache;
+    private final CollisionShapeCache.ShapeKey key;
+    private final btCollisionShape shape;
+    private int references;
+
+    // Local inertia (x, y, z) for each mass in masses, in the same order
+    private float[] masses = new float[2];
+    private float[] inertias = new float[masses.length * 3];
+    private int inertiaCount;
+
+    SharedCollisionShape(CollisionShapeCache cache, CollisionShapeCache.ShapeKey key, btCollisionShape shape)
+    {
+        this.cache = cache;
+        this.key = key;
+        this.shape = shape;
+    }
+
+    public btCollisionShape getShape()
+    {
+        return shape;
+    }
+
+    public int getReferences()
+    {
+        return references;
+    }
+
+    CollisionShapeCache.ShapeKey getKey()
+    {
+        return key;
+    }
+
+    void retain()
+    {
+        references++;
+    }
+
+    /**
+     * Drops one reference; the native shape is deleted when there are none left.
+     */
+    public void release()
+    {
+        if (references <= 0)
+        {
+            throw new IllegalStateException("Shape released more times than it was retained: " + key);
+        }
+
+        references--;
+        cache.released();
+
+        if (references == 0)
+        {
+            cache.remove(this);
+            if (NativeRegistry.release(shape))
+            {
+                shape.delete();
+            }
+        }
+    }
+
+    /**
+     * Like {@link btCollisionShape#calculateLocalInertia(float, Vector3)}, but computed only once per mass.
+     */
+    public void calculateLocalInertia(float mass, Vector3 localInertia)
+    {
+        for (int i = 0; i < inertiaCount; i++)
+        {
+            if (masses[i] == mass)
+            {
+                localInertia.set(inertias[i * 3], inertias[i * 3 + 1], inertias[i * 3 + 2]);
+                return;
+            }
+        }
+
+        localInertia.set(0, 0, 0);
+        if (mass != 0)
+        {
+            shape.calculateLocalInertia(mass, localInertia);
+        }
+
+        if (inertiaCount == masses.length)
+        {
+            final float[] newMasses = new float[masses.length * 2];
+            System.arraycopy(masses, 0, newMasses, 0, masses.length);
+            masses = newMasses;
+
+            final float[] newInertias = new float[newMasses.length * 3];
+            System.arraycopy(inertias, 0, newInertias, 0, inertias.length);
+            inertias = newInertias;
+        }
+
+        masses[inertiaCount] = mass;
+        inertias[inertiaCount * 3] = localInertia.x;
+        inertias[inertiaCount * 3 + 1] = localInertia.y;
+        inertias[inertiaCount * 3 + 2] = localInertia.z;
+        inertiaCount++;
+    }
+}
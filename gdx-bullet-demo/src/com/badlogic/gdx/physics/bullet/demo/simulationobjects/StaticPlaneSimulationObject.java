@@ -11,6 +11,8 @@ import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.btStaticPlaneShape;
 import com.badlogic.gdx.physics.bullet.btTransform;
 import com.badlogic.gdx.physics.bullet.demo.BulletDemoMath;
+import com.badlogic.gdx.physics.bullet.demo.GLStateCache;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
 import com.badlogic.gdx.physics.bullet.demo.Pools;
 import com.badlogic.gdx.physics.bullet.demo.screens.SimulationScreen;
 
@@ -27,14 +29,17 @@ public class StaticPlaneSimulationObject extends RigidSimulationObject
     /**
      * Ignored. Only the plane normal and constants are used.
      */
-    private final static btTransform DEFAULT_START_TRANSFORM = new btTransform();
+    private final static btTransform DEFAULT_START_TRANSFORM = NativeRegistry.trackShared(new btTransform());
 
     static
     {
         DEFAULT_START_TRANSFORM.setIdentity();
     }
 
-    private final btStaticPlaneShape staticPlaneShape;
+    // Copied from the shape, so rendering doesn't call Bullet (the physics thread may be stepping)
+    private final Vector3 planeNormal;
+    private final float planeConstant;
+
     private final Mesh mesh;
     private final Texture texture;
     private final boolean disposeTexture;
@@ -61,9 +66,15 @@ public class StaticPlaneSimulationObject extends RigidSimulationObject
                 -width / 2f, height / 2f, 0, 0, height });
         this.mesh.setIndices(new short[] { 0, 1, 2, 0, 3, 2 });
 
-        this.staticPlaneShape = new btStaticPlaneShape(planeNormal, planeConstant);
+        final btStaticPlaneShape staticPlaneShape = NativeRegistry.track(new btStaticPlaneShape(planeNormal,
+                planeConstant));
+
+        // The shape normalizes the normal; copy it right away, Bullet reuses the returned vector
+        this.planeNormal = new Vector3(staticPlaneShape.getPlaneNormal());
+        this.planeConstant = staticPlaneShape.getPlaneConstant();
 
-        initialize(this.staticPlaneShape, 0, -1, DEFAULT_START_TRANSFORM);
+        // The shape is deleted with the body (by RigidSimulationObject.dispose())
+        initialize(staticPlaneShape, 0, -1, DEFAULT_START_TRANSFORM);
     }
 
     @Override
@@ -71,8 +82,6 @@ public class StaticPlaneSimulationObject extends RigidSimulationObject
     {
         super.dispose();
 
-        staticPlaneShape.delete();
-
         mesh.dispose();
 
         if (disposeTexture)
@@ -85,18 +94,12 @@ public class StaticPlaneSimulationObject extends RigidSimulationObject
     public void render(SimulationScreen screen)
     {
         /*
-         * Our StaticPlaneShape holds the plane vector and scalar. Use it instead of the applied render transform from
-         * the kinematic (not updated/calculated for static planes).
+         * Use the plane vector and scalar from our StaticPlaneShape instead of the applied render transform from the
+         * kinematic (not updated/calculated for static planes).
          */
 
         Gdx.gl10.glPushMatrix();
 
-        // Get the plane normal
-        final Vector3 planeNormal = Pools.VECTOR3.obtain();
-        planeNormal.set(staticPlaneShape.getPlaneNormal());
-
-        final float planeConstant = staticPlaneShape.getPlaneConstant();
-
         // Calculate the plane origin
         final Vector3 planeOrigin = Pools.VECTOR3.obtain();
         planeOrigin.set(planeNormal);
@@ -109,22 +112,24 @@ public class StaticPlaneSimulationObject extends RigidSimulationObject
         float angle = MathUtils.radiansToDegrees * BulletDemoMath.angle(planeNormal, MESH_NORMAL);
 
         // Cross product gives us the vector around which to rotate
-        planeNormal.crs(MESH_NORMAL);
+        final Vector3 axis = Pools.VECTOR3.obtain();
+        axis.set(planeNormal).crs(MESH_NORMAL);
 
         // Rotate by that angle
-        Gdx.gl10.glRotatef(angle, planeNormal.x, planeNormal.y, planeNormal.z);
+        Gdx.gl10.glRotatef(angle, axis.x, axis.y, axis.z);
 
-        Gdx.gl10.glColor4f(1, 1, 1, 1);
-        Gdx.gl10.glEnable(GL10.GL_TEXTURE_2D);
-        Gdx.gl10.glEnable(GL10.GL_COLOR_MATERIAL);
+        final GLStateCache glState = screen.getGLState();
+        glState.glColor4f(1, 1, 1, 1);
+        glState.glEnable(GL10.GL_TEXTURE_2D);
+        glState.glEnable(GL10.GL_COLOR_MATERIAL);
 
         screen.enableLights();
-        texture.bind();
+        glState.bindTexture(texture);
         mesh.render(GL10.GL_TRIANGLE_STRIP);
 
         Gdx.gl10.glPopMatrix();
 
-        Pools.VECTOR3.free(planeNormal);
+        Pools.VECTOR3.free(axis);
         Pools.VECTOR3.free(planeOrigin);
     }
 }
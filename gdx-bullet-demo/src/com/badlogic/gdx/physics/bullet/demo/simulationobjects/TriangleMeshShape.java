@@ -0,0 +1,71 @@
+package com.badlogic.gdx.physics.bullet.demo.simulationobjects;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.physics.bullet.btBvhTriangleMeshShape;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.physics.bullet.demo.mesh.MeshData;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * A {@link btBvhTriangleMeshShape} together with the {@link MeshTriangleData} it reads its triangles from (and the
+ * mapped memory its BVH lives in, when it came from a {@link BvhCache}), so they can be kept (and deleted) as one,
+ * however long the cache lives.
+ */
+public class TriangleMeshShape implements Disposable
+{
+    // Rough native size of each triangle's share of the quantized BVH (about two 16 byte nodes)
+    private static final int ESTIMATED_BYTES_PER_TRIANGLE = 32;
+
+    private final MeshTriangleData triangles;
+    private final btBvhTriangleMeshShape shape;
+
+    // Bullet reads the BVH from this mapping, so it must stay reachable until the shape is deleted; null when built
+    private ByteBuffer bvhMemory;
+
+    /**
+     * Builds the shape (on any thread), with its BVH from the cache if it's there.
+     *
+     * @param data
+     *            the triangles (must not change while the shape exists)
+     */
+    public TriangleMeshShape(MeshData data, BvhCache bvhCache)
+    {
+        // Both are kept by the asset registry, across screens
+        triangles = new MeshTriangleData(data, true);
+        shape = NativeRegistry.trackShared(bvhCache.createTriangleMeshShape(data, triangles
+                .getTriangleIndexVertexArray()), getEstimatedBytes());
+        bvhMemory = bvhCache.takeBvhMemory(shape);
+    }
+
+    public btBvhTriangleMeshShape getShape()
+    {
+        return shape;
+    }
+
+    public MeshTriangleData getTriangles()
+    {
+        return triangles;
+    }
+
+    public long getEstimatedBytes()
+    {
+        return (long) triangles.getTriangleCount() * ESTIMATED_BYTES_PER_TRIANGLE;
+    }
+
+    /**
+     * Deletes the shape and the triangles. Only call this after the bodies using the shape are deleted.
+     */
+    @Override
+    public void dispose()
+    {
+        if (NativeRegistry.release(shape))
+        {
+            shape.delete();
+        }
+
+        // Can be unmapped now
+        bvhMemory = null;
+        triangles.dispose();
+    }
+}
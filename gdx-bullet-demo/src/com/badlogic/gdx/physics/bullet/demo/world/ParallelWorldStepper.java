@@ -0,0 +1,283 @@
+package com.badlogic.gdx.physics.bullet.demo.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.badlogic.gdx.physics.bullet.demo.Pools;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Steps many independent {@link PhysicsWorld}s in parallel on a fixed set of worker threads, for running scenarios
+ * offline on every core.
+ * <p>
+ * Each call to {@link #step(int, float)} is a round: workers repeatedly claim the next world nobody has taken yet and
+ * step it the given number of times, until every world is done. A world is only ever stepped by one worker in a round,
+ * and the round ends only when all workers have finished, so between rounds the worlds (and their stats) can be used
+ * from the calling thread. Claiming worlds one at a time keeps workers busy when some worlds are slower than others.
+ * <p>
+ * Not thread safe; add, remove and step from one thread.
+ */
+public class ParallelWorldStepper implements Disposable
+{
+    private static final long TERMINATION_TIMEOUT_SECONDS = 10;
+
+    private final int workers;
+    private final ExecutorService executor;
+    private final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+    private final List<PhysicsWorld> worlds = new ArrayList<PhysicsWorld>();
+
+    // The round being stepped
+    private final AtomicInteger nextWorld = new AtomicInteger();
+    private volatile int roundSteps;
+    private volatile float roundTimeStepSeconds;
+
+    // Stats since the last resetStats()
+    private long rounds;
+    private long worldSteps;
+    private long elapsedNanos;
+
+    /**
+     * @param workers
+     *            the number of threads to step on, or 1 to step every world on the calling thread
+     */
+    public ParallelWorldStepper(int workers)
+    {
+        if (workers < 1)
+        {
+            throw new IllegalArgumentException("At least one worker is needed: " + workers);
+        }
+        this.workers = workers;
+
+        if (workers == 1)
+        {
+            executor = null;
+        }
+        else
+        {
+            executor = Executors.newFixedThreadPool(workers, new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable)
+                {
+                    final Runnable worker = new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                runnable.run();
+                            }
+                            finally
+                            {
+                                // The tasks prewarmed this thread's pools; delete its transforms before it ends
+                                Pools.checkLeaks("world worker");
+                                Pools.releaseThread();
+                            }
+                        }
+                    };
+
+                    final Thread thread = new Thread(worker, "worlds-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        // The same tasks every round
+        for (int i = 0; i < workers; i++)
+        {
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    // Only does anything the first time on each worker
+                    Pools.prewarm();
+                    stepClaimedWorlds();
+                    return null;
+                }
+            });
+        }
+    }
+
+    public int getWorkers()
+    {
+        return workers;
+    }
+
+    public void add(PhysicsWorld world)
+    {
+        worlds.add(world);
+    }
+
+    public void remove(PhysicsWorld world)
+    {
+        worlds.remove(world);
+    }
+
+    public int getWorldCount()
+    {
+        return worlds.size();
+    }
+
+    public PhysicsWorld getWorld(int index)
+    {
+        return worlds.get(index);
+    }
+
+    /**
+     * Steps every world steps times by timeStepSeconds, in parallel, and waits until they're all done.
+     *
+     * @return the time the round took in nanoseconds
+     */
+    public long step(int steps, float timeStepSeconds)
+    {
+        final long start = System.nanoTime();
+
+        nextWorld.set(0);
+        roundSteps = steps;
+        roundTimeStepSeconds = timeStepSeconds;
+
+        if (executor == null)
+        {
+            stepClaimedWorlds();
+        }
+        else
+        {
+            runTasks();
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        rounds++;
+        worldSteps += (long) steps * worlds.size();
+        elapsedNanos += elapsed;
+        return elapsed;
+    }
+
+    private void runTasks()
+    {
+        try
+        {
+            for (Future<Void> future : executor.invokeAll(tasks))
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while stepping worlds", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new GdxRuntimeException("Couldn't step a world", e.getCause());
+        }
+    }
+
+    /**
+     * Claims and steps worlds until there are none left in this round.
+     */
+    private void stepClaimedWorlds()
+    {
+        final int steps = roundSteps;
+        final float timeStepSeconds = roundTimeStepSeconds;
+
+        int index;
+        while ((index = nextWorld.getAndIncrement()) < worlds.size())
+        {
+            final PhysicsWorld world = worlds.get(index);
+            for (int step = 0; step < steps; step++)
+            {
+                world.step(timeStepSeconds);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rounds stepped since the last {@link #resetStats()}
+     */
+    public long getRounds()
+    {
+        return rounds;
+    }
+
+    /**
+     * @return the number of single world steps since the last {@link #resetStats()}, summed over every world
+     */
+    public long getWorldSteps()
+    {
+        return worldSteps;
+    }
+
+    /**
+     * @return the wall clock time spent in {@link #step(int, float)} since the last {@link #resetStats()}, in
+     *         nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return single world steps per second of wall clock time, summed over every world
+     */
+    public double getStepsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : worldSteps / (elapsedNanos / 1000000000.0);
+    }
+
+    /**
+     * Clears these stats and every world's.
+     */
+    public void resetStats()
+    {
+        rounds = 0;
+        worldSteps = 0;
+        elapsedNanos = 0;
+
+        for (int i = 0; i < worlds.size(); i++)
+        {
+            worlds.get(i).resetStats();
+        }
+    }
+
+    /**
+     * Stops the workers and waits for them to release their pools. The worlds aren't disposed; they belong to whoever
+     * added them.
+     */
+    @Override
+    public void dispose()
+    {
+        if (executor == null)
+        {
+            return;
+        }
+
+        // No round is running, so the workers are idle and end right away
+        executor.shutdown();
+        try
+        {
+            if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+            {
+                System.err.println("World workers didn't stop within " + TERMINATION_TIMEOUT_SECONDS + " s");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.badlogic.gdx.physics.bullet.demo.world;
+
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.btBroadphaseInterface;
+import com.badlogic.gdx.physics.bullet.btCollisionDispatcher;
+import com.badlogic.gdx.physics.bullet.btConstraintSolver;
+import com.badlogic.gdx.physics.bullet.btDbvtBroadphase;
+import com.badlogic.gdx.physics.bullet.btDefaultCollisionConfiguration;
+import com.badlogic.gdx.physics.bullet.btDiscreteDynamicsWorld;
+import com.badlogic.gdx.physics.bullet.btSequentialImpulseConstraintSolver;
+import com.badlogic.gdx.physics.bullet.demo.LatencyHistogram;
+import com.badlogic.gdx.physics.bullet.demo.NativeRegistry;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * One Bullet dynamics world with everything it needs (collision configuration, dispatcher, broadphase and solver),
+ * stepped at a fixed rate and timed.
+ * <p>
+ * Worlds share nothing, so different worlds can be stepped on different threads at the same time (see
+ * {@link ParallelWorldStepper}); a single world must only be used by one thread at a time. Scratch objects come from
+ * {@link com.badlogic.gdx.physics.bullet.demo.Pools}, which keeps a free list for each thread.
+ */
+public class PhysicsWorld implements Disposable
+{
+    private final btDefaultCollisionConfiguration collisionConfiguration;
+    private final btCollisionDispatcher dispatcher;
+    private final btBroadphaseInterface broadphase;
+    private final btConstraintSolver solver;
+    private final btDiscreteDynamicsWorld dynamicsWorld;
+
+    // Stats, written by whichever thread steps
+    private final LatencyHistogram stepTimes = new LatencyHistogram();
+    private long steps;
+
+    /**
+     * Creates a world with gravity pulling down the z axis, like the demo scenes.
+     */
+    public PhysicsWorld()
+    {
+        collisionConfiguration = NativeRegistry.track(new btDefaultCollisionConfiguration());
+        dispatcher = NativeRegistry.track(new btCollisionDispatcher(collisionConfiguration));
+        broadphase = NativeRegistry.track(new btDbvtBroadphase());
+        solver = NativeRegistry.track(new btSequentialImpulseConstraintSolver());
+
+        dynamicsWorld = NativeRegistry.track(new btDiscreteDynamicsWorld(dispatcher, broadphase, solver,
+                collisionConfiguration));
+        dynamicsWorld.setGravity(new Vector3(0f, 0f, -9.8f));
+    }
+
+    public btDiscreteDynamicsWorld getDynamicsWorld()
+    {
+        return dynamicsWorld;
+    }
+
+    public btCollisionDispatcher getDispatcher()
+    {
+        return dispatcher;
+    }
+
+    public btBroadphaseInterface getBroadphase()
+    {
+        return broadphase;
+    }
+
+    /**
+     * Steps the world exactly once by timeStepSeconds (no Bullet substeps or interpolation; callers do their own fixed
+     * step logic).
+     *
+     * @return how long the step took in nanoseconds
+     */
+    public long step(float timeStepSeconds)
+    {
+        NativeRegistry.checkLive(dynamicsWorld);
+        final long start = System.nanoTime();
+
+        // maxSubSteps = 0 for exactly one integration over the time given by the third parameter
+        dynamicsWorld.stepSimulation(timeStepSeconds, 0, timeStepSeconds);
+
+        final long elapsed = System.nanoTime() - start;
+        stepTimes.add(elapsed);
+        steps++;
+        return elapsed;
+    }
+
+    /**
+     * @return times of every {@link #step(float)} since the last {@link #resetStats()} in nanoseconds
+     */
+    public LatencyHistogram getStepTimes()
+    {
+        return stepTimes;
+    }
+
+    /**
+     * @return the number of steps since the last {@link #resetStats()}
+     */
+    public long getSteps()
+    {
+        return steps;
+    }
+
+    public void resetStats()
+    {
+        stepTimes.reset();
+        steps = 0;
+    }
+
+    /**
+     * Deletes the native world. Remove (and delete) the collision objects first.
+     */
+    @Override
+    public void dispose()
+    {
+        if (NativeRegistry.release(dynamicsWorld))
+        {
+            dynamicsWorld.delete();
+        }
+        if (NativeRegistry.release(broadphase))
+        {
+            broadphase.delete();
+        }
+        if (NativeRegistry.release(dispatcher))
+        {
+            dispatcher.delete();
+        }
+        if (NativeRegistry.release(solver))
+        {
+            solver.delete();
+        }
+        if (NativeRegistry.release(collisionConfiguration))
+        {
+            collisionConfiguration.delete();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.badlogic.gdx.physics.bullet.demo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * Checks the culling math headless, against a camera built by hand: 90 degree field of view, square aspect, near 1 and
+ * far 100, looking down -z.
+ */
+public class FrustumCullerTest
+{
+    // Loose enough for the far plane, which float math puts a little off 100
+    private static final float EPSILON = 1e-3f;
+    private static final float HALF_SQRT2 = (float) Math.sqrt(0.5);
+
+    private FrustumCuller culler;
+
+    @Before
+    public void setUp()
+    {
+        culler = new FrustumCuller();
+    }
+
+    /**
+     * @return the combined projection and view matrix (column major) of the test camera at the given z
+     */
+    private static float[] camera(float cameraZ)
+    {
+        final float near = 1;
+        final float far = 100;
+
+        // gluPerspective with a 90 degree field of view (so f = 1) and aspect 1
+        final float[] projection = new float[16];
+        projection[0] = 1;
+        projection[5] = 1;
+        projection[10] = (far + near) / (near - far);
+        projection[11] = -1;
+        projection[14] = 2 * far * near / (near - far);
+
+        // The view only moves the world by -cameraZ
+        final float[] view = translation(0, 0, -cameraZ);
+
+        return multiply(projection, view);
+    }
+
+    private static float[] translation(float x, float y, float z)
+    {
+        final float[] m = new float[16];
+        m[0] = m[5] = m[10] = m[15] = 1;
+        m[12] = x;
+        m[13] = y;
+        m[14] = z;
+        return m;
+    }
+
+    private static float[] multiply(float[] a, float[] b)
+    {
+        final float[] result = new float[16];
+        for (int column = 0; column < 4; column++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                float sum = 0;
+                for (int k = 0; k < 4; k++)
+                {
+                    sum += a[k * 4 + row] * b[column * 4 + k];
+                }
+                result[column * 4 + row] = sum;
+            }
+        }
+        return result;
+    }
+
+    private void assertPlane(int plane, float a, float b, float c, float d)
+    {
+        final float[] actual = new float[4];
+        culler.getPlane(plane, actual);
+        assertArrayEquals(new float[] { a, b, c, d }, actual, EPSILON);
+    }
+
+    @Test
+    public void extractsPlanesFromKnownCamera()
+    {
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+
+        // Left and right: x = z and x = -z
+        assertPlane(0, HALF_SQRT2, 0, -HALF_SQRT2, 0);
+        assertPlane(1, -HALF_SQRT2, 0, -HALF_SQRT2, 0);
+
+        // Bottom and top
+        assertPlane(2, 0, HALF_SQRT2, -HALF_SQRT2, 0);
+        assertPlane(3, 0, -HALF_SQRT2, -HALF_SQRT2, 0);
+
+        // Near at z = -1, far at z = -100
+        assertPlane(4, 0, 0, -1, -1);
+        assertPlane(5, 0, 0, 1, 100);
+    }
+
+    @Test
+    public void planesFollowTheCamera()
+    {
+        culler.update(camera(10), new Vector3(0, 0, 10), new Vector3(0, 0, -1));
+
+        // The side planes pass through the camera, the near and far planes move with it
+        assertPlane(0, HALF_SQRT2, 0, -HALF_SQRT2, 10 * HALF_SQRT2);
+        assertPlane(4, 0, 0, -1, 9);
+        assertPlane(5, 0, 0, 1, 90);
+    }
+
+    @Test
+    public void everythingIsVisibleWithoutPlanes()
+    {
+        assertTrue(culler.isVisible(0, 0, 1000, 1, 1, 1));
+
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+        culler.invalidate();
+        assertTrue(culler.isVisible(0, 0, 1000, 1, 1, 1));
+    }
+
+    @Test
+    public void boxInsideIsVisible()
+    {
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+
+        assertTrue(culler.isVisible(0, 0, -50, 1, 1, 1));
+        assertTrue(culler.isVisible(20, -20, -50, 1, 1, 1));
+    }
+
+    @Test
+    public void boxOutsideIsNotVisible()
+    {
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+
+        // Behind, off to each side, and past the far plane
+        assertFalse(culler.isVisible(0, 0, 10, 1, 1, 1));
+        assertFalse(culler.isVisible(-100, 0, -50, 1, 1, 1));
+        assertFalse(culler.isVisible(100, 0, -50, 1, 1, 1));
+        assertFalse(culler.isVisible(0, -100, -50, 1, 1, 1));
+        assertFalse(culler.isVisible(0, 100, -50, 1, 1, 1));
+        assertFalse(culler.isVisible(0, 0, -150, 1, 1, 1));
+    }
+
+    @Test
+    public void boxStraddlingIsVisible()
+    {
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+
+        // Centered on the right plane, across the near plane, and across the far plane
+        assertTrue(culler.isVisible(50, 0, -50, 1, 1, 1));
+        assertTrue(culler.isVisible(0, 0, -0.5f, 1, 1, 1));
+        assertTrue(culler.isVisible(0, 0, -100.5f, 1, 1, 1));
+
+        // Centered outside, but reaching in
+        assertTrue(culler.isVisible(52, 0, -50, 2, 1, 1));
+    }
+
+    @Test
+    public void maxDistanceReplacesFarPlane()
+    {
+        culler.setMaxDistance(20);
+        culler.update(camera(10), new Vector3(0, 0, 10), new Vector3(0, 0, -1));
+
+        // 20 in front of the camera: z = -10
+        assertPlane(5, 0, 0, 1, 10);
+
+        assertTrue(culler.isVisible(0, 0, -9, 0.5f, 0.5f, 0.5f));
+        assertTrue(culler.isVisible(0, 0, -10.5f, 1, 1, 1));
+        assertFalse(culler.isVisible(0, 0, -12, 1, 1, 1));
+
+        // Well inside the far plane, but past the maximum distance
+        assertFalse(culler.isVisible(0, 0, -50, 1, 1, 1));
+    }
+
+    @Test
+    public void localBoundsAreTransformed()
+    {
+        culler.update(camera(0), new Vector3(), new Vector3(0, 0, -1));
+
+        final float[] cube = { -1, -1, -1, 1, 1, 1 };
+        assertTrue(culler.isVisible(cube, translation(0, 0, -50)));
+        assertFalse(culler.isVisible(cube, translation(0, 0, 50)));
+
+        // A long box just past the far plane only reaches in once it's turned 90 degrees about y
+        final float[] rod = { -10, -0.5f, -0.5f, 10, 0.5f, 0.5f };
+        assertFalse(culler.isVisible(rod, translation(0, 0, -105)));
+
+        final float[] turned = translation(0, 0, -105);
+        turned[0] = 0;
+        turned[2] = -1;
+        turned[8] = 1;
+        turned[10] = 0;
+        assertTrue(culler.isVisible(rod, turned));
+    }
+}